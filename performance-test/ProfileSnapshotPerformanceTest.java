@@ -0,0 +1,132 @@
+package com.mipt;
+
+import com.mipt.dbAPI.DatabaseAccessException;
+import com.mipt.dbAPI.DbService;
+import com.mipt.domainModel.Achievement;
+import com.mipt.domainModel.ProfileSnapshot;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the latency of building a profile with the per-field getters (the old
+ * ApiController.getProfile) against a single DbService.getProfileSnapshot call.
+ */
+@Testcontainers
+public class ProfileSnapshotPerformanceTest {
+
+  private static final int USERS = 50;
+  private static final int GAMES_PER_USER = 20;
+  private static final int ACHIEVEMENTS_PER_USER = 5;
+  private static final int WARMUP_ROUNDS = 2_000;
+  private static final int MEASURED_ROUNDS = 10_000;
+
+  @Container
+  private static final PostgreSQLContainer<?> postgres =
+      new PostgreSQLContainer<>("postgres:13-alpine")
+          .withDatabaseName("testdb")
+          .withUsername("testuser")
+          .withPassword("testpass")
+          .withInitScript("init.sql")
+          .waitingFor(Wait.forListeningPort())
+          .waitingFor(Wait.forLogMessage(".*database system is ready to accept connections.*\\n", 1))
+          .withStartupTimeout(Duration.ofSeconds(90));
+
+  static DbService dbService;
+
+  @BeforeAll
+  static void setUp() throws SQLException, DatabaseAccessException {
+    dbService = new DbService(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+
+    Achievement achievement = new Achievement();
+    achievement.setName("perfAchievement");
+    Integer[] achievementIds = new Integer[ACHIEVEMENTS_PER_USER];
+    for (int i = 0; i < ACHIEVEMENTS_PER_USER; i++) {
+      achievementIds[i] = dbService.addAchievement(achievement);
+    }
+
+    for (int i = 0; i < USERS; i++) {
+      String session = session(i);
+      dbService.register("perfUser" + i, "password" + i);
+      dbService.authenticate("perfUser" + i, "password" + i, session);
+      dbService.changeDescription(session, "description of user " + i);
+      for (int j = 0; j < GAMES_PER_USER; j++) {
+        Integer gameId = dbService.createGame(session, 1, 5, 4, 1);
+        dbService.setCurrentGame(session, gameId);
+        dbService.addGamePlayed(session);
+      }
+      for (Integer achievementId : achievementIds) {
+        dbService.attachAchievement(session, achievementId);
+      }
+      dbService.addGlobalPoints(session, i);
+    }
+  }
+
+  private static String session(int i) {
+    return "PERF_SESSION_" + i;
+  }
+
+  @Test
+  void compareProfileLatency() throws SQLException, DatabaseAccessException {
+    // both paths must return the same data
+    ProfileSnapshot snapshot = dbService.getProfileSnapshot(session(0));
+    assertArrayEquals(dbService.getGamesPlayed(session(0)), snapshot.gamesPlayed().toArray(new Integer[0]));
+    assertArrayEquals(dbService.getAchievementsOf(session(0)), snapshot.achievements().toArray(new Integer[0]));
+
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      perFieldProfile(session(i % USERS));
+      dbService.getProfileSnapshot(session(i % USERS));
+    }
+
+    long[] perField = new long[MEASURED_ROUNDS];
+    long[] single = new long[MEASURED_ROUNDS];
+    for (int i = 0; i < MEASURED_ROUNDS; i++) {
+      String session = session(i % USERS);
+
+      long start = System.nanoTime();
+      perFieldProfile(session);
+      perField[i] = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      dbService.getProfileSnapshot(session);
+      single[i] = System.nanoTime() - start;
+    }
+
+    report("per-field getters", perField);
+    report("getProfileSnapshot", single);
+  }
+
+  private static void perFieldProfile(String session) throws SQLException, DatabaseAccessException {
+    // the calls ApiController.getProfile used to make
+    dbService.getUserId(session);
+    dbService.getCurrentGame(session);
+    dbService.getAchievementsOf(session);
+    dbService.getGamesPlayed(session);
+    dbService.getProfilePic(session);
+    dbService.getDescription(session);
+    dbService.getUsername(session);
+    dbService.getLastActivity(session);
+    dbService.getGlobalPoints(session);
+  }
+
+  private static void report(String name, long[] nanos) {
+    long[] sorted = nanos.clone();
+    Arrays.sort(sorted);
+    double mean = Arrays.stream(sorted).average().orElse(0);
+    System.out.printf("%-20s mean %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+        name,
+        mean / 1_000_000,
+        sorted[sorted.length / 2] / 1_000_000.0,
+        sorted[(int) (sorted.length * 0.99)] / 1_000_000.0,
+        sorted[sorted.length - 1] / 1_000_000.0);
+  }
+}
@@ -0,0 +1,39 @@
+package com.mipt;
+
+import com.mipt.service.LlmClient;
+import org.json.JSONArray;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the wall-clock time of generating one game's questions sequentially
+ * and with several requests in flight, against a stub LLM with fixed latency.
+ */
+public class QuestionGeneratorPerformanceTest {
+
+  private static final long LLM_LATENCY_MS = 200;
+  private static final int QUESTIONS = 20;
+  private static final int[] MAX_IN_FLIGHT = {1, 4, 8};
+
+  @Test
+  void compareGenerationTime() throws Exception {
+    String payload = "[{\"topic\":\"физика\",\"numberOfQuestions\":" + QUESTIONS + ",\"difficult\":2}]";
+
+    for (int maxInFlight : MAX_IN_FLIGHT) {
+      try (StubLlmServer llm = new StubLlmServer(LLM_LATENCY_MS, QuestionGeneratorTest::uniqueText)) {
+        QuestionGenerator generator = new QuestionGenerator(new LlmClient(llm.chatUrl()), "stub", maxInFlight, 0.8);
+
+        long start = System.nanoTime();
+        JSONArray questions = new JSONArray(generator.generateQuestions(payload).get(60, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(QUESTIONS, questions.length());
+        System.out.printf("max-in-flight %d: %d questions in %.0f ms (%d requests)%n",
+            maxInFlight, questions.length(), elapsed / 1_000_000.0, llm.requests());
+      }
+    }
+  }
+}
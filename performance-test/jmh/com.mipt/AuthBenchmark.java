@@ -0,0 +1,35 @@
+package com.mipt;
+
+import com.mipt.domainModel.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Login through ApiController: BCrypt check of the password, a new session and the profile snapshot.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AuthBenchmark {
+
+  private static final AtomicInteger LOGINS = new AtomicInteger();
+
+  @Benchmark
+  public ResponseEntity<Object> authenticate(BenchmarkEnvironment env) {
+    User user = new User();
+    user.setUsername(BenchmarkEnvironment.username(LOGINS.getAndIncrement() % env.users));
+    user.setPassword(BenchmarkEnvironment.PASSWORD);
+    return env.apiController.auth(user);
+  }
+}
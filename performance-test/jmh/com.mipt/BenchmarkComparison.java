@@ -0,0 +1,67 @@
+package com.mipt;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON results, e.g. of the previous and the current commit, and prints the
+ * change of every benchmark. Exits with 1 if some benchmark got slower than the threshold.
+ * Usage: BenchmarkComparison baseline.json current.json [threshold percent, 10 by default]
+ */
+public class BenchmarkComparison {
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.println("Usage: BenchmarkComparison baseline.json current.json [threshold-percent]");
+      System.exit(2);
+    }
+    Map<String, JSONObject> baseline = read(Path.of(args[0]));
+    Map<String, JSONObject> current = read(Path.of(args[1]));
+    double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+
+    int regressions = 0;
+    for (Map.Entry<String, JSONObject> entry : current.entrySet()) {
+      JSONObject before = baseline.get(entry.getKey());
+      JSONObject metric = entry.getValue().getJSONObject("primaryMetric");
+      String unit = metric.getString("scoreUnit");
+      if (before == null) {
+        System.out.printf("%-70s %12.3f %s (new)%n", entry.getKey(), metric.getDouble("score"), unit);
+        continue;
+      }
+
+      double was = before.getJSONObject("primaryMetric").getDouble("score");
+      double now = metric.getDouble("score");
+      double change = was == 0 ? 0 : (now - was) / was * 100;
+      // time per operation should go down, operations per time unit should go up
+      double slowdown = unit.endsWith("/op") ? change : -change;
+      boolean regression = slowdown > threshold;
+      if (regression) {
+        regressions++;
+      }
+      System.out.printf("%-70s %12.3f -> %12.3f %s %+7.1f%%%s%n",
+          entry.getKey(), was, now, unit, change, regression ? "  REGRESSION" : "");
+    }
+    System.exit(regressions > 0 ? 1 : 0);
+  }
+
+  private static Map<String, JSONObject> read(Path path) throws Exception {
+    // benchmark name with its parameters -> result
+    Map<String, JSONObject> results = new LinkedHashMap<>();
+    JSONArray array = new JSONArray(Files.readString(path));
+    for (int i = 0; i < array.length(); i++) {
+      JSONObject result = array.getJSONObject(i);
+      String name = result.getString("benchmark") + " " + result.getString("mode");
+      JSONObject params = result.optJSONObject("params");
+      if (params != null) {
+        name += " " + params;
+      }
+      results.put(name, result);
+    }
+    return results;
+  }
+}
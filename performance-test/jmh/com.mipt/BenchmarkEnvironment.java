@@ -0,0 +1,182 @@
+package com.mipt;
+
+import com.mipt.api.ApiController;
+import com.mipt.dbAPI.DbService;
+import com.mipt.domainModel.Topic;
+import com.mipt.leaderboardsProcessor.LeaderboardSnapshot;
+import com.mipt.service.LiveGameRegistry;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The application of one benchmark fork: the Spring context of Main without the web server,
+ * a PostgreSQL container and a stub LLM answering at once. Seeds the users, the open games,
+ * a lobby and a running game the benchmarks work with.
+ * Set BENCHMARK_DB_URL (and BENCHMARK_DB_USER / BENCHMARK_DB_PASSWORD) to use an existing
+ * database instead of the container, its data is erased.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkEnvironment {
+
+  static final String PASSWORD = "Password123!";
+  static final int PLAYERS_PER_GAME = 8;
+  static final int QUESTIONS_PER_GAME = 10;
+
+  // users in the global ranking
+  @Param("10000")
+  public int users;
+
+  // public games waiting for players
+  @Param("200")
+  public int openGames;
+
+  private PostgreSQLContainer<?> postgres;
+  private StubLlmServer llm;
+  private ConfigurableApplicationContext context;
+
+  DbService dbService;
+  ApiController apiController;
+  QuestionGenerator questionGenerator;
+  LeaderboardSnapshot leaderboardSnapshot;
+  int topicId;
+  String topicName;
+  int lobbyGameId;
+  int runningGameId;
+  List<String> runningGameSessions;
+
+  @Setup(Level.Trial)
+  public void start() throws Exception {
+    String url = System.getenv("BENCHMARK_DB_URL");
+    String user = System.getenv().getOrDefault("BENCHMARK_DB_USER", "postgres");
+    String password = System.getenv().getOrDefault("BENCHMARK_DB_PASSWORD", "postgres");
+    if (url == null) {
+      postgres = new PostgreSQLContainer<>("postgres:13-alpine")
+          .withDatabaseName("benchdb")
+          .withUsername("benchuser")
+          .withPassword("benchpass")
+          .waitingFor(Wait.forLogMessage(".*database system is ready to accept connections.*\\n", 1))
+          .withStartupTimeout(Duration.ofSeconds(90));
+      postgres.start();
+      url = postgres.getJdbcUrl();
+      user = postgres.getUsername();
+      password = postgres.getPassword();
+    }
+    llm = new StubLlmServer(0, QuestionGeneratorTest::uniqueText);
+
+    context = new SpringApplicationBuilder(Main.class)
+        .web(WebApplicationType.NONE)
+        .run(
+            "--app.database.url=" + url,
+            "--app.database.user=" + user,
+            "--app.database.password=" + password,
+            "--app.llm.url=" + llm.chatUrl(),
+            "--app.llm.model=stub",
+            // the pool refill would call the LLM in the background
+            "--app.question-pool.enabled=false",
+            "--spring.main.banner-mode=off",
+            "--logging.level.root=WARN");
+    dbService = context.getBean(DbService.class);
+    apiController = context.getBean(ApiController.class);
+    questionGenerator = context.getBean(QuestionGenerator.class);
+    leaderboardSnapshot = context.getBean(LeaderboardSnapshot.class);
+
+    seed(context.getBean(JdbcTemplate.class));
+  }
+
+  private void seed(JdbcTemplate jdbcTemplate) throws Exception {
+    dbService.eraseAllData("DELETE_ALL_RECORDS_IN_DATABASE");
+    Topic[] topics = dbService.getAllTopics();
+    topicId = topics[0].getTopicId();
+    topicName = topics[0].getName();
+
+    // one BCrypt hash for everybody, hashing every user would take minutes
+    dbService.register(username(0), PASSWORD);
+    String hash = jdbcTemplate.queryForObject("SELECT password FROM users WHERE username = ?", String.class, username(0));
+    jdbcTemplate.update("DELETE FROM users");
+    jdbcTemplate.update("""
+        INSERT INTO users (session, username, password, pic_id, description, games_played_number,
+                           global_points, global_possible_points, current_game_points)
+        SELECT 'BENCH_SESSION_' || i, 'bench' || i, ?, 0, '', 0, (i * 7919) % 100000, 100000, 0
+        FROM generate_series(0, ? - 1) i
+        """, hash, users);
+    dbService.rebuildGlobalRanking();
+    leaderboardSnapshot.publish(dbService.getGlobalLeaderboards());
+
+    int player = 0;
+    for (int i = 0; i < openGames; i++) {
+      int gameTopicId = topics[i % topics.length].getTopicId();
+      int gameId = dbService.createGame(session(player), 1 + i % 3, QUESTIONS_PER_GAME, PLAYERS_PER_GAME, gameTopicId, false);
+      dbService.setCurrentGame(session(player++), gameId);
+    }
+
+    lobbyGameId = dbService.createGame(session(player), 1, QUESTIONS_PER_GAME, PLAYERS_PER_GAME, topicId, false);
+    for (int i = 0; i < PLAYERS_PER_GAME; i++) {
+      dbService.setCurrentGame(session(player++), lobbyGameId);
+    }
+
+    runningGameId = dbService.createGame(session(player), 2, QUESTIONS_PER_GAME, PLAYERS_PER_GAME, topicId, true);
+    runningGameSessions = new ArrayList<>();
+    for (int i = 0; i < PLAYERS_PER_GAME; i++) {
+      runningGameSessions.add(session(player));
+      dbService.setCurrentGame(session(player++), runningGameId);
+    }
+    dbService.loadQuestions(runningGameId, questions(QUESTIONS_PER_GAME));
+    dbService.setStatus(runningGameId, 2);
+    context.getBean(LiveGameRegistry.class).activate(runningGameId);
+    // statistics of the bulk insert, as autovacuum would collect them
+    jdbcTemplate.execute("ANALYZE");
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    context.close();
+    llm.close();
+    if (postgres != null) {
+      postgres.stop();
+    }
+  }
+
+  static String username(int i) {
+    return "bench" + i;
+  }
+
+  static String session(int i) {
+    return "BENCH_SESSION_" + i;
+  }
+
+  /**
+   * Questions in the format of the LLM answers, the right answer is always 2.
+   */
+  static JSONArray questions(int count) throws JSONException {
+    JSONArray questions = new JSONArray();
+    for (int number = 1; number <= count; number++) {
+      JSONArray answers = new JSONArray();
+      for (int index = 1; index <= 4; index++) {
+        answers.put(new JSONObject().put("index", index).put("answer", "Ответ " + index));
+      }
+      questions.put(new JSONObject()
+          .put("question_number", number)
+          .put("question_text", QuestionGeneratorTest.uniqueText(number))
+          .put("available_answers", answers)
+          .put("right_answer_number", 2));
+    }
+    return questions;
+  }
+}
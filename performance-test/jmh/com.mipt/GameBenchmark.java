@@ -0,0 +1,70 @@
+package com.mipt;
+
+import com.mipt.domainModel.AnswerObject;
+import com.mipt.domainModel.LobbyObject;
+import com.mipt.domainModel.Topic;
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Requests of the players during a game and in the lobby, called on ApiController
+ * the way the web client calls them.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class GameBenchmark {
+
+  private static final AtomicInteger ANSWERS = new AtomicInteger();
+
+  @Benchmark
+  public ResponseEntity<Object> verifyAnswer(BenchmarkEnvironment env) {
+    int answer = ANSWERS.getAndIncrement();
+    AnswerObject answerObject = new AnswerObject();
+    answerObject.setSession(env.runningGameSessions.get(answer % BenchmarkEnvironment.PLAYERS_PER_GAME));
+    answerObject.setGameId(env.runningGameId);
+    answerObject.setQuestionNumber(1 + answer % BenchmarkEnvironment.QUESTIONS_PER_GAME);
+    answerObject.setSubmittedAnswerNumber(1 + answer % 4);
+    answerObject.setTimeTakenToAnswerInSeconds(5);
+    return env.apiController.verifyAnswer(answerObject);
+  }
+
+  @Benchmark
+  public ResponseEntity<Object> getLobby(BenchmarkEnvironment env) {
+    LobbyObject lobby = new LobbyObject();
+    lobby.setGameId(env.lobbyGameId);
+    return env.apiController.getLobby(lobby);
+  }
+
+  @Benchmark
+  public ResponseEntity<Object> getOpenGames(BenchmarkEnvironment env) {
+    Topic topic = new Topic();
+    topic.setTopicId(env.topicId);
+    return env.apiController.getOpenGames(topic, null);
+  }
+
+  @Benchmark
+  public ResponseEntity<Object> getOpenGamesNotModified(BenchmarkEnvironment env) {
+    // the client polls with the ETag of the listing it already has
+    Topic topic = new Topic();
+    topic.setTopicId(env.topicId);
+    return env.apiController.getOpenGames(topic, env.dbService.getOpenGamesListing(env.topicId).etag());
+  }
+
+  @Benchmark
+  public JSONArray getOpenGamesOfEveryTopic(BenchmarkEnvironment env) throws Exception {
+    return env.dbService.getOpenGames();
+  }
+}
@@ -0,0 +1,63 @@
+package com.mipt;
+
+import com.mipt.domainModel.Game;
+import com.mipt.domainModel.User;
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The leaderboards: of a running game, the published global TOP-100, the TOP-100 built
+ * by the leaderboard job, the global place of a user and the users around it.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LeaderboardBenchmark {
+
+  private static final AtomicInteger LOOKUPS = new AtomicInteger();
+
+  @Benchmark
+  public ResponseEntity<Object> getLeaderboardsByGame(BenchmarkEnvironment env) {
+    Game game = new Game();
+    game.setGameId(env.runningGameId);
+    return env.apiController.getLeaderboardsByGame(game);
+  }
+
+  @Benchmark
+  public ResponseEntity<Object> getGlobalLeaderboards(BenchmarkEnvironment env) {
+    return env.apiController.getGlobalLeaderboards(null);
+  }
+
+  @Benchmark
+  public JSONArray buildGlobalLeaderboards(BenchmarkEnvironment env) throws Exception {
+    return env.dbService.getGlobalLeaderboards();
+  }
+
+  @Benchmark
+  public ResponseEntity<Object> getGlobalRank(BenchmarkEnvironment env) {
+    return env.apiController.getGlobalRank(nextUser(env));
+  }
+
+  @Benchmark
+  public ResponseEntity<Object> getGlobalRankNeighbours(BenchmarkEnvironment env) {
+    return env.apiController.getGlobalRankNeighbours(nextUser(env), 5);
+  }
+
+  private static User nextUser(BenchmarkEnvironment env) {
+    User user = new User();
+    user.setSession(BenchmarkEnvironment.session(LOOKUPS.getAndIncrement() % env.users));
+    return user;
+  }
+}
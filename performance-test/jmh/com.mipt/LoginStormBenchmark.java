@@ -0,0 +1,70 @@
+package com.mipt;
+
+import com.mipt.domainModel.AnswerObject;
+import com.mipt.domainModel.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers of a running game with and without a login storm next to them. The storm keeps
+ * more logins in flight than the password hasher takes, the extra ones get 503 at once;
+ * the answer latency of storm:verifyAnswer should stay close to calm:verifyAnswer.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LoginStormBenchmark {
+
+  private static final AtomicInteger ANSWERS = new AtomicInteger();
+  private static final AtomicInteger LOGINS = new AtomicInteger();
+
+  @Benchmark
+  @Group("calm")
+  @GroupThreads(4)
+  public ResponseEntity<Object> verifyAnswer(BenchmarkEnvironment env) {
+    return answer(env);
+  }
+
+  @Benchmark
+  @Group("storm")
+  @GroupThreads(4)
+  public ResponseEntity<Object> verifyAnswerDuringStorm(BenchmarkEnvironment env) {
+    return answer(env);
+  }
+
+  @Benchmark
+  @Group("storm")
+  @GroupThreads(64)
+  public ResponseEntity<Object> login(BenchmarkEnvironment env) {
+    // a login replaces the session of the user, the players of the seeded games are the first users
+    int half = env.users / 2;
+    User user = new User();
+    user.setUsername(BenchmarkEnvironment.username(half + LOGINS.getAndIncrement() % half));
+    user.setPassword(BenchmarkEnvironment.PASSWORD);
+    return env.apiController.auth(user);
+  }
+
+  private static ResponseEntity<Object> answer(BenchmarkEnvironment env) {
+    int answer = ANSWERS.getAndIncrement();
+    AnswerObject answerObject = new AnswerObject();
+    answerObject.setSession(env.runningGameSessions.get(answer % BenchmarkEnvironment.PLAYERS_PER_GAME));
+    answerObject.setGameId(env.runningGameId);
+    answerObject.setQuestionNumber(1 + answer % BenchmarkEnvironment.QUESTIONS_PER_GAME);
+    answerObject.setSubmittedAnswerNumber(1 + answer % 4);
+    answerObject.setTimeTakenToAnswerInSeconds(5);
+    return env.apiController.verifyAnswer(answerObject);
+  }
+}
@@ -0,0 +1,64 @@
+package com.mipt;
+
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Storing the questions of a game: the validated multi-row insert of DbService.loadQuestions,
+ * and the whole generation through QuestionGenerator and the stub LLM followed by the insert.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class QuestionsBenchmark {
+
+  /**
+   * A new game without questions for every call, its creation is not measured.
+   */
+  @State(Scope.Thread)
+  public static class EmptyGame {
+    int gameId;
+    JSONArray questions;
+    String payload;
+
+    @Setup(Level.Trial)
+    public void prepare(BenchmarkEnvironment env) throws Exception {
+      questions = BenchmarkEnvironment.questions(BenchmarkEnvironment.QUESTIONS_PER_GAME);
+      payload = "[{\"topic\":\"" + env.topicName + "\",\"numberOfQuestions\":"
+          + BenchmarkEnvironment.QUESTIONS_PER_GAME + ",\"difficult\":1}]";
+    }
+
+    @Setup(Level.Invocation)
+    public void createGame(BenchmarkEnvironment env) throws Exception {
+      gameId = env.dbService.createGame(BenchmarkEnvironment.session(0), 1,
+          BenchmarkEnvironment.QUESTIONS_PER_GAME, BenchmarkEnvironment.PLAYERS_PER_GAME, env.topicId, true);
+    }
+  }
+
+  @Benchmark
+  public int loadQuestions(BenchmarkEnvironment env, EmptyGame game) throws Exception {
+    env.dbService.loadQuestions(game.gameId, game.questions);
+    return game.gameId;
+  }
+
+  @Benchmark
+  public int generateAndLoadQuestions(BenchmarkEnvironment env, EmptyGame game) throws Exception {
+    String generated = env.questionGenerator.generateQuestions(game.payload).get(30, TimeUnit.SECONDS);
+    env.dbService.loadQuestions(game.gameId, new JSONArray(generated));
+    return game.gameId;
+  }
+}
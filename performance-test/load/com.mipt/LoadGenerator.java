@@ -0,0 +1,508 @@
+package com.mipt;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays whole quiz games against the /api endpoints, one virtual thread per player:
+ * register, login, create (the host) or join, polling the lobby, start, questions and answers, stop.
+ * Prints the throughput, p50 / p99 / p999 latency and the error rate of every endpoint and writes
+ * them to a JSON report.
+ * Without --target the application is started in a separate JVM with a PostgreSQL container
+ * (or BENCHMARK_DB_URL) and a stub LLM; with --target an already running instance is loaded,
+ * --stub-llm-port then serves the stub LLM for it.
+ */
+public class LoadGenerator {
+
+  private static final String PASSWORD = "Password123!";
+
+  private final Options options;
+  private final URI api;
+  private final HttpClient http;
+  private final ExecutorService players = Executors.newVirtualThreadPerTaskExecutor();
+  private final LoadStats stats = new LoadStats();
+  // usernames of different runs against the same database never collide
+  private final String runId = HexFormat.of().toHexDigits(ThreadLocalRandom.current().nextInt()).substring(0, 6);
+  private final AtomicInteger completedRooms = new AtomicInteger();
+  private final AtomicInteger failedRooms = new AtomicInteger();
+  private final AtomicInteger retried = new AtomicInteger();
+  private final Map<String, AtomicInteger> failures = new ConcurrentHashMap<>();
+  private int topicId;
+
+  public LoadGenerator(Options options, URI target) {
+    this.options = options;
+    this.api = target.resolve("/api/");
+    this.http = HttpClient.newBuilder()
+        .executor(players)
+        .connectTimeout(Duration.ofSeconds(10))
+        .build();
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options options = Options.parse(args);
+
+    PostgreSQLContainer<?> postgres = null;
+    StubLlmServer llm = null;
+    Process app = null;
+    try {
+      String target = options.target;
+      if (target == null) {
+        String url = System.getenv("BENCHMARK_DB_URL");
+        String user = System.getenv().getOrDefault("BENCHMARK_DB_USER", "postgres");
+        String password = System.getenv().getOrDefault("BENCHMARK_DB_PASSWORD", "postgres");
+        if (url == null) {
+          postgres = new PostgreSQLContainer<>("postgres:13-alpine")
+              .withDatabaseName("loaddb")
+              .withUsername("loaduser")
+              .withPassword("loadpass")
+              .waitingFor(Wait.forLogMessage(".*database system is ready to accept connections.*\\n", 1))
+              .withStartupTimeout(Duration.ofSeconds(90));
+          postgres.start();
+          url = postgres.getJdbcUrl();
+          user = postgres.getUsername();
+          password = postgres.getPassword();
+        }
+        llm = new StubLlmServer(options.stubLlmPort, options.llmLatencyMs, QuestionGeneratorTest::uniqueText);
+        int port = freePort();
+        app = startApplication(options, port, List.of(
+            "--app.database.url=" + url,
+            "--app.database.user=" + user,
+            "--app.database.password=" + password,
+            "--app.llm.url=" + llm.chatUrl(),
+            "--app.llm.model=stub"));
+        target = "http://localhost:" + port;
+      } else if (options.stubLlmPort > 0) {
+        llm = new StubLlmServer(options.stubLlmPort, options.llmLatencyMs, QuestionGeneratorTest::uniqueText);
+        System.out.println("Stub LLM: " + llm.chatUrl());
+      }
+
+      LoadGenerator generator = new LoadGenerator(options, URI.create(target));
+      if (app != null) {
+        generator.awaitStartup(app);
+      }
+      generator.run();
+    } finally {
+      if (app != null) {
+        app.destroy();
+        if (!app.waitFor(30, TimeUnit.SECONDS)) {
+          app.destroyForcibly();
+        }
+      }
+      if (llm != null) {
+        llm.close();
+      }
+      if (postgres != null) {
+        postgres.stop();
+      }
+    }
+  }
+
+  /**
+   * Starts Main in its own JVM, so that its threads don't compete with the players for the carriers
+   * of the virtual threads. The output goes to load-app.log next to the report.
+   */
+  private static Process startApplication(Options options, int port, List<String> properties) throws Exception {
+    List<String> command = new ArrayList<>(List.of(
+        Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+        "-cp", System.getProperty("java.class.path"),
+        // DevTools is on the test classpath
+        "-Dspring.devtools.restart.enabled=false",
+        "com.mipt.Main",
+        "--server.port=" + port,
+        "--spring.main.banner-mode=off"));
+    command.addAll(properties);
+    command.addAll(options.appArgs);
+
+    Path log = Path.of(options.report).toAbsolutePath().resolveSibling("load-app.log");
+    Files.createDirectories(log.getParent());
+    System.out.println("Application log: " + log);
+    return new ProcessBuilder(command)
+        .redirectErrorStream(true)
+        .redirectOutput(log.toFile())
+        .start();
+  }
+
+  private void awaitStartup(Process app) throws Exception {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.timeoutSeconds);
+    while (System.nanoTime() < deadline) {
+      if (!app.isAlive()) {
+        throw new IllegalStateException("The application exited with " + app.exitValue());
+      }
+      try {
+        HttpRequest request = HttpRequest.newBuilder(api.resolve("topic/get-all"))
+            .timeout(Duration.ofSeconds(5))
+            .POST(HttpRequest.BodyPublishers.noBody())
+            .build();
+        if (http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+          return;
+        }
+      } catch (IOException e) {
+        // not listening yet
+      }
+      Thread.sleep(500);
+    }
+    throw new IllegalStateException("The application did not start in " + options.timeoutSeconds + " s");
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  public void run() throws Exception {
+    topicId = firstTopicId();
+    System.out.printf("%d rooms x %d players, %d questions, against %s%n",
+        options.rooms, options.players, options.questions, api);
+
+    long start = System.nanoTime();
+    List<Room> rooms = new ArrayList<>();
+    for (int i = 0; i < options.rooms; i++) {
+      Room room = new Room(i);
+      rooms.add(room);
+      // rooms are started evenly over the ramp-up
+      long delayMs = options.rampUpSeconds * 1000L * i / options.rooms;
+      for (int seat = 0; seat < options.players; seat++) {
+        int playerSeat = seat;
+        players.execute(() -> {
+          try {
+            Thread.sleep(delayMs);
+            play(room, playerSeat);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+      }
+    }
+    for (Room room : rooms) {
+      room.done.await();
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    players.shutdown();
+
+    report(seconds);
+  }
+
+  private void play(Room room, int seat) {
+    boolean host = seat == 0;
+    try {
+      String username = "l" + runId + "_" + room.number + "_" + seat;
+      JSONObject credentials = new JSONObject().put("username", username).put("password", PASSWORD);
+      register(credentials);
+      String session = call("auth/login", credentials).getString("session");
+
+      int gameId;
+      if (host) {
+        JSONObject created = call("game/create", new JSONObject()
+            .put("session", session)
+            .put("levelDifficulty", 1)
+            .put("numberOfQuestions", options.questions)
+            .put("participantsNumber", Math.max(4, options.players))
+            .put("topicId", topicId)
+            .put("isPrivate", true));
+        gameId = created.getInt("gameId");
+        room.gameId.complete(gameId);
+      } else {
+        gameId = room.gameId.get(options.timeoutSeconds, TimeUnit.SECONDS);
+        call("game/join", new JSONObject().put("session", session).put("gameId", gameId));
+      }
+
+      awaitLobby(room, gameId, host);
+      if (host) {
+        call("game/start", new JSONObject().put("gameId", gameId));
+      }
+      answerQuestions(room, gameId, session);
+
+      room.answered.countDown();
+      if (host) {
+        if (!room.answered.await(options.timeoutSeconds, TimeUnit.SECONDS)) {
+          throw new IllegalStateException("players did not finish in time");
+        }
+        call("game/stop", new JSONObject().put("gameId", gameId));
+      }
+    } catch (Exception e) {
+      if (host) {
+        room.gameId.completeExceptionally(e);
+      }
+      room.fail(e);
+      room.answered.countDown();
+    } finally {
+      room.playerDone();
+    }
+  }
+
+  private void awaitLobby(Room room, int gameId, boolean host) throws Exception {
+    // the host starts once everybody joined and the first questions are ready, the others wait for the start
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.timeoutSeconds);
+    while (System.nanoTime() < deadline && !room.failed.get()) {
+      JSONObject lobby = call("game/get/lobby", new JSONObject().put("gameId", gameId));
+      if (host) {
+        JSONArray usernames = lobby.optJSONArray("playersUsernames");
+        if (usernames != null && usernames.length() == options.players && lobby.optBoolean("ready")) {
+          return;
+        }
+      } else if ("IN_PROGRESS".equals(lobby.optString("status"))) {
+        return;
+      }
+      Thread.sleep(options.lobbyPollMs);
+    }
+    throw new IllegalStateException(room.failed.get() ? "another player failed" : "lobby timed out");
+  }
+
+  private void answerQuestions(Room room, int gameId, String session) throws Exception {
+    for (int number = 1; number <= options.questions && !room.failed.get(); number++) {
+      HttpResponse<String> question = send("game/get/question",
+          new JSONObject().put("gameId", gameId).put("questionNumber", number));
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.timeoutSeconds);
+      // 202 "pending" while the question is being generated
+      while (question.statusCode() == 202 && System.nanoTime() < deadline) {
+        Thread.sleep(options.questionPollMs);
+        question = send("game/get/question", new JSONObject().put("gameId", gameId).put("questionNumber", number));
+      }
+      expectOk("game/get/question", question);
+
+      long thinkMs = options.thinkMs == 0 ? 0 : ThreadLocalRandom.current().nextLong(options.thinkMs + 1);
+      Thread.sleep(thinkMs);
+      call("game/verify-answer", new JSONObject()
+          .put("session", session)
+          .put("gameId", gameId)
+          .put("questionNumber", number)
+          .put("submittedAnswerNumber", 1 + ThreadLocalRandom.current().nextInt(4))
+          .put("timeTakenToAnswerInSeconds", thinkMs / 1000));
+    }
+  }
+
+  private int firstTopicId() throws Exception {
+    HttpResponse<String> response = send("topic/get-all", new JSONObject());
+    expectOk("topic/get-all", response);
+    return new JSONArray(response.body()).getJSONObject(0).getInt("topicId");
+  }
+
+  /**
+   * Sends the request and returns the JSON body of a 2xx response, fails on other statuses.
+   */
+  private JSONObject call(String endpoint, JSONObject body) throws Exception {
+    HttpResponse<String> response = sendWithRetries(endpoint, body);
+    expectOk(endpoint, response);
+    return json(response);
+  }
+
+  /**
+   * Registers the player. A registration refused with 503 on its login part has created the user already,
+   * after such a retry "already exists" counts as success.
+   */
+  private void register(JSONObject credentials) throws Exception {
+    HttpResponse<String> response = send("auth/register", credentials);
+    for (int attempt = 1; response.statusCode() == 503 && attempt <= options.maxRetries; attempt++) {
+      retried.incrementAndGet();
+      Thread.sleep(retryDelayMs(response));
+      response = send("auth/register", credentials);
+      if (response.statusCode() == 404 && response.body().contains("User already exists")) {
+        return;
+      }
+    }
+    expectOk("auth/register", response);
+  }
+
+  // a 503 with Retry-After (busy password hasher, full generation queue) is retried like a browser user would
+  private HttpResponse<String> sendWithRetries(String endpoint, JSONObject body) throws Exception {
+    HttpResponse<String> response = send(endpoint, body);
+    for (int attempt = 1; response.statusCode() == 503 && attempt <= options.maxRetries; attempt++) {
+      retried.incrementAndGet();
+      Thread.sleep(retryDelayMs(response));
+      response = send(endpoint, body);
+    }
+    return response;
+  }
+
+  private static long retryDelayMs(HttpResponse<String> response) {
+    long seconds = response.headers().firstValue("Retry-After").map(Long::parseLong).orElse(1L);
+    // jitter, so that the refused players don't come back all at once
+    return TimeUnit.SECONDS.toMillis(seconds) + ThreadLocalRandom.current().nextLong(TimeUnit.SECONDS.toMillis(seconds) + 1);
+  }
+
+  private static JSONObject json(HttpResponse<String> response) throws Exception {
+    String text = response.body();
+    return text == null || text.isBlank() ? new JSONObject() : new JSONObject(text);
+  }
+
+  private HttpResponse<String> send(String endpoint, JSONObject body) throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(api.resolve(endpoint))
+        .timeout(Duration.ofSeconds(options.timeoutSeconds))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+        .build();
+    long start = System.nanoTime();
+    try {
+      HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+      stats.record(endpoint, System.nanoTime() - start, response.statusCode() >= 400);
+      return response;
+    } catch (Exception e) {
+      stats.record(endpoint, System.nanoTime() - start, true);
+      throw e;
+    }
+  }
+
+  private static void expectOk(String endpoint, HttpResponse<String> response) {
+    if (response.statusCode() / 100 != 2) {
+      throw new IllegalStateException(endpoint + " answered " + response.statusCode() + ": " + response.body());
+    }
+  }
+
+  private void report(double seconds) throws Exception {
+    Map<String, LoadStats.Summary> summaries = stats.summarize(seconds);
+    long requests = 0;
+    long errors = 0;
+    System.out.printf("%nFinished in %.1f s: %d rooms completed, %d failed%n", seconds, completedRooms.get(), failedRooms.get());
+    System.out.printf("%-22s %9s %8s %9s %10s %10s %10s %10s%n",
+        "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+    JSONObject endpoints = new JSONObject();
+    for (Map.Entry<String, LoadStats.Summary> entry : summaries.entrySet()) {
+      LoadStats.Summary summary = entry.getValue();
+      requests += summary.requests();
+      errors += summary.errors();
+      System.out.printf("%-22s %9d %7.2f%% %9.1f %10.2f %10.2f %10.2f %10.2f%n",
+          entry.getKey(), summary.requests(), summary.errorRate() * 100, summary.throughput(),
+          summary.p50Ms(), summary.p99Ms(), summary.p999Ms(), summary.maxMs());
+      endpoints.put(entry.getKey(), new JSONObject()
+          .put("requests", summary.requests())
+          .put("errors", summary.errors())
+          .put("errorRate", summary.errorRate())
+          .put("throughput", summary.throughput())
+          .put("p50Ms", summary.p50Ms())
+          .put("p99Ms", summary.p99Ms())
+          .put("p999Ms", summary.p999Ms())
+          .put("maxMs", summary.maxMs()));
+    }
+    System.out.printf("total: %d requests, %.1f req/s, %d errors, %d retried after 503%n",
+        requests, requests / seconds, errors, retried.get());
+    failures.forEach((reason, count) -> System.out.printf("room failure x%d: %s%n", count.get(), reason));
+
+    JSONObject report = new JSONObject()
+        .put("rooms", options.rooms)
+        .put("players", options.players)
+        .put("questions", options.questions)
+        .put("thinkMs", options.thinkMs)
+        .put("seconds", seconds)
+        .put("completedRooms", completedRooms.get())
+        .put("failedRooms", failedRooms.get())
+        .put("requests", requests)
+        .put("throughput", requests / seconds)
+        .put("errors", errors)
+        .put("retried", retried.get())
+        .put("endpoints", endpoints);
+    Path path = Path.of(options.report);
+    if (path.getParent() != null) {
+      Files.createDirectories(path.getParent());
+    }
+    Files.writeString(path, report.toString(2));
+    System.out.println("Report: " + path.toAbsolutePath());
+  }
+
+  private final class Room {
+    private final int number;
+    private final CompletableFuture<Integer> gameId = new CompletableFuture<>();
+    private final CountDownLatch answered = new CountDownLatch(options.players);
+    private final CountDownLatch done = new CountDownLatch(options.players);
+    private final AtomicInteger playing = new AtomicInteger(options.players);
+    private final AtomicBoolean failed = new AtomicBoolean();
+
+    private Room(int number) {
+      this.number = number;
+    }
+
+    private void fail(Exception e) {
+      if (failed.compareAndSet(false, true)) {
+        String reason = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        // the game id in the message would make every failure unique
+        failures.computeIfAbsent(reason.replaceAll("\\d+", "N"), key -> new AtomicInteger()).incrementAndGet();
+      }
+    }
+
+    private void playerDone() {
+      if (playing.decrementAndGet() == 0) {
+        (failed.get() ? failedRooms : completedRooms).incrementAndGet();
+      }
+      done.countDown();
+    }
+  }
+
+  /**
+   * Command line options --name=value.
+   */
+  public static final class Options {
+    int rooms = 10;
+    int players = 4;
+    int questions = 10;
+    long thinkMs = 1000;
+    long lobbyPollMs = 500;
+    long questionPollMs = 200;
+    int rampUpSeconds = 10;
+    int timeoutSeconds = 120;
+    long llmLatencyMs = 200;
+    int stubLlmPort;
+    // retries of a request answered 503, after its Retry-After
+    int maxRetries = 5;
+    String target;
+    String report = "target/load-report.json";
+    // extra arguments of the started application, e.g. --app-arg=--app.database.pool.maximum-pool-size=20
+    List<String> appArgs = new ArrayList<>();
+
+    static Options parse(String[] args) {
+      Options options = new Options();
+      for (String arg : args) {
+        if (!arg.startsWith("--") || !arg.contains("=")) {
+          throw new IllegalArgumentException("Expected --name=value, got " + arg);
+        }
+        String name = arg.substring(2, arg.indexOf('='));
+        String value = arg.substring(arg.indexOf('=') + 1);
+        switch (name) {
+          case "rooms" -> options.rooms = Integer.parseInt(value);
+          case "players" -> options.players = Integer.parseInt(value);
+          case "questions" -> options.questions = Integer.parseInt(value);
+          case "think-ms" -> options.thinkMs = Long.parseLong(value);
+          case "lobby-poll-ms" -> options.lobbyPollMs = Long.parseLong(value);
+          case "question-poll-ms" -> options.questionPollMs = Long.parseLong(value);
+          case "ramp-up-seconds" -> options.rampUpSeconds = Integer.parseInt(value);
+          case "timeout-seconds" -> options.timeoutSeconds = Integer.parseInt(value);
+          case "llm-latency-ms" -> options.llmLatencyMs = Long.parseLong(value);
+          case "stub-llm-port" -> options.stubLlmPort = Integer.parseInt(value);
+          case "max-retries" -> options.maxRetries = Integer.parseInt(value);
+          case "target" -> options.target = value;
+          case "report" -> options.report = value;
+          case "app-arg" -> options.appArgs.add(value);
+          default -> throw new IllegalArgumentException("Unknown option --" + name);
+        }
+      }
+      if (options.rooms < 1 || options.players < 1 || options.questions < 1) {
+        throw new IllegalArgumentException("rooms, players and questions must be positive");
+      }
+      return options;
+    }
+  }
+}
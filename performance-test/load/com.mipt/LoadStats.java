@@ -0,0 +1,82 @@
+package com.mipt;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latencies and errors of every endpoint called by the load generator.
+ */
+public class LoadStats {
+
+  private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+  public void record(String endpoint, long latencyNanos, boolean error) {
+    endpoints.computeIfAbsent(endpoint, name -> new Endpoint()).record(latencyNanos, error);
+  }
+
+  /**
+   * Summaries of the endpoints sorted by name, throughput is counted over the given wall time.
+   */
+  public Map<String, Summary> summarize(double seconds) {
+    Map<String, Summary> summaries = new TreeMap<>();
+    endpoints.forEach((name, endpoint) -> summaries.put(name, endpoint.summarize(seconds)));
+    return summaries;
+  }
+
+  private static final class Endpoint {
+    private long[] latencies = new long[1024];
+    private int size;
+    private long errors;
+
+    private synchronized void record(long latencyNanos, boolean error) {
+      if (size == latencies.length) {
+        latencies = Arrays.copyOf(latencies, size * 2);
+      }
+      latencies[size++] = latencyNanos;
+      if (error) {
+        errors++;
+      }
+    }
+
+    private synchronized Summary summarize(double seconds) {
+      long[] sorted = Arrays.copyOf(latencies, size);
+      Arrays.sort(sorted);
+      return new Summary(
+          size,
+          errors,
+          size == 0 ? 0 : (double) errors / size,
+          size / seconds,
+          percentile(sorted, 0.50),
+          percentile(sorted, 0.99),
+          percentile(sorted, 0.999),
+          size == 0 ? 0 : sorted[size - 1] / 1e6
+      );
+    }
+
+    private static double percentile(long[] sorted, double p) {
+      if (sorted.length == 0) {
+        return 0;
+      }
+      // nearest rank
+      int index = (int) Math.ceil(p * sorted.length) - 1;
+      return sorted[Math.max(0, index)] / 1e6;
+    }
+  }
+
+  /**
+   * Latencies are in milliseconds, throughput in requests per second.
+   */
+  public record Summary(
+      long requests,
+      long errors,
+      double errorRate,
+      double throughput,
+      double p50Ms,
+      double p99Ms,
+      double p999Ms,
+      double maxMs
+  ) {
+  }
+}
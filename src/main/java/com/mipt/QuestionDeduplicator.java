@@ -0,0 +1,86 @@
+package com.mipt;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+public class QuestionDeduplicator {
+
+    // Отсеивает повторы среди вопросов одной игры: точные (после нормализации текста)
+    // и почти одинаковые (сходство по символьным триграммам не ниже порога)
+
+    private final double nearDuplicateThreshold;
+    private final List<String> acceptedTexts = new ArrayList<>();
+    private final Set<String> normalizedTexts = new HashSet<>();
+    private final List<Set<String>> acceptedTrigrams = new ArrayList<>();
+
+    public QuestionDeduplicator(double nearDuplicateThreshold) {
+        this.nearDuplicateThreshold = nearDuplicateThreshold;
+    }
+
+    /**
+     * Запоминает вопрос и возвращает true, если он не повторяет уже принятые.
+     */
+    public synchronized boolean tryAccept(String questionText) {
+        String normalized = normalize(questionText);
+        if (normalized.isEmpty() || normalizedTexts.contains(normalized)) {
+            return false;
+        }
+
+        Set<String> trigrams = trigrams(normalized);
+        for (Set<String> accepted : acceptedTrigrams) {
+            if (similarity(trigrams, accepted) >= nearDuplicateThreshold) {
+                return false;
+            }
+        }
+
+        acceptedTexts.add(questionText);
+        normalizedTexts.add(normalized);
+        acceptedTrigrams.add(trigrams);
+        return true;
+    }
+
+    /**
+     * Принятые вопросы в виде нумерованного списка для контекста промпта.
+     */
+    public synchronized String acceptedContext() {
+        StringBuilder context = new StringBuilder();
+        for (int i = 0; i < acceptedTexts.size(); i++) {
+            context.append(i + 1).append(". ").append(acceptedTexts.get(i)).append("\n");
+        }
+        return context.toString();
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.toLowerCase(Locale.ROOT)
+            .replace('ё', 'е')
+            .replaceAll("[^\\p{L}\\p{N}]+", " ")
+            .trim();
+    }
+
+    static Set<String> trigrams(String normalized) {
+        String padded = " " + normalized + " ";
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    static double similarity(Set<String> first, Set<String> second) {
+        // коэффициент Жаккара
+        int intersection = 0;
+        for (String trigram : first) {
+            if (second.contains(trigram)) {
+                intersection++;
+            }
+        }
+        int union = first.size() + second.size() - intersection;
+        return union == 0 ? 1.0 : (double) intersection / union;
+    }
+}
@@ -1,26 +1,59 @@
 package com.mipt;
 
+import com.mipt.service.LlmClient;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
-import java.time.Duration;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 public class QuestionGenerator {
 
-    // Хранилище уже сгенерированных вопросов для предотвращения повторов
-    private static final Set<String> generatedQuestions = new HashSet<>();
-    private static final Object lock = new Object();
+    public static final String DEFAULT_CHAT_URL = "http://localhost:11434/api/chat";
+    public static final String DEFAULT_MODEL = "qwen2.5";
+    public static final double DEFAULT_NEAR_DUPLICATE_THRESHOLD = 0.8;
 
+    // Максимум попыток на один вопрос (первая + 3 повторные)
+    private static final int MAX_ATTEMPTS_PER_QUESTION = 4;
+
+    private static final QuestionGenerator DEFAULT_GENERATOR =
+        new QuestionGenerator(new LlmClient(DEFAULT_CHAT_URL), DEFAULT_MODEL, 1, DEFAULT_NEAR_DUPLICATE_THRESHOLD);
+
+    private final LlmClient llmClient;
+    private final String model;
+    // Сколько запросов к LLM может выполняться одновременно; 1 - последовательный режим
+    private final int maxInFlight;
+    private final double nearDuplicateThreshold;
+
+    public QuestionGenerator(LlmClient llmClient, String model, int maxInFlight, double nearDuplicateThreshold) {
+        this.llmClient = llmClient;
+        this.model = model;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.nearDuplicateThreshold = nearDuplicateThreshold;
+    }
+
+    /**
+     * Последовательная генерация с настройками по умолчанию (локальная Ollama).
+     */
     public static CompletableFuture<String> generate(String jsonString) {
+        return DEFAULT_GENERATOR.generateQuestions(jsonString);
+    }
+
+    public CompletableFuture<String> generateQuestions(String jsonString) {
+        return generateQuestions(jsonString, question -> {
+        });
+    }
+
+    /**
+     * onQuestion получает каждый принятый вопрос сразу, как только он готов, уже с окончательным
+     * номером; вопросы приходят по порядку номеров, поэтому их можно сразу сохранять в игру.
+     */
+    public CompletableFuture<String> generateQuestions(String jsonString, Consumer<JSONObject> onQuestion) {
         JSONArray inputArray = new JSONArray(jsonString);
         JSONObject obj = inputArray.getJSONObject(0);
 
@@ -28,22 +61,17 @@ public class QuestionGenerator {
         int numberOfQuestions = obj.getInt("numberOfQuestions");
         int difficult = obj.getInt("difficult");
 
-        // Очищаем хранилище при каждом новом вызове
-        synchronized (lock) {
-            generatedQuestions.clear();
-        }
+        // Хранилище уже сгенерированных вопросов - своё для каждого вызова, чтобы игры не мешали друг другу
+        QuestionDeduplicator deduplicator = new QuestionDeduplicator(nearDuplicateThreshold);
 
-        if (numberOfQuestions > 1) {
-            return generateSequentially(topic, numberOfQuestions, difficult);
+        if (maxInFlight > 1 && numberOfQuestions > 1) {
+            return new ParallelGeneration(topic, numberOfQuestions, difficult, deduplicator, onQuestion).start();
         }
-
-        return generateSingleQuestion(topic, difficult, 1, "");
+        return generateSequentially(topic, numberOfQuestions, difficult, deduplicator, onQuestion);
     }
 
-    private static CompletableFuture<String> generateSingleQuestion(String topic, int difficult,
-                                                                    int questionNumber, String previousQuestions) {
-        String url = "http://localhost:11434/api/chat";
-
+    private CompletableFuture<JSONObject> generateSingleQuestion(String topic, int difficult,
+                                                                 int questionNumber, String previousQuestions) {
         // Добавляем контекст о предыдущих вопросах, чтобы избежать повторов
         String contextPrompt = previousQuestions.isEmpty() ?
             "Пока нет сгенерированных вопросов." :
@@ -75,7 +103,7 @@ public class QuestionGenerator {
         );
 
         JSONObject payload = new JSONObject();
-        payload.put("model", "qwen2.5");
+        payload.put("model", model);
         payload.put("format", "json");
         payload.put("stream", false);
 
@@ -92,25 +120,11 @@ public class QuestionGenerator {
 
         payload.put("messages", messages);
 
-        HttpClient client = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(30))
-            .build();
-
-        HttpRequest req = HttpRequest.newBuilder()
-            .uri(URI.create(url))
-            .header("Content-Type", "application/json")
-            .POST(HttpRequest.BodyPublishers.ofString(payload.toString(), StandardCharsets.UTF_8))
-            .build();
-
-        return client.sendAsync(req, HttpResponse.BodyHandlers.ofString())
-            .thenApply(response -> {
-                if (response.statusCode() != 200) {
-                    System.err.println("Ошибка API: " + response.statusCode());
-                    return null;
-                }
-
+        // Общий клиент переиспользует соединения с LLM; ошибки HTTP приходят как исключения
+        return llmClient.chat(payload)
+            .thenApply(responseBody -> {
                 try {
-                    JSONObject responseObj = new JSONObject(response.body());
+                    JSONObject responseObj = new JSONObject(responseBody);
                     JSONObject messageObj = responseObj.getJSONObject("message");
                     String content = messageObj.getString("content").trim();
 
@@ -120,23 +134,8 @@ public class QuestionGenerator {
                         return null;
                     }
 
-                    JSONObject questionObj = new JSONObject(jsonContent);
-
-                    // Проверяем уникальность вопроса
-                    String questionText = questionObj.optString("question_text",
-                        questionObj.optString("question", ""));
-
-                    synchronized (lock) {
-                        // Если вопрос уже был сгенерирован, возвращаем null для повторной генерации
-                        if (!questionText.isEmpty() && generatedQuestions.contains(questionText.toLowerCase())) {
-                            System.err.println("Обнаружен повторный вопрос: " + questionText.substring(0, Math.min(50, questionText.length())));
-                            return null;
-                        }
-                        generatedQuestions.add(questionText.toLowerCase());
-                    }
-
-                    JSONObject fixedQuestion = fixQuestionStructure(questionObj, questionNumber);
-                    return fixedQuestion;
+                    // Проверка на повторы выполняется вызывающим кодом, когда ответ уже получен
+                    return fixQuestionStructure(new JSONObject(jsonContent), questionNumber);
 
                 } catch (Exception e) {
                     System.err.println("Ошибка при генерации вопроса " + questionNumber + ": " + e.getMessage());
@@ -146,76 +145,159 @@ public class QuestionGenerator {
             .exceptionally(ex -> {
                 System.err.println("Исключение при запросе вопроса " + questionNumber + ": " + ex.getMessage());
                 return null;
-            })
-            .thenApply(questionObj -> {
-                if (questionObj == null) {
-                    return "null";
-                }
-                return questionObj.toString();
             });
     }
 
-    private static CompletableFuture<String> generateSequentially(String topic, int numberOfQuestions, int difficult) {
+    private CompletableFuture<String> generateSequentially(String topic, int numberOfQuestions, int difficult,
+                                                           QuestionDeduplicator deduplicator,
+                                                           Consumer<JSONObject> onQuestion) {
         AtomicInteger generatedCount = new AtomicInteger(0);
         JSONArray allQuestions = new JSONArray();
-        StringBuilder previousQuestions = new StringBuilder();
 
-        // Вместо параллельной генерации делаем последовательную с учетом предыдущих вопросов
+        // Каждый следующий вопрос генерируется с учетом предыдущих
         return generateQuestionRecursively(topic, difficult, numberOfQuestions, 1,
-            generatedCount, allQuestions, previousQuestions, 0);
+            generatedCount, allQuestions, deduplicator, onQuestion, 0);
     }
 
-    private static CompletableFuture<String> generateQuestionRecursively(String topic, int difficult,
-                                                                         int totalQuestions, int currentQuestion,
-                                                                         AtomicInteger generatedCount,
-                                                                         JSONArray allQuestions,
-                                                                         StringBuilder previousQuestions,
-                                                                         int retryCount) {
-        if (currentQuestion > totalQuestions || retryCount > 3) { // Максимум 3 попытки на вопрос
-            JSONObject result = new JSONObject();
-            result.put("generated_count", generatedCount.get());
-            result.put("questions", allQuestions);
-
-            System.out.println("Сгенерировано вопросов: " + generatedCount.get() + " из " + totalQuestions);
-
-            if (generatedCount.get() < totalQuestions) {
-                System.out.println("Предупреждение: получено " + generatedCount.get() +
-                    " уникальных вопросов вместо " + totalQuestions);
-            }
-
+    private CompletableFuture<String> generateQuestionRecursively(String topic, int difficult,
+                                                                  int totalQuestions, int currentQuestion,
+                                                                  AtomicInteger generatedCount,
+                                                                  JSONArray allQuestions,
+                                                                  QuestionDeduplicator deduplicator,
+                                                                  Consumer<JSONObject> onQuestion,
+                                                                  int retryCount) {
+        if (currentQuestion > totalQuestions || retryCount >= MAX_ATTEMPTS_PER_QUESTION) {
+            logResult(generatedCount.get(), totalQuestions);
             return CompletableFuture.completedFuture(allQuestions.toString());
         }
 
-        return generateSingleQuestion(topic, difficult, currentQuestion, previousQuestions.toString())
-            .thenCompose(result -> {
-                if (result.equals("null")) {
-                    // Если не удалось сгенерировать, пробуем еще раз
+        return generateSingleQuestion(topic, difficult, currentQuestion, deduplicator.acceptedContext())
+            .thenCompose(question -> {
+                if (question == null || !deduplicator.tryAccept(question.getString("question_text"))) {
+                    // Если не удалось сгенерировать или вопрос повторяется, пробуем еще раз
                     System.err.println("Попытка " + (retryCount + 1) + " для вопроса " + currentQuestion + " не удалась");
                     return generateQuestionRecursively(topic, difficult, totalQuestions, currentQuestion,
-                        generatedCount, allQuestions, previousQuestions, retryCount + 1);
+                        generatedCount, allQuestions, deduplicator, onQuestion, retryCount + 1);
                 }
 
-                try {
-                    JSONObject question = new JSONObject(result);
+                // Добавляем вопрос в список и переходим к следующему
+                question.put("question_number", generatedCount.incrementAndGet());
+                allQuestions.put(question);
+                emit(onQuestion, question);
+                return generateQuestionRecursively(topic, difficult, totalQuestions, currentQuestion + 1,
+                    generatedCount, allQuestions, deduplicator, onQuestion, 0);
+            });
+    }
 
-                    // Добавляем вопрос в список
-                    allQuestions.put(question);
-                    generatedCount.incrementAndGet();
+    private static void emit(Consumer<JSONObject> onQuestion, JSONObject question) {
+        // ошибка получателя не должна останавливать генерацию остальных вопросов
+        try {
+            onQuestion.accept(question);
+        } catch (RuntimeException e) {
+            System.err.println("Ошибка обработки вопроса " + question.optInt("question_number") + ": " + e.getMessage());
+        }
+    }
 
-                    // Обновляем контекст для следующих вопросов
-                    String questionText = question.getString("question_text");
-                    previousQuestions.append(currentQuestion).append(". ").append(questionText).append("\n");
+    private static void logResult(int generatedCount, int totalQuestions) {
+        System.out.println("Сгенерировано вопросов: " + generatedCount + " из " + totalQuestions);
 
-                    // Переходим к следующему вопросу
-                    return generateQuestionRecursively(topic, difficult, totalQuestions, currentQuestion + 1,
-                        generatedCount, allQuestions, previousQuestions, 0);
+        if (generatedCount < totalQuestions) {
+            System.out.println("Предупреждение: получено " + generatedCount +
+                " уникальных вопросов вместо " + totalQuestions);
+        }
+    }
 
-                } catch (Exception e) {
-                    System.err.println("Ошибка при обработке вопроса " + currentQuestion + ": " + e.getMessage());
-                    return generateQuestionRecursively(topic, difficult, totalQuestions, currentQuestion,
-                        generatedCount, allQuestions, previousQuestions, retryCount + 1);
+    /**
+     * Параллельная генерация: одновременно выполняется до maxInFlight запросов.
+     * Повторы отсеиваются по мере прихода ответов, а их места генерируются заново
+     * (уже с контекстом принятых вопросов). Номера выдаются в порядке принятия вопросов.
+     */
+    private final class ParallelGeneration {
+        private final String topic;
+        private final int totalQuestions;
+        private final int difficult;
+        private final QuestionDeduplicator deduplicator;
+        private final Consumer<JSONObject> onQuestion;
+
+        private final JSONArray accepted = new JSONArray();
+        private final int[] attempts;
+        private final Deque<Integer> queue = new ArrayDeque<>();
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private int inFlight;
+
+        private ParallelGeneration(String topic, int totalQuestions, int difficult, QuestionDeduplicator deduplicator,
+                                   Consumer<JSONObject> onQuestion) {
+            this.topic = topic;
+            this.totalQuestions = totalQuestions;
+            this.difficult = difficult;
+            this.deduplicator = deduplicator;
+            this.onQuestion = onQuestion;
+            this.attempts = new int[totalQuestions];
+            for (int questionNumber = 1; questionNumber <= totalQuestions; questionNumber++) {
+                queue.add(questionNumber);
+            }
+        }
+
+        private CompletableFuture<String> start() {
+            launch();
+            return result;
+        }
+
+        private void launch() {
+            List<Integer> toSend = new ArrayList<>();
+            List<String> contexts = new ArrayList<>();
+            synchronized (this) {
+                while (inFlight < maxInFlight && !queue.isEmpty()) {
+                    int questionNumber = queue.poll();
+                    // первая попытка без контекста, повторная - со списком уже принятых вопросов
+                    contexts.add(attempts[questionNumber - 1] == 0 ? "" : deduplicator.acceptedContext());
+                    attempts[questionNumber - 1]++;
+                    inFlight++;
+                    toSend.add(questionNumber);
                 }
-            });
+            }
+
+            for (int i = 0; i < toSend.size(); i++) {
+                int questionNumber = toSend.get(i);
+                generateSingleQuestion(topic, difficult, questionNumber, contexts.get(i))
+                    .handle((question, ex) -> {
+                        onResponse(questionNumber, question);
+                        return null;
+                    });
+            }
+        }
+
+        private void onResponse(int questionNumber, JSONObject question) {
+            boolean finished;
+            synchronized (this) {
+                inFlight--;
+                if (question != null && deduplicator.tryAccept(question.getString("question_text"))) {
+                    // выдаём под блокировкой, чтобы вопросы доходили до onQuestion строго по номерам
+                    question.put("question_number", accepted.length() + 1);
+                    accepted.put(question);
+                    emit(onQuestion, question);
+                } else if (attempts[questionNumber - 1] < MAX_ATTEMPTS_PER_QUESTION) {
+                    System.err.println("Попытка " + attempts[questionNumber - 1] + " для вопроса " + questionNumber + " не удалась");
+                    queue.add(questionNumber);
+                }
+                finished = inFlight == 0 && queue.isEmpty();
+            }
+
+            if (finished) {
+                finish();
+            } else {
+                launch();
+            }
+        }
+
+        private void finish() {
+            String allQuestions;
+            synchronized (this) {
+                allQuestions = accepted.toString();
+                logResult(accepted.length(), totalQuestions);
+            }
+            result.complete(allQuestions);
+        }
     }
 
     private static String extractValidJson(String content) {
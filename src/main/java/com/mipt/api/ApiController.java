@@ -1,44 +1,66 @@
 package com.mipt.api;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mipt.dbAPI.DatabaseAccessException;
 import com.mipt.dbAPI.DbService;
+import com.mipt.dbAPI.OpenGamesDirectory;
 import com.mipt.domainModel.*;
 import com.mipt.initialization.AchievementsInit;
 import com.mipt.initialization.TopicsInit;
+import com.mipt.leaderboardsProcessor.LeaderboardSnapshot;
 import com.mipt.utils.BackendUtils;
 import com.mipt.utils.ValidationUtils;
+import com.mipt.service.GenerationScheduler;
+import com.mipt.service.LiveGameRegistry;
 import com.mipt.service.QuestionLoadingService;
+import com.mipt.service.QuestionPool;
 import org.json.JSONArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
-import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 
 @RestController
 @RequestMapping("/api")
 public class ApiController {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ApiController.class);
+
   private static final int MAX_SESSION_RETRIES = 5;
+  private static final int MAX_RANK_RADIUS = 50;
+  private static final int MAX_HISTORY_PAGE_SIZE = 100;
+  private static final String RANKED_USER_REQUIRED = "Either a session or a userId is required";
+  // seconds a client waits before retrying a login refused by the busy password hasher
+  private static final String PASSWORD_HASHING_RETRY_AFTER = "1";
 
   private final BackendUtils utils;
   private final DbService dbService;
   private final QuestionLoadingService questionLoadingService;
+  private final LiveGameRegistry liveGameRegistry;
+  private final QuestionPool questionPool;
+  private final LeaderboardSnapshot leaderboardSnapshot;
 
   /**
    * Wires the controller with the database layer and ensures that the topics
    * table is populated before serving requests.
    */
-  public ApiController(DbService dbService, QuestionLoadingService questionLoadingService) {
+  public ApiController(DbService dbService, QuestionLoadingService questionLoadingService,
+                       LiveGameRegistry liveGameRegistry, QuestionPool questionPool,
+                       LeaderboardSnapshot leaderboardSnapshot) {
     this.dbService = dbService;
     this.questionLoadingService = questionLoadingService;
+    this.liveGameRegistry = liveGameRegistry;
+    this.questionPool = questionPool;
+    this.leaderboardSnapshot = leaderboardSnapshot;
     this.utils = new BackendUtils();
 
     TopicsInit topicsInit = new TopicsInit(dbService);
@@ -57,16 +79,16 @@ public class ApiController {
       String session = utils.generateSessionId();
       try {
         dbService.authenticate(user.getUsername(), user.getPassword(), session);
+        ProfileSnapshot profile = dbService.getProfileSnapshot(session);
         user.setSession(session);
-        user.setUserId(dbService.getUserId(session));
-        Integer currentGameId = dbService.getCurrentGame(session);
-        if (currentGameId != null) {
+        user.setUserId(profile.userId());
+        if (profile.currentGameId() != null) {
           Game currentGame = new Game();
-          currentGame.setGameId(currentGameId);
+          currentGame.setGameId(profile.currentGameId());
           user.setCurrentGame(currentGame);
         }
-        user.setDescription(dbService.getDescription(session));
-        user.setGlobalPoints(dbService.getGlobalPoints(session));
+        user.setDescription(profile.description());
+        user.setGlobalPoints(profile.globalPoints());
         return new ResponseEntity<>(user, HttpStatus.OK);
       } catch (DatabaseAccessException e) {
         if (utils.isSessionCollision(e)) {
@@ -75,6 +97,8 @@ public class ApiController {
         return new ResponseEntity<>("Failed to authenticate user '" + user.getUsername() + "': " + e.getMessage(), HttpStatus.NOT_FOUND);
       } catch (SQLException e) {
         return new ResponseEntity<>("Database error occurred while authenticating user '" + user.getUsername() + "'", HttpStatus.INTERNAL_SERVER_ERROR);
+      } catch (RejectedExecutionException e) {
+        return passwordHashingBusy("Too many logins at once, try again later");
       }
     }
     return new ResponseEntity<>("Unable to generate unique session token", HttpStatus.INTERNAL_SERVER_ERROR);
@@ -101,9 +125,17 @@ public class ApiController {
       return new ResponseEntity<>("Failed to register user '" + user.getUsername() + "': " + e.getMessage(), HttpStatus.NOT_FOUND);
     } catch (SQLException e) {
       return new ResponseEntity<>("Database error occurred while registering user '" + user.getUsername() + "'", HttpStatus.INTERNAL_SERVER_ERROR);
+    } catch (RejectedExecutionException e) {
+      return passwordHashingBusy("Too many registrations at once, try again later");
     }
   }
 
+  private static ResponseEntity<Object> passwordHashingBusy(String message) {
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+        .header(HttpHeaders.RETRY_AFTER, PASSWORD_HASHING_RETRY_AFTER)
+        .body(message);
+  }
+
   /**
    * Revokes the active session for the supplied user.
    */
@@ -126,27 +158,24 @@ public class ApiController {
   @PostMapping("/users/profile")
   public ResponseEntity<Object> getProfile(@RequestBody User user) {
     try {
-      String session = user.getSession();
-      user.setUserId(dbService.getUserId(session));
+      ProfileSnapshot profile = dbService.getProfileSnapshot(user.getSession());
+      user.setUserId(profile.userId());
 
-      Integer currentGameId = dbService.getCurrentGame(session);
-      if (currentGameId != null) {
+      if (profile.currentGameId() != null) {
         Game currentGame = new Game();
-        currentGame.setGameId(currentGameId);
+        currentGame.setGameId(profile.currentGameId());
         user.setCurrentGame(currentGame);
       }
-      user.setAchievements(dbService.getAchievementsOf(session));
-      Integer[] gamesPlayed = dbService.getGamesPlayed(session);
-      user.setGamesPlayed(gamesPlayed);
-      user.setPicId(dbService.getProfilePic(session));
-      user.setDescription(dbService.getDescription(session));
-      user.setUsername(dbService.getUsername(session));
-      Timestamp lastActivity = dbService.getLastActivity(session);
-      if (lastActivity != null) {
-        user.setLastActivity(lastActivity.toInstant());
+      user.setAchievements(profile.achievements().toArray(new Integer[0]));
+      user.setGamesPlayed(profile.gamesPlayed().toArray(new Integer[0]));
+      user.setPicId(profile.picId());
+      user.setDescription(profile.description());
+      user.setUsername(profile.username());
+      if (profile.lastActivity() != null) {
+        user.setLastActivity(profile.lastActivity());
       }
-      user.setGlobalPoints(dbService.getGlobalPoints(session));
-      user.setGamesPlayedNumber(gamesPlayed.length);
+      user.setGlobalPoints(profile.globalPoints());
+      user.setGamesPlayedNumber(profile.gamesPlayed().size());
       return new ResponseEntity<>(user, HttpStatus.OK);
     } catch (DatabaseAccessException e) {
       return new ResponseEntity<>("Failed to get information about account '" + user.getUsername() + "': " + e.getMessage(), HttpStatus.NOT_FOUND);
@@ -214,32 +243,23 @@ public class ApiController {
       return new ResponseEntity<>("Database error occurred while configuring account " + user.getUsername() + "': " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
     } catch (DatabaseAccessException e) {
       return new ResponseEntity<>("Failed to configure information about user " + e.getMessage(), HttpStatus.NOT_FOUND);
+    } catch (RejectedExecutionException e) {
+      return passwordHashingBusy("Too many password changes at once, try again later");
     }
   }
 
   /**
-   * Returns historical game metadata for the requesting user, derived from
-   * per-game presets and cached end times.
+   * Returns a page of the games played by the requesting user, newest first. The nextCursor of
+   * the response is passed as cursor to get the following page.
    */
   @PostMapping("/users/get-games")
-  public ResponseEntity<Object> getGames(@RequestBody User user) {
+  public ResponseEntity<Object> getGames(
+      @RequestBody User user,
+      @RequestParam(value = "cursor", required = false) Integer cursor,
+      @RequestParam(value = "limit", defaultValue = "20") int limit) {
     try {
-      Integer[] gameIds = dbService.getGamesPlayed(user.getSession());
-      Game[] games = new Game[gameIds.length];
-      for (int i = 0; i < gameIds.length; i++) {
-        Game inpGame = new Game();
-        Integer gameId = gameIds[i];
-        inpGame.setGameId(gameId);
-        Integer[] preset = dbService.getPreset(gameId);
-        inpGame.setLevelDifficulty(preset[1]);
-        inpGame.setNumberOfQuestions(preset[2]);
-        inpGame.setParticipantsNumber(preset[3]);
-        inpGame.setTopicId(preset[4]);
-        inpGame.setGameEndTime(dbService.getGameEndTime(gameId).toInstant());
-
-        games[i] = inpGame;
-      }
-      return new ResponseEntity<>(games, HttpStatus.OK);
+      int boundedLimit = Math.max(1, Math.min(limit, MAX_HISTORY_PAGE_SIZE));
+      return new ResponseEntity<>(dbService.getGamesHistory(user.getSession(), cursor, boundedLimit), HttpStatus.OK);
     } catch (SQLException e) {
       return new ResponseEntity<>("Database error occurred while getting information about " + user.getUsername() + "': " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
     } catch (DatabaseAccessException e) {
@@ -314,18 +334,25 @@ public class ApiController {
   }
 
   /**
-   * Lists open games for the selected topic, allowing room discovery.
+   * Lists open games for the selected topic, allowing room discovery. The list is served from
+   * memory with an ETag, a request with a matching If-None-Match gets 304 without a body.
    */
   @PostMapping("/game/get-open")
-  public ResponseEntity<Object> getOpenGames(@RequestBody Topic topic) {
-    try {
-      int topicId = topic.getTopicId();
-      return new ResponseEntity<>(dbService.getOpenGames(topicId).toString(), HttpStatus.OK);
-    } catch (DatabaseAccessException e) {
-      return new ResponseEntity<>("Failed to get open games", HttpStatus.NOT_FOUND);
-    } catch (SQLException e) {
-      return new ResponseEntity<>("Database error occurred while getting open games", HttpStatus.INTERNAL_SERVER_ERROR);
+  public ResponseEntity<Object> getOpenGames(
+      @RequestBody Topic topic,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    OpenGamesDirectory.Listing listing = dbService.getOpenGamesListing(topic.getTopicId());
+    if (LeaderboardSnapshot.matches(ifNoneMatch, listing.etag())) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+          .eTag(listing.etag())
+          .cacheControl(CacheControl.noCache())
+          .build();
     }
+    return ResponseEntity.ok()
+        .eTag(listing.etag())
+        .cacheControl(CacheControl.noCache())
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(listing.body());
   }
 
   /**
@@ -356,9 +383,20 @@ public class ApiController {
       Integer[] preset = dbService.getPreset(gameId);
       data.setAuthorId(preset[0]);
 
-      // AI loadQuestions() METHOD NEEDED TO BE HERE !!!
-      System.out.println("Sent request");
-      questionLoadingService.loadQuestionsAsync(gameId, levelDifficulty, numberOfQuestions, topicId);
+      // questions come from the pre-generated pool, the LLM is asked only if the pool is short
+      if (!questionPool.tryServe(gameId)) {
+        GenerationScheduler.Admission admission =
+            questionLoadingService.loadQuestionsAsync(gameId, levelDifficulty, numberOfQuestions, topicId);
+        if (!admission.accepted()) {
+          // a room without questions is useless, it is removed before anyone joins it
+          dbService.deleteGame(gameId);
+          return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+              .header(HttpHeaders.RETRY_AFTER, "30")
+              .body("Question generation queue is full, try again later");
+        }
+        LOGGER.debug("Questions for game {} queued at position {}", gameId, admission.position());
+        data.setGenerationQueuePosition(admission.position());
+      }
 
       return joinRoom(data);
     } catch (DatabaseAccessException e) {
@@ -420,7 +458,7 @@ public class ApiController {
       lobby.setStatus(dbService.getStatus(gameId));
       List<String> usernames = List.of(dbService.getParticipantUsernames(gameId));
       lobby.setPlayersUsernames(usernames);
-      lobby.setReady(dbService.isGameReady(gameId));
+      lobby.setReady(questionLoadingService.isReadyToStart(gameId));
       return new ResponseEntity<>(lobby, HttpStatus.OK);
     } catch (DatabaseAccessException e) {
       return new ResponseEntity<>("Failed to modify privateness option for game " + lobby.getGameId(), HttpStatus.NOT_FOUND);
@@ -438,6 +476,7 @@ public class ApiController {
       int gameId = game.getGameId();
       dbService.setStatus(gameId, 2);
       dbService.setGameStartTime(gameId, Instant.now());
+      liveGameRegistry.activate(gameId);
       return new ResponseEntity<>(HttpStatus.OK);
     } catch (DatabaseAccessException e) {
       return new ResponseEntity<>("Failed to start the game " + game.getGameId(), HttpStatus.NOT_FOUND);
@@ -447,15 +486,30 @@ public class ApiController {
   }
 
   /**
-   * Fetches a single question by its sequential number inside a game.
+   * Fetches a single question by its sequential number inside a game. A question that is
+   * still being generated is awaited briefly, after that 202 "pending" is returned.
    */
   @PostMapping("/game/get/question")
   public ResponseEntity<Object> getQuestion(@RequestBody Question question) {
     try {
       int gameId = question.getGameId();
       int questionNumber = question.getQuestionNumber();
-      Question res = dbService.getQuestion(gameId, questionNumber);
+      Question res;
+      try {
+        res = dbService.getQuestion(gameId, questionNumber);
+      } catch (DatabaseAccessException e) {
+        if (!questionLoadingService.awaitQuestion(gameId, questionNumber)) {
+          if (questionLoadingService.isGenerating(gameId)) {
+            return new ResponseEntity<>("pending", HttpStatus.ACCEPTED);
+          }
+          throw e;
+        }
+        res = dbService.getQuestion(gameId, questionNumber);
+      }
       return new ResponseEntity<>(res, HttpStatus.OK);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new ResponseEntity<>("pending", HttpStatus.ACCEPTED);
     } catch (DatabaseAccessException e) {
       return new ResponseEntity<>("Failed to get question " + question.getQuestionNumber() + " for game " + question.getQuestionId(), HttpStatus.NOT_FOUND);
     } catch (SQLException e) {
@@ -465,28 +519,18 @@ public class ApiController {
 
   /**
    * Checks whether the submitted answer index matches the stored correct answer + counts points user will get.
+   * Scoring is done by the in-memory {@link LiveGameRegistry}; points reach the database in batches.
    */
   @PostMapping("/game/verify-answer")
   public ResponseEntity<Object> verifyAnswer(@RequestBody AnswerObject answerObject) {
     try {
-      int gameId = answerObject.getGameId();
-      int questionNumber = answerObject.getQuestionNumber();
-      int submittedAnswerNumber = answerObject.getSubmittedAnswerNumber();
-      int rightAnswer = dbService.getRightAnswer(gameId, questionNumber);
-
-      int levelDifficulty = dbService.getPreset(gameId)[1];
-      String session = answerObject.getSession();
-
-      if (submittedAnswerNumber == rightAnswer) {
-        int timeTakenToAnswerInSeconds = answerObject.getTimeTakenToAnswerInSeconds();
-        int pointsForAnswer = utils.countPoints(levelDifficulty, timeTakenToAnswerInSeconds);
-
-        dbService.addCurrentGamePoints(session, pointsForAnswer);
-        dbService.addGlobalPoints(session, pointsForAnswer);
-      }
-
-      int possiblePointsForAnswer = utils.countPossiblePoints(levelDifficulty);
-      dbService.addGlobalPossiblePoints(session, possiblePointsForAnswer);
+      liveGameRegistry.submitAnswer(
+          answerObject.getSession(),
+          answerObject.getGameId(),
+          answerObject.getQuestionNumber(),
+          answerObject.getSubmittedAnswerNumber(),
+          answerObject.getTimeTakenToAnswerInSeconds()
+      );
       return new ResponseEntity<>(HttpStatus.OK);
     } catch (DatabaseAccessException e) {
       return new ResponseEntity<>("Failed to verify " + answerObject.getQuestionNumber() + " for game " + answerObject.getQuestionId(), HttpStatus.NOT_FOUND);
@@ -503,6 +547,7 @@ public class ApiController {
     try {
       int gameId = game.getGameId();
       dbService.setStatus(gameId, 1);
+      liveGameRegistry.deactivate(gameId);
       return new ResponseEntity<>(HttpStatus.OK);
     } catch (DatabaseAccessException e) {
       return new ResponseEntity<>("Failed to pause the game " + game.getGameId(), HttpStatus.NOT_FOUND);
@@ -519,6 +564,7 @@ public class ApiController {
     try {
       int gameId = game.getGameId();
       dbService.setStatus(gameId, 2);
+      liveGameRegistry.activate(gameId);
       return new ResponseEntity<>(HttpStatus.OK);
     } catch (DatabaseAccessException e) {
       return new ResponseEntity<>("Failed to resume the game " + game.getGameId(), HttpStatus.NOT_FOUND);
@@ -534,6 +580,9 @@ public class ApiController {
   public ResponseEntity<Object> stopGame(@RequestBody Game game) {
     try {
       int gameId = game.getGameId();
+      // the points of the game are written before the stop resets them, outside of its transaction;
+      // the registry forgets the game once the stop is committed
+      dbService.flushScores();
       dbService.stopGame(gameId);
       return new ResponseEntity<>(HttpStatus.OK);
     } catch (DatabaseAccessException e) {
@@ -550,6 +599,7 @@ public class ApiController {
   public ResponseEntity<Object> deleteGame(@RequestBody Game game) {
     try {
       int gameId = game.getGameId();
+      dbService.flushScores();
       dbService.stopGame(gameId);
       dbService.deleteGame(gameId);
       return new ResponseEntity<>(HttpStatus.OK);
@@ -607,25 +657,81 @@ public class ApiController {
   }
 
   /**
-   * Serves the static global leaderboard file bundled with the application.
+   * Serves the latest published global leaderboard. The response carries an ETag,
+   * a request with a matching If-None-Match gets 304 without a body.
    */
-  @PostMapping("/leaderboard/get/global")
-  public ResponseEntity<Object> getGlobalLeaderboards() {
-    try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("global-leaderboards.json")) {
-      if (inputStream == null) {
-        throw new FileNotFoundException("File global-leaderboards.json not found in classpath");
+  @RequestMapping(value = "/leaderboard/get/global", method = {RequestMethod.GET, RequestMethod.POST})
+  public ResponseEntity<Object> getGlobalLeaderboards(
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    LeaderboardSnapshot.Snapshot snapshot = leaderboardSnapshot.current();
+    if (snapshot == null) {
+      return new ResponseEntity<>("Global leaderboards are not published yet", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    if (LeaderboardSnapshot.matches(ifNoneMatch, snapshot.etag())) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+          .eTag(snapshot.etag())
+          .cacheControl(CacheControl.noCache())
+          .build();
+    }
+    return ResponseEntity.ok()
+        .eTag(snapshot.etag())
+        .cacheControl(CacheControl.noCache())
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(snapshot.body());
+  }
+  
+  /**
+   * Returns the global place of a user, the number of ranked users and the percentile.
+   * The user is taken from the session if it is given, otherwise from userId.
+   */
+  @PostMapping("/leaderboard/get/rank")
+  public ResponseEntity<Object> getGlobalRank(@RequestBody User user) {
+    try {
+      Integer userId = resolveRankedUserId(user);
+      if (userId == null) {
+        return new ResponseEntity<>(RANKED_USER_REQUIRED, HttpStatus.BAD_REQUEST);
       }
+      return new ResponseEntity<>(dbService.getGlobalRankInfo(userId), HttpStatus.OK);
+    } catch (SQLException e) {
+      return new ResponseEntity<>("Database error occurred while getting the global rank", HttpStatus.INTERNAL_SERVER_ERROR);
+    } catch (DatabaseAccessException e) {
+      return new ResponseEntity<>("Failed to get the global rank", HttpStatus.NOT_FOUND);
+    }
+  }
 
-      String jsonContent = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
-      new ObjectMapper().readValue(jsonContent, Object.class);
+  /**
+   * Returns the users placed up to radius (at most 50) places above and below the user in the global leaderboard.
+   */
+  @PostMapping("/leaderboard/get/around")
+  public ResponseEntity<Object> getGlobalRankNeighbours(@RequestBody User user,
+                                                        @RequestParam(value = "radius", defaultValue = "5") int radius) {
+    try {
+      Integer userId = resolveRankedUserId(user);
+      if (userId == null) {
+        return new ResponseEntity<>(RANKED_USER_REQUIRED, HttpStatus.BAD_REQUEST);
+      }
+      int boundedRadius = Math.max(0, Math.min(radius, MAX_RANK_RADIUS));
+      return new ResponseEntity<>(dbService.getUsersAroundGlobalRank(userId, boundedRadius), HttpStatus.OK);
+    } catch (SQLException e) {
+      return new ResponseEntity<>("Database error occurred while getting the global rank", HttpStatus.INTERNAL_SERVER_ERROR);
+    } catch (DatabaseAccessException e) {
+      return new ResponseEntity<>("Failed to get the global rank", HttpStatus.NOT_FOUND);
+    }
+  }
 
-      return new ResponseEntity<>(jsonContent, HttpStatus.OK);
-    } catch (Exception e) {
-      System.out.println("Error reading global-leaderboards.json: " + e.getMessage());
-      return new ResponseEntity<>("Error reading global leaderboards", HttpStatus.INTERNAL_SERVER_ERROR);
+  private Integer resolveRankedUserId(User user) throws SQLException, DatabaseAccessException {
+    // null if the request names no user: userId is a primitive, an absent one is 0 and no user has it
+    if (user.getSession() == null) {
+      return user.getUserId() > 0 ? user.getUserId() : null;
+    }
+    Integer userId = dbService.getUserId(user.getSession());
+    if (userId == null) {
+      throw new DatabaseAccessException();
     }
+    return userId;
   }
-  
+
   /**
    * Lists all achievements supported by the platform.
    */
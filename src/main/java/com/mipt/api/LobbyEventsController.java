@@ -0,0 +1,50 @@
+package com.mipt.api;
+
+import com.mipt.dbAPI.DbService;
+import com.mipt.service.LobbyEvents;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.sql.SQLException;
+
+
+@RestController
+@RequestMapping("/api/game")
+public class LobbyEventsController {
+  private final DbService dbService;
+  private final LobbyEvents lobbyEvents;
+
+  public LobbyEventsController(DbService dbService, LobbyEvents lobbyEvents) {
+    this.dbService = dbService;
+    this.lobbyEvents = lobbyEvents;
+  }
+
+  /**
+   * Streams the lobby of the game as server-sent events: "lobby" with the lobby after every join,
+   * leave, status change and stored question, "closed" once the game is deleted.
+   */
+  @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public ResponseEntity<SseEmitter> getLobbyEvents(@RequestParam("gameId") int gameId) {
+    try {
+      if (!dbService.checkGameExists(gameId)) {
+        return ResponseEntity.notFound().build();
+      }
+      return ResponseEntity.ok(lobbyEvents.subscribeLobby(gameId));
+    } catch (SQLException e) {
+      return ResponseEntity.internalServerError().build();
+    }
+  }
+
+  /**
+   * Streams an "open-games" event whenever the list of open games may have changed.
+   */
+  @GetMapping(value = "/get-open/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public ResponseEntity<SseEmitter> getOpenGamesEvents() {
+    return ResponseEntity.ok(lobbyEvents.subscribeOpenGames());
+  }
+}
@@ -0,0 +1,118 @@
+package com.mipt.api;
+
+import com.mipt.dbAPI.ConnectionPoolMetrics;
+import com.mipt.dbAPI.PasswordHasher;
+import com.mipt.dbAPI.ScoreAccumulator;
+import com.mipt.dbAPI.SessionCache;
+import com.mipt.leaderboardsProcessor.Processor;
+import com.mipt.service.GenerationScheduler;
+import com.mipt.service.LlmClient;
+import com.mipt.service.LobbyEvents;
+import com.mipt.service.QuestionPool;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+  private final ConnectionPoolMetrics connectionPoolMetrics;
+  private final ScoreAccumulator scoreAccumulator;
+  private final SessionCache sessionCache;
+  private final LlmClient llmClient;
+  private final QuestionPool questionPool;
+  private final Processor leaderboardsProcessor;
+  private final LobbyEvents lobbyEvents;
+  private final GenerationScheduler generationScheduler;
+  private final PasswordHasher passwordHasher;
+
+  public MetricsController(ConnectionPoolMetrics connectionPoolMetrics, ScoreAccumulator scoreAccumulator,
+                           SessionCache sessionCache, LlmClient llmClient, QuestionPool questionPool,
+                           Processor leaderboardsProcessor, LobbyEvents lobbyEvents,
+                           GenerationScheduler generationScheduler, PasswordHasher passwordHasher) {
+    this.connectionPoolMetrics = connectionPoolMetrics;
+    this.scoreAccumulator = scoreAccumulator;
+    this.sessionCache = sessionCache;
+    this.llmClient = llmClient;
+    this.questionPool = questionPool;
+    this.leaderboardsProcessor = leaderboardsProcessor;
+    this.lobbyEvents = lobbyEvents;
+    this.generationScheduler = generationScheduler;
+    this.passwordHasher = passwordHasher;
+  }
+
+  /**
+   * Returns the state of the database connection pool: usage, wait time and timeouts.
+   */
+  @GetMapping("/db-pool")
+  public ResponseEntity<Object> getDbPoolMetrics() {
+    return new ResponseEntity<>(connectionPoolMetrics.snapshot(), HttpStatus.OK);
+  }
+
+  /**
+   * Returns the state of the points write-behind buffer: pending users and flush counters.
+   */
+  @GetMapping("/scores")
+  public ResponseEntity<Object> getScoreMetrics() {
+    return new ResponseEntity<>(scoreAccumulator.snapshot(), HttpStatus.OK);
+  }
+
+  /**
+   * Returns hit / miss counters of the session cache.
+   */
+  @GetMapping("/session-cache")
+  public ResponseEntity<Object> getSessionCacheMetrics() {
+    return new ResponseEntity<>(sessionCache.snapshot(), HttpStatus.OK);
+  }
+
+  /**
+   * Returns request, error and latency counters of the LLM client.
+   */
+  @GetMapping("/llm")
+  public ResponseEntity<Object> getLlmMetrics() {
+    return new ResponseEntity<>(llmClient.snapshot(), HttpStatus.OK);
+  }
+
+  /**
+   * Returns depth of the question generation queue, admission counters and wait / run time of the generation jobs.
+   */
+  @GetMapping("/generation")
+  public ResponseEntity<Object> getGenerationMetrics() {
+    return new ResponseEntity<>(generationScheduler.snapshot(), HttpStatus.OK);
+  }
+
+  /**
+   * Returns depth and refill state of every question pool and the share of games served from the pools.
+   */
+  @GetMapping("/question-pool")
+  public ResponseEntity<Object> getQuestionPoolMetrics() {
+    return new ResponseEntity<>(questionPool.snapshot(), HttpStatus.OK);
+  }
+
+  /**
+   * Returns run, rebuild and failure counters of the leaderboard job with the duration and row count of its last run.
+   */
+  @GetMapping("/leaderboard")
+  public ResponseEntity<Object> getLeaderboardMetrics() {
+    return new ResponseEntity<>(leaderboardsProcessor.snapshot(), HttpStatus.OK);
+  }
+
+  /**
+   * Returns the BCrypt cost, queue depth, rejections and rehashes of the password hasher with its wait / work time.
+   */
+  @GetMapping("/password-hashing")
+  public ResponseEntity<Object> getPasswordHashingMetrics() {
+    return new ResponseEntity<>(passwordHasher.snapshot(), HttpStatus.OK);
+  }
+
+  /**
+   * Returns the number of open lobby event streams and the event / push counters.
+   */
+  @GetMapping("/lobby-events")
+  public ResponseEntity<Object> getLobbyEventsMetrics() {
+    return new ResponseEntity<>(lobbyEvents.snapshot(), HttpStatus.OK);
+  }
+}
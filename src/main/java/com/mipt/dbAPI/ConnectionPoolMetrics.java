@@ -0,0 +1,96 @@
+package com.mipt.dbAPI;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConnectionPoolMetrics implements MetricsTrackerFactory {
+  // Collects wait-time / usage statistics of the Hikari pool behind DbService
+
+  private final LongAdder acquisitions = new LongAdder();
+  private final LongAdder acquireNanosTotal = new LongAdder();
+  private final LongAccumulator acquireNanosMax = new LongAccumulator(Long::max, 0);
+  private final LongAdder usages = new LongAdder();
+  private final LongAdder usageMillisTotal = new LongAdder();
+  private final LongAccumulator usageMillisMax = new LongAccumulator(Long::max, 0);
+  private final LongAdder timeouts = new LongAdder();
+  private final LongAdder connectionsCreated = new LongAdder();
+
+  private volatile PoolStats poolStats;
+
+  @Override
+  public IMetricsTracker create(String poolName, PoolStats poolStats) {
+    this.poolStats = poolStats;
+    return new IMetricsTracker() {
+      @Override
+      public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+        connectionsCreated.increment();
+      }
+
+      @Override
+      public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquisitions.increment();
+        acquireNanosTotal.add(elapsedAcquiredNanos);
+        acquireNanosMax.accumulate(elapsedAcquiredNanos);
+      }
+
+      @Override
+      public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        usages.increment();
+        usageMillisTotal.add(elapsedBorrowedMillis);
+        usageMillisMax.accumulate(elapsedBorrowedMillis);
+      }
+
+      @Override
+      public void recordConnectionTimeout() {
+        timeouts.increment();
+      }
+    };
+  }
+
+  public Snapshot snapshot() {
+    PoolStats stats = poolStats;
+    long acquired = acquisitions.sum();
+    long used = usages.sum();
+    return new Snapshot(
+        stats != null,
+        stats == null ? 0 : stats.getActiveConnections(),
+        stats == null ? 0 : stats.getIdleConnections(),
+        stats == null ? 0 : stats.getTotalConnections(),
+        stats == null ? 0 : stats.getPendingThreads(),
+        stats == null ? 0 : stats.getMaxConnections(),
+        acquired,
+        acquired == 0 ? 0 : nanosToMillis(acquireNanosTotal.sum()) / acquired,
+        nanosToMillis(acquireNanosMax.get()),
+        used == 0 ? 0 : (double) usageMillisTotal.sum() / used,
+        usageMillisMax.get(),
+        timeouts.sum(),
+        connectionsCreated.sum()
+    );
+  }
+
+  private static double nanosToMillis(long nanos) {
+    return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  public record Snapshot(
+      boolean pooled,
+      int activeConnections,
+      int idleConnections,
+      int totalConnections,
+      int pendingThreads,
+      int maxConnections,
+      long acquisitions,
+      double averageWaitMs,
+      double maxWaitMs,
+      double averageUsageMs,
+      long maxUsageMs,
+      long timeouts,
+      long connectionsCreated
+  ) {
+  }
+}
@@ -7,6 +7,11 @@ public class DatabaseProperties {
   private String url;
   private String user;
   private String password;
+  private Pool pool = new Pool();
+  private Scores scores = new Scores();
+  private SessionCache sessionCache = new SessionCache();
+  private Migrations migrations = new Migrations();
+  private PasswordHashing passwordHashing = new PasswordHashing();
 
   public String getUrl() {
     return url;
@@ -31,4 +36,251 @@ public class DatabaseProperties {
   public void setPassword(String password) {
     this.password = password;
   }
+
+  public Pool getPool() {
+    return pool;
+  }
+
+  public void setPool(Pool pool) {
+    this.pool = pool;
+  }
+
+  public Scores getScores() {
+    return scores;
+  }
+
+  public void setScores(Scores scores) {
+    this.scores = scores;
+  }
+
+  public SessionCache getSessionCache() {
+    return sessionCache;
+  }
+
+  public void setSessionCache(SessionCache sessionCache) {
+    this.sessionCache = sessionCache;
+  }
+
+  public Migrations getMigrations() {
+    return migrations;
+  }
+
+  public void setMigrations(Migrations migrations) {
+    this.migrations = migrations;
+  }
+
+  public PasswordHashing getPasswordHashing() {
+    return passwordHashing;
+  }
+
+  public void setPasswordHashing(PasswordHashing passwordHashing) {
+    this.passwordHashing = passwordHashing;
+  }
+
+  /**
+   * Connection pool settings. When the pool is disabled every repository call
+   * opens its own physical connection (the old DriverManagerDataSource mode).
+   */
+  public static class Pool {
+    private boolean enabled = true;
+    private int minimumIdle = 2;
+    private int maximumPoolSize = 10;
+    private long connectionTimeoutMs = 30_000;
+    private long idleTimeoutMs = 600_000;
+    private long maxLifetimeMs = 1_800_000;
+    // 0 disables leak detection
+    private long leakDetectionThresholdMs = 20_000;
+    // server-side prepared statement cache of the PostgreSQL driver (per connection)
+    private int prepareThreshold = 5;
+    private int preparedStatementCacheQueries = 256;
+    private int preparedStatementCacheSizeMb = 5;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getMinimumIdle() {
+      return minimumIdle;
+    }
+
+    public void setMinimumIdle(int minimumIdle) {
+      this.minimumIdle = minimumIdle;
+    }
+
+    public int getMaximumPoolSize() {
+      return maximumPoolSize;
+    }
+
+    public void setMaximumPoolSize(int maximumPoolSize) {
+      this.maximumPoolSize = maximumPoolSize;
+    }
+
+    public long getConnectionTimeoutMs() {
+      return connectionTimeoutMs;
+    }
+
+    public void setConnectionTimeoutMs(long connectionTimeoutMs) {
+      this.connectionTimeoutMs = connectionTimeoutMs;
+    }
+
+    public long getIdleTimeoutMs() {
+      return idleTimeoutMs;
+    }
+
+    public void setIdleTimeoutMs(long idleTimeoutMs) {
+      this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    public long getMaxLifetimeMs() {
+      return maxLifetimeMs;
+    }
+
+    public void setMaxLifetimeMs(long maxLifetimeMs) {
+      this.maxLifetimeMs = maxLifetimeMs;
+    }
+
+    public long getLeakDetectionThresholdMs() {
+      return leakDetectionThresholdMs;
+    }
+
+    public void setLeakDetectionThresholdMs(long leakDetectionThresholdMs) {
+      this.leakDetectionThresholdMs = leakDetectionThresholdMs;
+    }
+
+    public int getPrepareThreshold() {
+      return prepareThreshold;
+    }
+
+    public void setPrepareThreshold(int prepareThreshold) {
+      this.prepareThreshold = prepareThreshold;
+    }
+
+    public int getPreparedStatementCacheQueries() {
+      return preparedStatementCacheQueries;
+    }
+
+    public void setPreparedStatementCacheQueries(int preparedStatementCacheQueries) {
+      this.preparedStatementCacheQueries = preparedStatementCacheQueries;
+    }
+
+    public int getPreparedStatementCacheSizeMb() {
+      return preparedStatementCacheSizeMb;
+    }
+
+    public void setPreparedStatementCacheSizeMb(int preparedStatementCacheSizeMb) {
+      this.preparedStatementCacheSizeMb = preparedStatementCacheSizeMb;
+    }
+  }
+
+  /**
+   * Write-behind settings of the users points columns: pending points are written
+   * every flushIntervalMs or as soon as flushThreshold additions have been buffered.
+   */
+  public static class Scores {
+    private long flushIntervalMs = 500;
+    private int flushThreshold = 1000;
+
+    public long getFlushIntervalMs() {
+      return flushIntervalMs;
+    }
+
+    public void setFlushIntervalMs(long flushIntervalMs) {
+      this.flushIntervalMs = flushIntervalMs;
+    }
+
+    public int getFlushThreshold() {
+      return flushThreshold;
+    }
+
+    public void setFlushThreshold(int flushThreshold) {
+      this.flushThreshold = flushThreshold;
+    }
+  }
+
+  /**
+   * Session -> userId cache. A max size or ttl of 0 disables it.
+   */
+  public static class SessionCache {
+    private int maxSize = 10_000;
+    private long ttlMs = 300_000;
+
+    public int getMaxSize() {
+      return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    public long getTtlMs() {
+      return ttlMs;
+    }
+
+    public void setTtlMs(long ttlMs) {
+      this.ttlMs = ttlMs;
+    }
+  }
+
+  /**
+   * Versioned schema scripts V<version>__<description>.sql applied on startup.
+   */
+  public static class Migrations {
+    private boolean enabled = true;
+    private String location = "classpath*:db/migration";
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public String getLocation() {
+      return location;
+    }
+
+    public void setLocation(String location) {
+      this.location = location;
+    }
+  }
+
+  /**
+   * BCrypt work factor and the executor that hashes passwords. Threads 0 uses half of the CPUs;
+   * logins beyond threads + queueCapacity are refused with 503. Hashes of another cost
+   * are replaced on the next successful login.
+   */
+  public static class PasswordHashing {
+    private int cost = PasswordHasher.DEFAULT_COST;
+    private int threads = 0;
+    private int queueCapacity = 64;
+
+    public int getCost() {
+      return cost;
+    }
+
+    public void setCost(int cost) {
+      this.cost = cost;
+    }
+
+    public int getThreads() {
+      return threads;
+    }
+
+    public void setThreads(int threads) {
+      this.threads = threads;
+    }
+
+    public int getQueueCapacity() {
+      return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+      this.queueCapacity = queueCapacity;
+    }
+  }
 }
@@ -1,6 +1,5 @@
 package com.mipt.dbAPI;
 
-import at.favre.lib.crypto.bcrypt.BCrypt;
 import com.mipt.dbAPI.jpa.entity.AchievementEntity;
 import com.mipt.dbAPI.jpa.entity.GameEntity;
 import com.mipt.dbAPI.jpa.entity.GameHistoryEntity;
@@ -17,27 +16,120 @@ import com.mipt.dbAPI.jpa.repository.UserAchievementRepository;
 import com.mipt.dbAPI.jpa.repository.UserRepository;
 import com.mipt.domainModel.*;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 
 @Service
 @Transactional
 public class DbService {
   // API of QUIZ AI ARENA database
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(DbService.class);
   private static final String DELETE_ALL_KEYWORD = "DELETE_ALL_RECORDS_IN_DATABASE";
+  // the hot statements are public so that QueryPlanTest explains exactly what runs
+  // session -> user id, answered by users_session_idx INCLUDE (id) without touching the table
+  public static final String USER_ID_BY_SESSION_SQL = "SELECT id FROM users WHERE session = ?";
+  // re-check of a cached session -> user id, by primary key
+  public static final String SESSION_BY_USER_ID_SQL = "SELECT session FROM users WHERE id = ?";
+  public static final String PROFILE_SNAPSHOT_SQL = """
+      SELECT u.id, u.username, u.pic_id, u.description, u.last_activity,
+             u.global_points, u.global_possible_points, u.current_game_points, u.current_game_id,
+             ARRAY(SELECT gh.game_id FROM games_history gh WHERE gh.user_id = u.id ORDER BY gh.id) AS games_played,
+             ARRAY(SELECT ua.achievement_id FROM user_achievements ua
+                   WHERE ua.user_id = u.id ORDER BY ua.achievement_id) AS achievements
+      FROM users u
+      WHERE u.session = ?
+      """;
+  // keyset page of the history: rows before the cursor, newest first, with the game preset joined
+  public static final String GAMES_HISTORY_PAGE_SQL = """
+      SELECT gh.id, g.id, g.author_id, g.level_difficulty, g.number_of_questions, g.participants_number,
+             g.topic_id, g.game_end_time
+      FROM games_history gh
+      JOIN games g ON g.id = gh.game_id
+      WHERE gh.user_id = ? AND gh.id < ?
+      ORDER BY gh.id DESC
+      LIMIT ?
+      """;
+  private static final String POINTS_CHECKSUM_SQL =
+      "SELECT count(*), coalesce(sum(global_points), 0), coalesce(sum(global_possible_points), 0) FROM users";
+  // moves number_of_questions pooled questions of the game's topic and difficulty into the game;
+  // one statement, so either the whole set is taken or nothing (not enough questions, already loaded)
+  public static final String TAKE_POOL_QUESTIONS_SQL = """
+      WITH game AS (
+        SELECT g.id, g.topic_id, g.level_difficulty, g.number_of_questions FROM games g WHERE g.id = ?
+      ), picked AS (
+        SELECT p.id FROM question_pool p, game
+        WHERE p.topic_id = game.topic_id AND p.level_difficulty = game.level_difficulty
+        ORDER BY p.id
+        LIMIT (SELECT number_of_questions FROM game)
+        FOR UPDATE OF p SKIP LOCKED
+      ), taken AS (
+        DELETE FROM question_pool p USING picked
+        WHERE p.id = picked.id
+          AND (SELECT count(*) FROM picked) = (SELECT number_of_questions FROM game)
+          AND NOT EXISTS (SELECT 1 FROM questions q WHERE q.game_id = (SELECT id FROM game))
+        RETURNING p.id, p.question_text, p.right_answer_number, p.answer1, p.answer2, p.answer3, p.answer4
+      )
+      INSERT INTO questions (game_id, question_number, question_text, right_answer_number,
+                             answer1, answer2, answer3, answer4)
+      SELECT (SELECT id FROM game), row_number() OVER (ORDER BY taken.id), question_text, right_answer_number,
+             answer1, answer2, answer3, answer4
+      FROM taken
+      """;
+  // a place in a room is taken by one conditional statement: concurrent joins queue on the game row
+  // and the ones that find it full update nothing
+  private static final String TAKE_PLACE_SQL = """
+      UPDATE games SET current_participants = current_participants + 1
+      WHERE id = ? AND status = 0 AND current_participants < participants_number
+      """;
+  private static final String FREE_PLACE_SQL =
+      "UPDATE games SET current_participants = current_participants - 1 WHERE id = ? AND current_participants > 0";
+  // set the current game of the user and return the previous one; the locked row gives its latest value
+  private static final String MOVE_USER_SQL = """
+      UPDATE users u SET current_game_id = ?
+      FROM (SELECT id, current_game_id FROM users WHERE id = ? FOR UPDATE) previous
+      WHERE u.id = previous.id
+      RETURNING previous.current_game_id
+      """;
+  private static final String LEAVE_USER_SQL = """
+      UPDATE users u SET current_game_id = NULL
+      FROM (SELECT id, current_game_id FROM users WHERE id = ? FOR UPDATE) previous
+      WHERE u.id = previous.id AND previous.current_game_id IS NOT NULL
+      RETURNING previous.current_game_id
+      """;
+  public static final String LOCK_PARTICIPANTS_SQL =
+      "SELECT id FROM users WHERE current_game_id = ? ORDER BY id FOR UPDATE";
+  private static final String GAME_LEADERBOARD_SQL =
+      "SELECT id, username, current_game_points FROM users WHERE current_game_id = ? ORDER BY id";
 
   private final UserRepository userRepository;
   private final GameRepository gameRepository;
@@ -46,7 +138,14 @@ public class DbService {
   private final AchievementRepository achievementRepository;
   private final UserAchievementRepository userAchievementRepository;
   private final TopicRepository topicRepository;
+  private final JdbcTemplate jdbcTemplate;
+  private final ScoreAccumulator scoreAccumulator;
+  private final SessionCache sessionCache;
+  private final GlobalRanking globalRanking;
+  private final OpenGamesDirectory openGamesDirectory;
+  private final PasswordHasher passwordHasher;
   private final ConfigurableApplicationContext localContext;
+  private final List<GameListener> gameListeners = new CopyOnWriteArrayList<>();
 
   @Autowired
   public DbService(
@@ -56,7 +155,13 @@ public class DbService {
       GameHistoryRepository gameHistoryRepository,
       AchievementRepository achievementRepository,
       UserAchievementRepository userAchievementRepository,
-      TopicRepository topicRepository
+      TopicRepository topicRepository,
+      JdbcTemplate jdbcTemplate,
+      ScoreAccumulator scoreAccumulator,
+      SessionCache sessionCache,
+      GlobalRanking globalRanking,
+      OpenGamesDirectory openGamesDirectory,
+      PasswordHasher passwordHasher
   ) {
     this(
         userRepository,
@@ -66,6 +171,12 @@ public class DbService {
         achievementRepository,
         userAchievementRepository,
         topicRepository,
+        jdbcTemplate,
+        scoreAccumulator,
+        sessionCache,
+        globalRanking,
+        openGamesDirectory,
+        passwordHasher,
         null
     );
   }
@@ -83,6 +194,12 @@ public class DbService {
         bundle.achievementRepository,
         bundle.userAchievementRepository,
         bundle.topicRepository,
+        bundle.jdbcTemplate,
+        bundle.scoreAccumulator,
+        bundle.sessionCache,
+        bundle.globalRanking,
+        bundle.openGamesDirectory,
+        bundle.passwordHasher,
         bundle.context
     );
   }
@@ -95,6 +212,12 @@ public class DbService {
       AchievementRepository achievementRepository,
       UserAchievementRepository userAchievementRepository,
       TopicRepository topicRepository,
+      JdbcTemplate jdbcTemplate,
+      ScoreAccumulator scoreAccumulator,
+      SessionCache sessionCache,
+      GlobalRanking globalRanking,
+      OpenGamesDirectory openGamesDirectory,
+      PasswordHasher passwordHasher,
       ConfigurableApplicationContext localContext
   ) {
     this.userRepository = userRepository;
@@ -104,6 +227,12 @@ public class DbService {
     this.achievementRepository = achievementRepository;
     this.userAchievementRepository = userAchievementRepository;
     this.topicRepository = topicRepository;
+    this.jdbcTemplate = jdbcTemplate;
+    this.scoreAccumulator = scoreAccumulator;
+    this.sessionCache = sessionCache;
+    this.globalRanking = globalRanking;
+    this.openGamesDirectory = openGamesDirectory;
+    this.passwordHasher = passwordHasher;
     this.localContext = localContext;
   }
 
@@ -118,6 +247,8 @@ public class DbService {
     });
     context.register(DbServiceConfig.class);
     context.refresh();
+    // closes the connection pool together with the JVM
+    context.registerShutdownHook();
 
     return new RepositoryBundle(
         context,
@@ -127,7 +258,13 @@ public class DbService {
         context.getBean(GameHistoryRepository.class),
         context.getBean(AchievementRepository.class),
         context.getBean(UserAchievementRepository.class),
-        context.getBean(TopicRepository.class)
+        context.getBean(TopicRepository.class),
+        context.getBean(JdbcTemplate.class),
+        context.getBean(ScoreAccumulator.class),
+        context.getBean(SessionCache.class),
+        context.getBean(GlobalRanking.class),
+        context.getBean(OpenGamesDirectory.class),
+        context.getBean(PasswordHasher.class)
     );
   }
 
@@ -138,8 +275,52 @@ public class DbService {
     return userRepository.findBySession(session);
   }
 
+  private Integer findUserIdBySession(String session) {
+    if (session == null) {
+      return null;
+    }
+    Integer userId = sessionCache.get(session);
+    if (userId != null) {
+      // the cache is per instance: a log out or a new login on another one is only seen on the row
+      List<String> current = jdbcTemplate.queryForList(SESSION_BY_USER_ID_SQL, String.class, userId);
+      if (!current.isEmpty() && session.equals(current.get(0))) {
+        return userId;
+      }
+      sessionCache.invalidate(session);
+    }
+
+    long version = sessionCache.version();
+    List<Integer> userIds = jdbcTemplate.queryForList(USER_ID_BY_SESSION_SQL, Integer.class, session);
+    if (userIds.isEmpty()) {
+      return null;
+    }
+    sessionCache.put(session, userIds.get(0), version);
+    return userIds.get(0);
+  }
+
+  private int getUserIdBySessionOrThrow(String session) throws DatabaseAccessException {
+    Integer userId = findUserIdBySession(session);
+    if (userId == null) {
+      throw new DatabaseAccessException();
+    }
+    return userId;
+  }
+
   private UserEntity getUserBySessionOrThrow(String session) throws DatabaseAccessException {
-    return findBySessionExact(session).orElseThrow(DatabaseAccessException::new);
+    Integer userId = sessionCache.get(session);
+    if (userId != null) {
+      // primary key lookup, the session is re-checked in case it was changed elsewhere
+      Optional<UserEntity> cached = userRepository.findById(userId);
+      if (cached.isPresent() && session.equals(cached.get().getSession())) {
+        return cached.get();
+      }
+      sessionCache.invalidate(session);
+    }
+
+    long version = sessionCache.version();
+    UserEntity userEntity = findBySessionExact(session).orElseThrow(DatabaseAccessException::new);
+    sessionCache.put(session, userEntity.getId(), version);
+    return userEntity;
   }
 
   private GameEntity getGameOrThrow(int gameId) throws DatabaseAccessException {
@@ -173,6 +354,15 @@ public class DbService {
     return topic;
   }
 
+  private int readPoints(int userId, String column, ToIntFunction<ScoreDelta> pendingPoints)
+      throws SQLException, DatabaseAccessException {
+    // stored value plus the points still waiting in the write-behind buffer
+    return scoreAccumulator.read(() -> {
+      Integer stored = jdbcTemplate.queryForObject("SELECT " + column + " FROM users WHERE id = ?", Integer.class, userId);
+      return intOrZero(stored) + pendingPoints.applyAsInt(scoreAccumulator.pending(userId));
+    });
+  }
+
   private static Integer[] toIntegerArray(List<Integer> source) {
     return source.toArray(new Integer[0]);
   }
@@ -185,11 +375,46 @@ public class DbService {
     return Boolean.TRUE.equals(value);
   }
 
+  public void addGameListener(GameListener listener) {
+    gameListeners.add(listener);
+  }
+
+  private void fireGameEvent(Consumer<GameListener> event) {
+    // listeners only see committed changes
+    if (!gameListeners.isEmpty()) {
+      afterCommit(() -> notifyGameListeners(event));
+    }
+  }
+
+  private static void afterCommit(Runnable action) {
+    // inside a transaction the action waits for the commit and is dropped on rollback
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          action.run();
+        }
+      });
+    } else {
+      action.run();
+    }
+  }
+
+  private void notifyGameListeners(Consumer<GameListener> event) {
+    for (GameListener listener : gameListeners) {
+      try {
+        event.accept(listener);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Game listener {} failed", listener, e);
+      }
+    }
+  }
+
   // Users TABLE REFERRED METHODS
   //
 
   public Integer getUserId(String session) throws SQLException {
-    return findBySessionExact(session).map(UserEntity::getId).orElse(null);
+    return findUserIdBySession(session);
   }
 
   public boolean checkUserExists(String username) throws SQLException {
@@ -199,12 +424,16 @@ public class DbService {
     return userRepository.existsByUsername(username);
   }
 
+  // register, authenticate and changePassword hold no connection while the password is hashed:
+  // each repository call runs in its own transaction. Hashing runs on the PasswordHasher executor
+  // and throws RejectedExecutionException when it is overloaded.
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
   public void register(String username, String password) throws SQLException, DatabaseAccessException {
     if (checkUserExists(username)) {
       throw new DatabaseAccessException("User already exists");
     }
 
-    String hashedPassword = BCrypt.withDefaults().hashToString(12, password.toCharArray());
+    String hashedPassword = passwordHasher.hash(password);
     UserEntity userEntity = new UserEntity();
     userEntity.setUsername(username);
     userEntity.setPassword(hashedPassword);
@@ -214,30 +443,57 @@ public class DbService {
     userEntity.setGlobalPoints(0);
     userEntity.setGlobalPossiblePoints(0);
     userEntity.setCurrentGamePoints(0);
-    userRepository.save(userEntity);
+    UserEntity saved = userRepository.save(userEntity);
+    globalRanking.put(saved.getId(), username, 0, 0);
   }
 
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
   public void authenticate(String username, String password, String session) throws SQLException, DatabaseAccessException {
     UserEntity userEntity = userRepository.findByUsername(username).orElseThrow(DatabaseAccessException::new);
 
-    BCrypt.Result result = BCrypt.verifyer().verify(password.toCharArray(), userEntity.getPassword());
-    if (!result.verified) {
+    PasswordHasher.Verification verification = passwordHasher.verify(password, userEntity.getPassword());
+    if (!verification.verified()) {
       throw new DatabaseAccessException("Wrong password");
     }
+    if (verification.needsRehash()) {
+      rehashPassword(userEntity.getId(), password, userEntity.getPassword());
+    }
 
     if (session != null && findBySessionExact(session).isPresent()) {
       throw new DatabaseAccessException("Session key is not unique and already exists in database");
     }
 
-    userEntity.setSession(session);
-    userRepository.save(userEntity);
+    // only the session column: the loaded row may be stale by now
+    jdbcTemplate.update("UPDATE users SET session = ? WHERE id = ?", session, userEntity.getId());
+    String previousSession = userEntity.getSession();
+    afterCommit(() -> {
+      sessionCache.invalidate(previousSession);
+      sessionCache.invalidate(session);
+    });
+  }
+
+  private void rehashPassword(int userId, String password, String oldHash) {
+    // the new hash replaces the old one only if the password was not changed meanwhile;
+    // skipped when the hasher is busy, the next login tries again
+    try {
+      passwordHasher.hashAsync(password).thenAccept(newHash -> {
+        if (jdbcTemplate.update("UPDATE users SET password = ? WHERE id = ? AND password = ?", newHash, userId, oldHash) > 0) {
+          passwordHasher.rehashed();
+        }
+      }).exceptionally(e -> {
+        LOGGER.warn("Failed to rehash the password of user {}", userId, e);
+        return null;
+      });
+    } catch (RejectedExecutionException e) {
+      LOGGER.debug("Password hasher is busy, the password of user {} is rehashed later", userId);
+    }
   }
 
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
   public void changePassword(String session, String newPassword) throws SQLException, DatabaseAccessException {
     UserEntity userEntity = getUserBySessionOrThrow(session);
-    String hashedPassword = BCrypt.withDefaults().hashToString(12, newPassword.toCharArray());
-    userEntity.setPassword(hashedPassword);
-    userRepository.save(userEntity);
+    String hashedPassword = passwordHasher.hash(newPassword);
+    jdbcTemplate.update("UPDATE users SET password = ? WHERE id = ?", hashedPassword, userEntity.getId());
   }
 
   public void changeProfilePic(String session, int picId) throws SQLException, DatabaseAccessException {
@@ -284,24 +540,58 @@ public class DbService {
   }
 
   public void setCurrentGame(String session, Integer gameId) throws SQLException, DatabaseAccessException {
-    UserEntity userEntity = getUserBySessionOrThrow(session);
-
+    int userId = getUserIdBySessionOrThrow(session);
     if (gameId == null) {
-      userEntity.setCurrentGame(null);
-      userRepository.save(userEntity);
+      leaveCurrentGame(userId);
       return;
     }
 
-    GameEntity gameEntity = gameRepository.findByIdAndStatus(gameId, 0)
-        .orElseThrow(() -> new DatabaseAccessException("Game not found"));
+    // the user row is locked before any game row, as in leaveGame and stopGame; a player moving
+    // from another room then locks both rooms in id order, so two players swapping rooms don't deadlock
+    List<Integer> currentGame = jdbcTemplate.queryForList(
+        "SELECT current_game_id FROM users WHERE id = ? FOR UPDATE", Integer.class, userId);
+    if (currentGame.isEmpty()) {
+      throw new DatabaseAccessException();
+    }
+    Integer currentGameId = currentGame.get(0);
+    if (currentGameId != null && !currentGameId.equals(gameId)) {
+      jdbcTemplate.queryForList("SELECT id FROM games WHERE id IN (?, ?) ORDER BY id FOR UPDATE",
+          Integer.class, currentGameId, gameId);
+    }
 
-    Integer participantsNumber = gameEntity.getParticipantsNumber();
-    if (getCurrentParticipantsNumber(gameId).equals(participantsNumber)) {
+    // the place is taken before anything else is written: a full or closed room fails with no changes
+    if (jdbcTemplate.update(TAKE_PLACE_SQL, gameId) == 0) {
+      List<Integer> status = jdbcTemplate.queryForList("SELECT status FROM games WHERE id = ?", Integer.class, gameId);
+      if (status.isEmpty() || !Integer.valueOf(0).equals(status.get(0))) {
+        throw new DatabaseAccessException("Game not found");
+      }
       throw new DatabaseAccessException("Request is out of bounds");
     }
 
-    userEntity.setCurrentGame(gameEntity);
-    userRepository.save(userEntity);
+    List<Integer> previous = jdbcTemplate.query(MOVE_USER_SQL, (rs, rowNum) -> rs.getObject(1, Integer.class),
+        gameId, userId);
+    if (previous.isEmpty()) {
+      jdbcTemplate.update(FREE_PLACE_SQL, gameId);
+      throw new DatabaseAccessException();
+    }
+    Integer previousGameId = previous.get(0);
+    if (previousGameId != null) {
+      // frees the room the player came from, or gives back the second place of a player already in this room
+      jdbcTemplate.update(FREE_PLACE_SQL, previousGameId);
+    }
+
+    if (!gameId.equals(previousGameId)) {
+      afterCommit(() -> {
+        if (previousGameId != null) {
+          openGamesDirectory.participantsChanged(previousGameId, -1);
+        }
+        openGamesDirectory.participantsChanged(gameId, 1);
+      });
+      if (previousGameId != null) {
+        fireGameEvent(listener -> listener.participantLeft(previousGameId));
+      }
+    }
+    fireGameEvent(listener -> listener.participantJoined(gameId));
   }
 
   public Integer getCurrentGame(String session) throws SQLException, DatabaseAccessException {
@@ -327,8 +617,8 @@ public class DbService {
   }
 
   public Integer[] getGamesPlayed(String session) throws SQLException, DatabaseAccessException {
-    UserEntity userEntity = getUserBySessionOrThrow(session);
-    List<GameHistoryEntity> historyEntities = gameHistoryRepository.findByUser_IdOrderByIdAsc(userEntity.getId());
+    int userId = getUserIdBySessionOrThrow(session);
+    List<GameHistoryEntity> historyEntities = gameHistoryRepository.findByUser_IdOrderByIdAsc(userId);
     List<Integer> gameIds = new ArrayList<>();
     for (GameHistoryEntity historyEntity : historyEntities) {
       gameIds.add(historyEntity.getGame().getId());
@@ -336,6 +626,79 @@ public class DbService {
     return toIntegerArray(gameIds);
   }
 
+  /**
+   * Returns up to limit played games of the user older than the cursor (a games_history id,
+   * null for the newest games) in one query.
+   */
+  public GamesHistoryPage getGamesHistory(String session, Integer cursor, int limit)
+      throws SQLException, DatabaseAccessException {
+    int userId = getUserIdBySessionOrThrow(session);
+    if (limit < 1) {
+      throw new DatabaseAccessException("Bad params");
+    }
+
+    List<Integer> historyIds = new ArrayList<>();
+    List<Game> games = new ArrayList<>();
+    // one extra row tells whether there is a next page
+    jdbcTemplate.query(GAMES_HISTORY_PAGE_SQL, rs -> {
+      Game game = new Game();
+      game.setGameId(rs.getInt(2));
+      game.setAuthorId(rs.getInt(3));
+      int levelDifficulty = rs.getInt(4);
+      if (levelDifficulty != 0) {
+        game.setLevelDifficulty(levelDifficulty);
+      }
+      game.setNumberOfQuestions(rs.getInt(5));
+      game.setParticipantsNumber(rs.getInt(6));
+      game.setTopicId(rs.getInt(7));
+      Timestamp gameEndTime = rs.getTimestamp(8);
+      game.setGameEndTime(gameEndTime == null ? null : gameEndTime.toInstant());
+      historyIds.add(rs.getInt(1));
+      games.add(game);
+    }, userId, cursor == null ? Integer.MAX_VALUE : cursor, limit + 1);
+
+    if (games.size() <= limit) {
+      return new GamesHistoryPage(games, null);
+    }
+    return new GamesHistoryPage(games.subList(0, limit), historyIds.get(limit - 1));
+  }
+
+  public ProfileSnapshot getProfileSnapshot(String session) throws SQLException, DatabaseAccessException {
+    // user row, played games and achievements in one round trip; the arrays avoid a join fan-out
+    if (session == null) {
+      throw new DatabaseAccessException();
+    }
+
+    long version = sessionCache.version();
+    ProfileSnapshot profile = scoreAccumulator.read(() -> jdbcTemplate.query(PROFILE_SNAPSHOT_SQL, rs -> {
+      if (!rs.next()) {
+        return null;
+      }
+      int userId = rs.getInt("id");
+      ScoreDelta pending = scoreAccumulator.pending(userId);
+      Timestamp lastActivity = rs.getTimestamp("last_activity");
+      return new ProfileSnapshot(
+          userId,
+          rs.getString("username"),
+          rs.getInt("pic_id"),
+          rs.getString("description"),
+          lastActivity == null ? null : lastActivity.toInstant(),
+          rs.getInt("global_points") + pending.globalPoints(),
+          rs.getInt("global_possible_points") + pending.globalPossiblePoints(),
+          rs.getInt("current_game_points") + pending.currentGamePoints(),
+          rs.getObject("current_game_id", Integer.class),
+          List.of((Integer[]) rs.getArray("games_played").getArray()),
+          List.of((Integer[]) rs.getArray("achievements").getArray())
+      );
+    }, session));
+
+    if (profile == null) {
+      throw new DatabaseAccessException();
+    }
+    sessionCache.put(session, profile.userId(), version);
+    return profile;
+  }
+
   public CurrentGameObject getCurrentGameObjectBySession(String session) throws SQLException, DatabaseAccessException {
     UserEntity userEntity = getUserBySessionOrThrow(session);
     GameEntity gameEntity = userEntity.getCurrentGame();
@@ -347,52 +710,79 @@ public class DbService {
   }
 
   public void addGlobalPoints(String session, int points) throws SQLException, DatabaseAccessException {
-    UserEntity userEntity = getUserBySessionOrThrow(session);
-    userEntity.setGlobalPoints(userEntity.getGlobalPoints() + points);
-    userRepository.save(userEntity);
+    int userId = getUserIdBySessionOrThrow(session);
+    addScore(new ScoreDelta(userId, 0, points, 0));
   }
 
   public Integer getGlobalPoints(String session) throws SQLException, DatabaseAccessException {
-    UserEntity userEntity = getUserBySessionOrThrow(session);
-    return userEntity.getGlobalPoints();
+    int userId = getUserIdBySessionOrThrow(session);
+    return readPoints(userId, "global_points", ScoreDelta::globalPoints);
   }
 
   public void addGlobalPossiblePoints(String session, int possiblePoints) throws SQLException, DatabaseAccessException {
-    UserEntity userEntity = getUserBySessionOrThrow(session);
-    userEntity.setGlobalPossiblePoints(userEntity.getGlobalPossiblePoints() + possiblePoints);
-    userRepository.save(userEntity);
+    int userId = getUserIdBySessionOrThrow(session);
+    addScore(new ScoreDelta(userId, 0, 0, possiblePoints));
   }
 
   public Integer getGlobalPossiblePoints(String session) throws SQLException, DatabaseAccessException {
-    UserEntity userEntity = getUserBySessionOrThrow(session);
-    return userEntity.getGlobalPossiblePoints();
+    int userId = getUserIdBySessionOrThrow(session);
+    return readPoints(userId, "global_possible_points", ScoreDelta::globalPossiblePoints);
   }
 
   public void addCurrentGamePoints(String session, int points) throws SQLException, DatabaseAccessException {
-    UserEntity userEntity = getUserBySessionOrThrow(session);
-    userEntity.setCurrentGamePoints(userEntity.getCurrentGamePoints() + points);
-    userRepository.save(userEntity);
+    int userId = getUserIdBySessionOrThrow(session);
+    addScore(new ScoreDelta(userId, points, 0, 0));
   }
 
   public Integer getCurrentGamePoints(String session) throws SQLException, DatabaseAccessException {
-    UserEntity userEntity = getUserBySessionOrThrow(session);
-    return userEntity.getCurrentGamePoints();
+    int userId = getUserIdBySessionOrThrow(session);
+    return readPoints(userId, "current_game_points", ScoreDelta::currentGamePoints);
   }
 
   public void leaveGame(String session) throws SQLException, DatabaseAccessException {
-    UserEntity userEntity = getUserBySessionOrThrow(session);
-    if (userEntity.getCurrentGame() == null) {
+    int userId = getUserIdBySessionOrThrow(session);
+    if (leaveCurrentGame(userId) == null) {
       throw new DatabaseAccessException();
     }
+  }
 
-    userEntity.setCurrentGame(null);
-    userRepository.save(userEntity);
+  private Integer leaveCurrentGame(int userId) {
+    // returns the game the user left, null if the user was in no game
+    List<Integer> previous = jdbcTemplate.query(LEAVE_USER_SQL, (rs, rowNum) -> rs.getObject(1, Integer.class), userId);
+    if (previous.isEmpty()) {
+      return null;
+    }
+
+    int gameId = previous.get(0);
+    jdbcTemplate.update(FREE_PLACE_SQL, gameId);
+    afterCommit(() -> openGamesDirectory.participantsChanged(gameId, -1));
+    fireGameEvent(listener -> listener.participantLeft(gameId));
+    return gameId;
   }
 
   public void logOut(String session) throws SQLException, DatabaseAccessException {
     UserEntity userEntity = getUserBySessionOrThrow(session);
     userEntity.setSession(null);
     userRepository.save(userEntity);
+    // after the commit: a lookup running meanwhile could otherwise cache the old row again
+    afterCommit(() -> sessionCache.invalidate(session));
+  }
+
+  @Transactional(propagation = Propagation.SUPPORTS)
+  public void addScore(ScoreDelta delta) throws SQLException {
+    // buffered, reaches the users table with the next flush; the buffer and the ranking move
+    // once the caller's transaction commits, so a rollback leaves no points behind.
+    // Without a caller's transaction (a live game answer) no transaction and no connection is opened
+    afterCommit(() -> {
+      scoreAccumulator.add(delta);
+      globalRanking.add(delta.userId(), delta.globalPoints(), delta.globalPossiblePoints());
+    });
+  }
+
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  public void flushScores() throws SQLException {
+    // outside of any transaction: the flush takes a pool connection of its own
+    scoreAccumulator.flush();
   }
 
   //
@@ -424,7 +814,10 @@ public class DbService {
     gameEntity.setParticipantsNumber(participantsNumber);
     gameEntity.setTopic(topicEntity);
 
-    return gameRepository.save(gameEntity).getId();
+    int gameId = gameRepository.save(gameEntity).getId();
+    afterCommit(() -> openGamesDirectory.created(gameId, topicId, isPrivate, participantsNumber));
+    fireGameEvent(listener -> listener.gameCreated(gameId));
+    return gameId;
   }
 
   public Boolean checkGameExists(int gameId) throws SQLException {
@@ -447,6 +840,10 @@ public class DbService {
     GameEntity gameEntity = getGameOrThrow(gameId);
     gameEntity.setStatus(status);
     gameRepository.save(gameEntity);
+    if (status != 0) {
+      afterCommit(() -> openGamesDirectory.closed(gameId));
+    }
+    fireGameEvent(listener -> listener.statusChanged(gameId, status));
   }
 
   public Integer getStatus(int gameId) throws SQLException, DatabaseAccessException {
@@ -469,6 +866,9 @@ public class DbService {
     GameEntity gameEntity = getGameOrThrow(gameId);
     gameEntity.setPrivate(isPrivate);
     gameRepository.save(gameEntity);
+    int participantsNumber = gameEntity.getParticipantsNumber();
+    afterCommit(() -> openGamesDirectory.settingsChanged(gameId, isPrivate, participantsNumber));
+    fireGameEvent(listener -> listener.settingsChanged(gameId));
   }
 
   public Boolean getPrivate(int gameId) throws SQLException, DatabaseAccessException {
@@ -488,7 +888,10 @@ public class DbService {
   }
 
   public void stopGame(int gameId) throws SQLException, DatabaseAccessException {
+    // the caller flushes the scores first (flushScores), points still pending would be added to
+    // the current game points after they are reset here
     GameEntity gameEntity = getGameOrThrow(gameId);
+    lockRoom(gameId);
 
     gameEntity.setStatus(3);
     gameEntity.setGameEndTime(Timestamp.from(Instant.now()));
@@ -500,10 +903,14 @@ public class DbService {
       userEntity.setCurrentGamePoints(0);
     }
     userRepository.saveAll(participants);
+    afterCommit(() -> openGamesDirectory.closed(gameId));
+    fireGameEvent(listener -> listener.statusChanged(gameId, 3));
   }
 
   public void deleteGame(int gameId) throws SQLException, DatabaseAccessException {
+    // like stopGame, pending points of a played game are flushed by the caller
     getGameOrThrow(gameId);
+    lockRoom(gameId);
 
     List<UserEntity> participants = userRepository.findByCurrentGame_Id(gameId);
     for (UserEntity userEntity : participants) {
@@ -513,6 +920,26 @@ public class DbService {
     userRepository.saveAll(participants);
 
     gameRepository.deleteById(gameId);
+    afterCommit(() -> openGamesDirectory.closed(gameId));
+    fireGameEvent(listener -> listener.gameDeleted(gameId));
+  }
+
+  private void lockRoom(int gameId) {
+    // the participants' rows before the game row, the order of joins and leaves; once the game row
+    // is locked, joins in flight have finished and later ones wait, then find the game closed
+    jdbcTemplate.queryForList(LOCK_PARTICIPANTS_SQL, Integer.class, gameId);
+    jdbcTemplate.update("UPDATE games SET current_participants = 0 WHERE id = ?", gameId);
+  }
+
+  public int trimToLoadedQuestions(int gameId) throws SQLException, DatabaseAccessException {
+    // a game whose generation failed for good is played with the questions it got;
+    // they are stored in order, so they are numbered 1..count
+    GameEntity gameEntity = getGameOrThrow(gameId);
+    int loaded = (int) questionRepository.countByGame_Id(gameId);
+    gameEntity.setNumberOfQuestions(loaded);
+    gameRepository.save(gameEntity);
+    fireGameEvent(listener -> listener.settingsChanged(gameId));
+    return loaded;
   }
 
   public Boolean isGameReady(int gameId) throws DatabaseAccessException, SQLException {
@@ -522,6 +949,15 @@ public class DbService {
     return neededNumber == currentNumber;
   }
 
+  public Boolean isGameReady(int gameId, int firstQuestions) throws DatabaseAccessException, SQLException {
+    // questions are stored in order while they are generated, so the game can start
+    // as soon as its first questions exist
+    GameEntity gameEntity = getGameOrThrow(gameId);
+    long currentNumber = questionRepository.countByGame_Id(gameId);
+    int neededNumber = Math.min(intOrZero(gameEntity.getNumberOfQuestions()), Math.max(1, firstQuestions));
+    return currentNumber >= neededNumber;
+  }
+
   public Question getQuestion(int gameId, int questionNumber) throws SQLException, DatabaseAccessException {
     if (!checkGameExists(gameId)) {
       throw new DatabaseAccessException();
@@ -554,39 +990,123 @@ public class DbService {
     return questionEntity.getRightAnswerNumber();
   }
 
+  public Map<Integer, Integer> getRightAnswers(int gameId) throws SQLException, DatabaseAccessException {
+    // returns questionNumber -> rightAnswerNumber for every question already loaded into the game
+    if (!checkGameExists(gameId)) {
+      throw new DatabaseAccessException();
+    }
+
+    Map<Integer, Integer> rightAnswers = new HashMap<>();
+    for (QuestionEntity questionEntity : questionRepository.findByGame_IdOrderByQuestionNumberAsc(gameId)) {
+      rightAnswers.put(questionEntity.getQuestionNumber(), questionEntity.getRightAnswerNumber());
+    }
+    return rightAnswers;
+  }
+
   public void loadQuestions(int gameId, JSONArray jsonArr) throws SQLException, DatabaseAccessException {
-    GameEntity gameEntity = getGameOrThrow(gameId);
+    // the whole set is validated first and written by one multi-row INSERT,
+    // so a game never has part of its questions loaded
+    getGameOrThrow(gameId);
+    List<Object[]> rows = parseQuestions(jsonArr);
+    if (rows.isEmpty()) {
+      return;
+    }
+
+    StringBuilder sql = new StringBuilder(
+        "INSERT INTO questions (game_id, question_number, question_text, right_answer_number, "
+            + "answer1, answer2, answer3, answer4) VALUES ");
+    List<Object> args = new ArrayList<>();
+    for (int i = 0; i < rows.size(); i++) {
+      sql.append(i == 0 ? "" : ", ").append("(?, ?, ?, ?, ?, ?, ?, ?)");
+      args.add(gameId);
+      args.addAll(List.of(rows.get(i)));
+    }
+    jdbcTemplate.update(sql.toString(), args.toArray());
+    fireGameEvent(listener -> listener.questionsLoaded(gameId));
+  }
+
+  private static List<Object[]> parseQuestions(JSONArray jsonArr) throws DatabaseAccessException {
+    // returns {questionNumber, questionText, rightAnswerNumber, answer1..answer4} per question
     final int answerAmount = 4;
+    List<Object[]> rows = new ArrayList<>();
+    Set<Integer> questionNumbers = new HashSet<>();
+
+    try {
+      for (int i = 0; i < jsonArr.length(); i++) {
+        JSONObject itemObject = jsonArr.getJSONObject(i);
+        int questionNumber = itemObject.getInt("question_number");
+        String questionText = itemObject.getString("question_text");
+        int rightAnswerNumber = itemObject.getInt("right_answer_number");
+        if (!questionNumbers.add(questionNumber)) {
+          throw new DatabaseAccessException("Duplicate question number");
+        }
+        if (rightAnswerNumber < 1 || rightAnswerNumber > answerAmount) {
+          throw new DatabaseAccessException("Bad right answer number");
+        }
 
-    for (int i = 0; i < jsonArr.length(); i++) {
-      JSONObject itemObject = jsonArr.getJSONObject(i);
-      int questionNumber = itemObject.getInt("question_number");
-      String questionText = itemObject.getString("question_text");
-      int rightAnswerNumber = itemObject.getInt("right_answer_number");
-
-      QuestionEntity questionEntity = new QuestionEntity();
-      questionEntity.setGame(gameEntity);
-      questionEntity.setQuestionNumber(questionNumber);
-      questionEntity.setQuestionText(questionText);
-      questionEntity.setRightAnswerNumber(rightAnswerNumber);
-
-      JSONArray availableAnswers = itemObject.getJSONArray("available_answers");
-      for (int j = 0; j < answerAmount; j++) {
-        JSONObject answerObject = availableAnswers.getJSONObject(j);
-        int answerIndex = answerObject.getInt("index");
-        String answer = answerObject.getString("answer");
-
-        switch (answerIndex) {
-          case 1 -> questionEntity.setAnswer1(answer);
-          case 2 -> questionEntity.setAnswer2(answer);
-          case 3 -> questionEntity.setAnswer3(answer);
-          case 4 -> questionEntity.setAnswer4(answer);
-          default -> throw new DatabaseAccessException("Bad answer index");
+        String[] answers = new String[answerAmount];
+        JSONArray availableAnswers = itemObject.getJSONArray("available_answers");
+        for (int j = 0; j < answerAmount; j++) {
+          JSONObject answerObject = availableAnswers.getJSONObject(j);
+          int answerIndex = answerObject.getInt("index");
+          if (answerIndex < 1 || answerIndex > answerAmount || answers[answerIndex - 1] != null) {
+            throw new DatabaseAccessException("Bad answer index");
+          }
+          answers[answerIndex - 1] = answerObject.getString("answer");
         }
+
+        rows.add(new Object[]{
+            questionNumber, questionText, rightAnswerNumber, answers[0], answers[1], answers[2], answers[3]
+        });
       }
+    } catch (JSONException e) {
+      throw new DatabaseAccessException("Bad questions json: " + e.getMessage());
+    }
+    return rows;
+  }
+
+  public int addPoolQuestions(int topicId, int levelDifficulty, JSONArray jsonArr)
+      throws SQLException, DatabaseAccessException {
+    // validated like loadQuestions; question numbers are not stored, a game gets its own on take
+    List<Object[]> rows = parseQuestions(jsonArr);
+    if (rows.isEmpty()) {
+      return 0;
+    }
 
-      questionRepository.save(questionEntity);
+    StringBuilder sql = new StringBuilder(
+        "INSERT INTO question_pool (topic_id, level_difficulty, question_text, right_answer_number, "
+            + "answer1, answer2, answer3, answer4, created_at) VALUES ");
+    List<Object> args = new ArrayList<>();
+    Timestamp createdAt = Timestamp.from(Instant.now());
+    for (int i = 0; i < rows.size(); i++) {
+      sql.append(i == 0 ? "" : ", ").append("(?, ?, ?, ?, ?, ?, ?, ?, ?)");
+      Object[] row = rows.get(i);
+      args.add(topicId);
+      args.add(levelDifficulty);
+      args.addAll(List.of(row).subList(1, row.length));
+      args.add(createdAt);
     }
+    return jdbcTemplate.update(sql.toString(), args.toArray());
+  }
+
+  public boolean takePoolQuestions(int gameId) throws SQLException, DatabaseAccessException {
+    // returns false if the pool cannot cover the whole game, the game keeps no questions then
+    getGameOrThrow(gameId);
+    boolean taken = jdbcTemplate.update(TAKE_POOL_QUESTIONS_SQL, gameId) > 0;
+    if (taken) {
+      fireGameEvent(listener -> listener.questionsLoaded(gameId));
+    }
+    return taken;
+  }
+
+  public Map<PoolKey, Integer> getPoolDepths() throws SQLException {
+    Map<PoolKey, Integer> depths = new HashMap<>();
+    jdbcTemplate.query(
+        "SELECT topic_id, level_difficulty, count(*) FROM question_pool GROUP BY topic_id, level_difficulty",
+        rs -> {
+          depths.put(new PoolKey(rs.getInt(1), rs.getInt(2)), rs.getInt(3));
+        });
+    return depths;
   }
 
   public String[] getParticipantUsernames(int gameId) throws SQLException, DatabaseAccessException {
@@ -602,80 +1122,137 @@ public class DbService {
     return usernames.toArray(new String[0]);
   }
 
+  public Map<String, Integer> getParticipantSessions(int gameId) throws SQLException, DatabaseAccessException {
+    // returns session -> userId of the logged in participants of the game
+    if (!checkGameExists(gameId)) {
+      throw new DatabaseAccessException();
+    }
+
+    Map<String, Integer> sessions = new HashMap<>();
+    for (UserEntity participant : userRepository.findByCurrentGame_Id(gameId)) {
+      if (participant.getSession() != null) {
+        sessions.put(participant.getSession(), participant.getId());
+      }
+    }
+    return sessions;
+  }
+
   public JSONArray getGameLeaderboards(int gameId) throws SQLException, DatabaseAccessException {
     if (!checkGameExists(gameId)) {
       throw new DatabaseAccessException();
     }
 
-    List<UserEntity> users = userRepository.findByCurrentGame_IdOrderByCurrentGamePointsDesc(gameId);
+    record Row(String username, int points) {
+    }
+
+    // stored points plus the pending ones, so the read does not have to flush
+    List<Row> rows = scoreAccumulator.read(() -> jdbcTemplate.query(GAME_LEADERBOARD_SQL, (rs, rowNum) -> new Row(
+        rs.getString("username"),
+        rs.getInt("current_game_points") + scoreAccumulator.pending(rs.getInt("id")).currentGamePoints()
+    ), gameId));
+    rows.sort(Comparator.comparingInt(Row::points).reversed());
+
     JSONArray result = new JSONArray();
-    for (UserEntity userEntity : users) {
-      result.put(new JSONArray().put(userEntity.getUsername()).put(userEntity.getCurrentGamePoints()));
+    for (Row row : rows) {
+      result.put(new JSONArray().put(row.username()).put(row.points()));
     }
     return result;
   }
 
   public JSONArray getGlobalLeaderboards() throws SQLException {
-    List<UserEntity> users = userRepository.findTop100ByOrderByGlobalPointsDescGlobalPossiblePointsAsc();
+    // served from the in-memory ranking, which already includes points not flushed yet
     JSONArray result = new JSONArray();
-
-    for (UserEntity userEntity : users) {
+    for (GlobalRanking.RankedUser user : globalRanking.top(100)) {
       JSONArray row = new JSONArray();
-      row.put(userEntity.getId());
-      row.put(userEntity.getUsername());
-      row.put(userEntity.getGlobalPoints());
-      row.put(userEntity.getGlobalPossiblePoints());
+      row.put(user.userId());
+      row.put(user.username());
+      row.put(user.globalPoints());
+      row.put(user.globalPossiblePoints());
       result.put(row);
     }
 
     return result;
   }
 
+  public Integer getGlobalRank(int userId) {
+    return globalRanking.rankOf(userId);
+  }
+
+  public GlobalRanking.RankInfo getGlobalRankInfo(int userId) throws DatabaseAccessException {
+    GlobalRanking.RankInfo rankInfo = globalRanking.rankInfo(userId);
+    if (rankInfo == null) {
+      throw new DatabaseAccessException();
+    }
+
+    return rankInfo;
+  }
+
+  public List<GlobalRanking.RankedUser> getUsersAroundGlobalRank(int userId, int radius) throws DatabaseAccessException {
+    List<GlobalRanking.RankedUser> users = globalRanking.around(userId, radius);
+    if (users == null) {
+      throw new DatabaseAccessException();
+    }
+
+    return users;
+  }
+
+  public GlobalRanking.Checksum getStoredRankingChecksum() throws SQLException, DatabaseAccessException {
+    // users table plus the points still waiting in the write-behind buffer, without reading the rows
+    return scoreAccumulator.read(() -> {
+      GlobalRanking.Checksum stored = jdbcTemplate.queryForObject(POINTS_CHECKSUM_SQL,
+          (rs, rowNum) -> new GlobalRanking.Checksum(rs.getLong(1), rs.getLong(2), rs.getLong(3)));
+      if (stored == null) {
+        throw new DatabaseAccessException();
+      }
+      ScoreDelta pending = scoreAccumulator.pendingTotal();
+      return new GlobalRanking.Checksum(
+          stored.users(),
+          stored.globalPoints() + pending.globalPoints(),
+          stored.globalPossiblePoints() + pending.globalPossiblePoints()
+      );
+    });
+  }
+
+  public GlobalRanking.Checksum getGlobalRankingChecksum() {
+    return globalRanking.checksum();
+  }
+
+  public int rebuildGlobalRanking() throws SQLException, DatabaseAccessException {
+    return scoreAccumulator.read(() -> globalRanking.rebuild(scoreAccumulator::pending));
+  }
+
   public Integer getCurrentParticipantsNumber(int gameId) throws SQLException, DatabaseAccessException {
-    if (!checkGameExists(gameId)) {
+    List<Integer> participants = jdbcTemplate.queryForList(
+        "SELECT current_participants FROM games WHERE id = ?", Integer.class, gameId);
+    if (participants.isEmpty()) {
       throw new DatabaseAccessException();
     }
 
-    return (int) userRepository.countParticipantsInGame(gameId);
+    return participants.get(0);
   }
 
   public void changeParticipantsNumber(int gameId, int participantsNumber) throws SQLException, DatabaseAccessException {
     GameEntity gameEntity = getGameOrThrow(gameId);
     gameEntity.setParticipantsNumber(participantsNumber);
     gameRepository.save(gameEntity);
+    boolean isPrivate = boolOrFalse(gameEntity.getIsPrivate());
+    afterCommit(() -> openGamesDirectory.settingsChanged(gameId, isPrivate, participantsNumber));
+    fireGameEvent(listener -> listener.settingsChanged(gameId));
   }
 
   public JSONArray getOpenGames() throws SQLException, DatabaseAccessException {
-    List<GameEntity> games = gameRepository.findByIsPrivateFalseAndStatusOrderByIdAsc(0);
-    JSONArray result = new JSONArray();
-
-    for (GameEntity gameEntity : games) {
-      JSONArray row = new JSONArray();
-      int gameId = gameEntity.getId();
-      row.put(gameId);
-      row.put(gameEntity.getTopic() == null ? 0 : gameEntity.getTopic().getId());
-      row.put(getCurrentParticipantsNumber(gameId));
-      row.put(gameEntity.getParticipantsNumber());
-      result.put(row);
-    }
-
-    return result;
+    return new JSONArray(new String(openGamesDirectory.listing().body(), StandardCharsets.UTF_8));
   }
 
   public JSONArray getOpenGames(int topicId) throws SQLException, DatabaseAccessException {
-    List<GameEntity> games = gameRepository.findByIsPrivateFalseAndStatusAndTopic_IdOrderByIdAsc(0, topicId);
-    JSONArray result = new JSONArray();
-
-    for (GameEntity gameEntity : games) {
-      JSONArray row = new JSONArray();
-      int gameId = gameEntity.getId();
-      row.put(gameId);
-      row.put(getCurrentParticipantsNumber(gameId));
-      row.put(gameEntity.getParticipantsNumber());
-      result.put(row);
-    }
+    return new JSONArray(new String(openGamesDirectory.listing(topicId).body(), StandardCharsets.UTF_8));
+  }
 
-    return result;
+  /**
+   * Open games of the topic as ready-to-send JSON, the same bytes are returned until the topic changes.
+   */
+  public OpenGamesDirectory.Listing getOpenGamesListing(int topicId) {
+    return openGamesDirectory.listing(topicId);
   }
 
   //
@@ -707,10 +1284,10 @@ public class DbService {
   }
 
   public Integer[] checkAchievementAchieved(String session, Achievement achieved) throws SQLException, DatabaseAccessException {
-    UserEntity userEntity = getUserBySessionOrThrow(session);
+    int userId = getUserIdBySessionOrThrow(session);
 
     List<Integer> achievementIds = achievementRepository.findQualifiedUnattachedAchievementIds(
-        userEntity.getId(),
+        userId,
         achieved.getProfilePicNeeded(),
         achieved.getDescriptionNeeded(),
         achieved.getGamesNumberNeeded(),
@@ -725,8 +1302,8 @@ public class DbService {
   }
 
   public Integer[] getAchievementsOf(String session) throws SQLException, DatabaseAccessException {
-    UserEntity userEntity = getUserBySessionOrThrow(session);
-    List<UserAchievementEntity> attached = userAchievementRepository.findByUser_IdOrderByAchievement_Id(userEntity.getId());
+    int userId = getUserIdBySessionOrThrow(session);
+    List<UserAchievementEntity> attached = userAchievementRepository.findByUser_IdOrderByAchievement_Id(userId);
 
     List<Integer> achievementIds = new ArrayList<>();
     for (UserAchievementEntity userAchievementEntity : attached) {
@@ -795,6 +1372,11 @@ public class DbService {
       return;
     }
 
+    scoreAccumulator.clear();
+    sessionCache.clear();
+    globalRanking.clear();
+    openGamesDirectory.clear();
+    jdbcTemplate.update("DELETE FROM question_pool");
     userAchievementRepository.deleteAll();
     gameHistoryRepository.deleteAll();
     questionRepository.deleteAll();
@@ -817,7 +1399,13 @@ public class DbService {
       GameHistoryRepository gameHistoryRepository,
       AchievementRepository achievementRepository,
       UserAchievementRepository userAchievementRepository,
-      TopicRepository topicRepository
+      TopicRepository topicRepository,
+      JdbcTemplate jdbcTemplate,
+      ScoreAccumulator scoreAccumulator,
+      SessionCache sessionCache,
+      GlobalRanking globalRanking,
+      OpenGamesDirectory openGamesDirectory,
+      PasswordHasher passwordHasher
   ) {
   }
 }
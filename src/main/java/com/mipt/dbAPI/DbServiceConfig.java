@@ -1,10 +1,14 @@
 package com.mipt.dbAPI;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 import jakarta.persistence.EntityManagerFactory;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
@@ -13,6 +17,7 @@ import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 import javax.sql.DataSource;
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -22,17 +27,101 @@ import java.util.Map;
 @EnableTransactionManagement
 public class DbServiceConfig {
 
+  private static final String DRIVER_CLASS_NAME = "org.postgresql.Driver";
+
+  @Bean
+  public ConnectionPoolMetrics connectionPoolMetrics() {
+    return new ConnectionPoolMetrics();
+  }
+
+  @Bean
+  public DataSource dataSource(DatabaseProperties databaseProperties, ConnectionPoolMetrics connectionPoolMetrics) {
+    DatabaseProperties.Pool pool = databaseProperties.getPool();
+    if (!pool.isEnabled()) {
+      DriverManagerDataSource dataSource = new DriverManagerDataSource();
+      dataSource.setDriverClassName(DRIVER_CLASS_NAME);
+      dataSource.setUrl(databaseProperties.getUrl());
+      dataSource.setUsername(databaseProperties.getUser());
+      dataSource.setPassword(databaseProperties.getPassword());
+      return dataSource;
+    }
+
+    HikariConfig config = new HikariConfig();
+    config.setPoolName("QuizAI-DbService");
+    config.setDriverClassName(DRIVER_CLASS_NAME);
+    config.setJdbcUrl(databaseProperties.getUrl());
+    config.setUsername(databaseProperties.getUser());
+    config.setPassword(databaseProperties.getPassword());
+    config.setMinimumIdle(pool.getMinimumIdle());
+    config.setMaximumPoolSize(pool.getMaximumPoolSize());
+    config.setConnectionTimeout(pool.getConnectionTimeoutMs());
+    config.setIdleTimeout(pool.getIdleTimeoutMs());
+    config.setMaxLifetime(pool.getMaxLifetimeMs());
+    config.setLeakDetectionThreshold(pool.getLeakDetectionThresholdMs());
+    config.addDataSourceProperty("prepareThreshold", pool.getPrepareThreshold());
+    config.addDataSourceProperty("preparedStatementCacheQueries", pool.getPreparedStatementCacheQueries());
+    config.addDataSourceProperty("preparedStatementCacheSizeMiB", pool.getPreparedStatementCacheSizeMb());
+    config.setMetricsTrackerFactory(connectionPoolMetrics);
+    return new HikariDataSource(config);
+  }
+
+  @Bean
+  public SchemaMigrator schemaMigrator(DataSource dataSource, DatabaseProperties databaseProperties) throws SQLException {
+    DatabaseProperties.Migrations migrations = databaseProperties.getMigrations();
+    SchemaMigrator schemaMigrator = new SchemaMigrator(dataSource, migrations.getLocation());
+    if (migrations.isEnabled()) {
+      schemaMigrator.migrate();
+    }
+    return schemaMigrator;
+  }
+
+  // everything that reads or writes tables waits for the migrations
+  @Bean
+  @DependsOn("schemaMigrator")
+  public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+    return new JdbcTemplate(dataSource);
+  }
+
+  @Bean
+  @DependsOn("schemaMigrator")
+  public ScoreAccumulator scoreAccumulator(DataSource dataSource, DatabaseProperties databaseProperties) {
+    DatabaseProperties.Scores scores = databaseProperties.getScores();
+    return new ScoreAccumulator(dataSource, scores.getFlushIntervalMs(), scores.getFlushThreshold());
+  }
+
+  @Bean
+  public SessionCache sessionCache(DatabaseProperties databaseProperties) {
+    DatabaseProperties.SessionCache sessionCache = databaseProperties.getSessionCache();
+    return new SessionCache(sessionCache.getMaxSize(), sessionCache.getTtlMs());
+  }
+
+  @Bean(destroyMethod = "close")
+  public PasswordHasher passwordHasher(DatabaseProperties databaseProperties) {
+    DatabaseProperties.PasswordHashing passwordHashing = databaseProperties.getPasswordHashing();
+    return new PasswordHasher(passwordHashing.getCost(), passwordHashing.getThreads(), passwordHashing.getQueueCapacity());
+  }
+
+  @Bean
+  public GlobalRanking globalRanking(JdbcTemplate jdbcTemplate) {
+    GlobalRanking globalRanking = new GlobalRanking(jdbcTemplate);
+    globalRanking.rebuild();
+    return globalRanking;
+  }
+
+  @Bean
+  public OpenGamesDirectory openGamesDirectory(JdbcTemplate jdbcTemplate) {
+    OpenGamesDirectory openGamesDirectory = new OpenGamesDirectory(jdbcTemplate);
+    openGamesDirectory.rebuild();
+    return openGamesDirectory;
+  }
+
   @Bean
-  public DataSource dataSource(DatabaseProperties databaseProperties) {
-    DriverManagerDataSource dataSource = new DriverManagerDataSource();
-    dataSource.setDriverClassName("org.postgresql.Driver");
-    dataSource.setUrl(databaseProperties.getUrl());
-    dataSource.setUsername(databaseProperties.getUser());
-    dataSource.setPassword(databaseProperties.getPassword());
-    return dataSource;
+  public GenerationJobs generationJobs(JdbcTemplate jdbcTemplate) {
+    return new GenerationJobs(jdbcTemplate);
   }
 
   @Bean
+  @DependsOn("schemaMigrator")
   public LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
     LocalContainerEntityManagerFactoryBean entityManagerFactory = new LocalContainerEntityManagerFactoryBean();
     entityManagerFactory.setDataSource(dataSource);
@@ -52,6 +141,10 @@ public class DbServiceConfig {
 
   @Bean
   public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
-    return new JpaTransactionManager(entityManagerFactory);
+    JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory);
+    // a method without a transaction (NOT_SUPPORTED) gives its connection back after every call
+    // instead of keeping one EntityManager and its connection until the method returns
+    transactionManager.setTransactionSynchronization(JpaTransactionManager.SYNCHRONIZATION_ON_ACTUAL_TRANSACTION);
+    return transactionManager;
   }
 }
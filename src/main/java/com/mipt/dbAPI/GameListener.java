@@ -0,0 +1,32 @@
+package com.mipt.dbAPI;
+
+/**
+ * Receives changes of games made through DbService, after the change is committed.
+ * Called on the thread that made the change, so implementations must return quickly.
+ */
+public interface GameListener {
+
+  default void gameCreated(int gameId) {
+  }
+
+  default void participantJoined(int gameId) {
+  }
+
+  default void participantLeft(int gameId) {
+  }
+
+  default void statusChanged(int gameId, int status) {
+  }
+
+  default void questionsLoaded(int gameId) {
+  }
+
+  /**
+   * Privateness or the maximum number of participants changed.
+   */
+  default void settingsChanged(int gameId) {
+  }
+
+  default void gameDeleted(int gameId) {
+  }
+}
@@ -0,0 +1,217 @@
+package com.mipt.dbAPI;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+public class GenerationJobs {
+  // Queue of question generation jobs in the generation_jobs table, shared by all instances.
+  // A job is claimed by one worker with FOR UPDATE SKIP LOCKED, so concurrent workers never
+  // wait for each other's rows; games with more players in the lobby are claimed first, then
+  // the older ones. The owner of a running job heartbeats it; a job whose heartbeat is older
+  // than the stale timeout belongs to a stopped instance and is queued again.
+
+  public static final int QUEUED = 0;
+  public static final int RUNNING = 1;
+  public static final int FAILED = 2;
+
+  // arbitrary key of the advisory lock admissions take, the same for every instance
+  private static final long ADMISSION_LOCK_KEY = 0x47454e4a4f4253L;
+  // queues the job unless capacity jobs are queued and returns its place; it runs after the admission
+  // lock is granted, so its snapshot includes every job admitted before (a new game has no players
+  // yet, every other queued job goes before it)
+  private static final String ENQUEUE_SQL = """
+      WITH queued AS (
+          SELECT count(*) AS jobs FROM generation_jobs WHERE status = 0
+      ), inserted AS (
+          INSERT INTO generation_jobs (game_id, topic_id, level_difficulty, number_of_questions)
+          SELECT ?, ?, ?, ? FROM queued WHERE queued.jobs < ?
+          ON CONFLICT (game_id) DO NOTHING
+          RETURNING game_id
+      )
+      SELECT queued.jobs + 1 FROM queued, inserted
+      """;
+  private static final String CLAIM_SQL = """
+      UPDATE generation_jobs
+      SET status = 1, owner = ?, heartbeat_at = now(), attempts = attempts + 1
+      WHERE game_id = (
+          SELECT j.game_id FROM generation_jobs j
+          WHERE j.status = 0 AND j.run_after <= now()
+          ORDER BY (SELECT g.current_participants FROM games g WHERE g.id = j.game_id) DESC, j.game_id
+          LIMIT 1
+          FOR UPDATE SKIP LOCKED
+      )
+      RETURNING game_id, topic_id, level_difficulty, number_of_questions, attempts,
+          (SELECT count(*) FROM questions q WHERE q.game_id = generation_jobs.game_id),
+          (extract(epoch FROM now() - run_after) * 1000)::bigint
+      """;
+  // a failed attempt is retried after backoff * 2^(attempts - 1) until maxAttempts
+  private static final String RETRY_SQL = """
+      UPDATE generation_jobs
+      SET status = CASE WHEN attempts < ? THEN 0 ELSE 2 END,
+          run_after = now() + make_interval(secs => ? * power(2, attempts - 1) / 1000.0),
+          owner = NULL, heartbeat_at = NULL, last_error = ?
+      WHERE game_id = ? AND status = 1 AND owner = ?
+      RETURNING status
+      """;
+  private static final String REQUEUE_STALE_SQL = """
+      WITH requeued AS (
+          UPDATE generation_jobs
+          SET status = CASE WHEN attempts < ? THEN 0 ELSE 2 END,
+              run_after = now() + make_interval(secs => ? * power(2, attempts - 1) / 1000.0),
+              owner = NULL, heartbeat_at = NULL, last_error = 'heartbeat lost'
+          WHERE status = 1 AND heartbeat_at < now() - make_interval(secs => ? / 1000.0)
+          RETURNING game_id, topic_id, level_difficulty, number_of_questions, attempts, status
+      )
+      SELECT r.game_id, r.topic_id, r.level_difficulty, r.number_of_questions, r.attempts,
+          (SELECT count(*) FROM questions q WHERE q.game_id = r.game_id), 0
+      FROM requeued r
+      WHERE r.status = 2
+      """;
+  // games waiting for players with missing questions and no job, e.g. of a run that stopped
+  // between creating the game and queueing its job; recent games may still be queued by their instance
+  private static final String ENQUEUE_ORPHANS_SQL = """
+      INSERT INTO generation_jobs (game_id, topic_id, level_difficulty, number_of_questions)
+      SELECT g.id, g.topic_id, g.level_difficulty, g.number_of_questions
+      FROM games g
+      WHERE g.status = 0
+        AND g.created_at < (now() AT TIME ZONE 'UTC') - make_interval(secs => ? / 1000.0)
+        AND NOT EXISTS (SELECT 1 FROM generation_jobs j WHERE j.game_id = g.id)
+        AND (SELECT count(*) FROM questions q WHERE q.game_id = g.id) < g.number_of_questions
+      ON CONFLICT (game_id) DO NOTHING
+      """;
+
+  private static final RowMapper<Job> JOB_MAPPER = (rs, rowNum) -> new Job(
+      rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4), rs.getInt(5), rs.getInt(6), rs.getLong(7));
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public GenerationJobs(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  /**
+   * Queues the job of the game unless capacity jobs are queued already.
+   * Returns the place of the job in the queue, 0 if it was not queued.
+   */
+  public int enqueue(int gameId, int topicId, int levelDifficulty, int numberOfQuestions, int capacity) {
+    // under READ COMMITTED concurrent admissions would all count the same queued jobs and overfill
+    // the queue, so they take turns on a transaction-level advisory lock
+    Integer position = jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+      boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      try (Statement lock = connection.createStatement();
+           PreparedStatement insert = connection.prepareStatement(ENQUEUE_SQL)) {
+        lock.execute("SELECT pg_advisory_xact_lock(" + ADMISSION_LOCK_KEY + ")");
+        insert.setInt(1, gameId);
+        insert.setInt(2, topicId);
+        insert.setInt(3, levelDifficulty);
+        insert.setInt(4, numberOfQuestions);
+        insert.setInt(5, capacity);
+        int place = 0;
+        try (ResultSet rs = insert.executeQuery()) {
+          if (rs.next()) {
+            place = rs.getInt(1);
+          }
+        }
+        // inside a caller's transaction the lock is held until it commits
+        if (autoCommit) {
+          connection.commit();
+        }
+        return place;
+      } catch (SQLException | RuntimeException e) {
+        if (autoCommit) {
+          connection.rollback();
+        }
+        throw e;
+      } finally {
+        connection.setAutoCommit(autoCommit);
+      }
+    });
+    return position == null ? 0 : position;
+  }
+
+  /**
+   * Marks the first queued job whose backoff is over as running by the owner, null if there is none.
+   */
+  public Job claim(String owner) {
+    List<Job> claimed = jdbcTemplate.query(CLAIM_SQL, JOB_MAPPER, owner);
+    return claimed.isEmpty() ? null : claimed.get(0);
+  }
+
+  /**
+   * Refreshes the heartbeat of every job running by the owner.
+   */
+  public int heartbeat(String owner) {
+    return jdbcTemplate.update(
+        "UPDATE generation_jobs SET heartbeat_at = now() WHERE status = 1 AND owner = ?", owner);
+  }
+
+  /**
+   * Removes the finished job. Does nothing if the job was taken from the owner by the sweeper.
+   */
+  public boolean complete(int gameId, String owner) {
+    return jdbcTemplate.update(
+        "DELETE FROM generation_jobs WHERE game_id = ? AND status = 1 AND owner = ?", gameId, owner) > 0;
+  }
+
+  /**
+   * Queues the failed job again after the backoff. Returns true if it has no attempts left and is failed for good.
+   */
+  public boolean retry(int gameId, String owner, String error, int maxAttempts, long backoffMs) {
+    List<Integer> status = jdbcTemplate.queryForList(RETRY_SQL, Integer.class,
+        maxAttempts, backoffMs, error, gameId, owner);
+    return !status.isEmpty() && status.get(0) == FAILED;
+  }
+
+  /**
+   * Takes back the running jobs whose heartbeat is older than staleAfterMs and queues them again
+   * after the backoff. Returns the jobs that had no attempts left and are failed for good.
+   */
+  public List<Job> requeueStale(long staleAfterMs, int maxAttempts, long backoffMs) {
+    return jdbcTemplate.query(REQUEUE_STALE_SQL, JOB_MAPPER, maxAttempts, backoffMs, staleAfterMs);
+  }
+
+  /**
+   * Queues jobs for the games waiting for players that miss questions and have no job.
+   * Returns the number of queued games.
+   */
+  public int enqueueOrphans(long olderThanMs) {
+    return jdbcTemplate.update(ENQUEUE_ORPHANS_SQL, olderThanMs);
+  }
+
+  /**
+   * Whether the game has a queued or running job.
+   */
+  public boolean isPending(int gameId) {
+    Integer pending = jdbcTemplate.queryForObject(
+        "SELECT count(*) FROM generation_jobs WHERE game_id = ? AND status IN (0, 1)", Integer.class, gameId);
+    return pending != null && pending > 0;
+  }
+
+  public int queueDepth() {
+    Integer queued = jdbcTemplate.queryForObject("SELECT count(*) FROM generation_jobs WHERE status = 0", Integer.class);
+    return queued == null ? 0 : queued;
+  }
+
+  /**
+   * A claimed job. storedQuestions of the game are already in the questions table,
+   * waitedMs is the time since the job became ready to run.
+   */
+  public record Job(
+      int gameId,
+      int topicId,
+      int levelDifficulty,
+      int numberOfQuestions,
+      int attempts,
+      int storedQuestions,
+      long waitedMs
+  ) {
+  }
+}
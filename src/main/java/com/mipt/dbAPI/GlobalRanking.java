@@ -0,0 +1,388 @@
+package com.mipt.dbAPI;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntFunction;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class GlobalRanking {
+  // In-memory global leaderboard of all users, in the order of the users table query
+  // "global_points DESC, global_possible_points ASC" (ties by id). Kept in a treap whose
+  // nodes know the size of their subtree, so insert, remove and rank are O(log n)
+  // and the top N costs O(log n + N). Points are applied as they are added, the
+  // structure is rebuilt from the users table on startup.
+
+  private final JdbcTemplate jdbcTemplate;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<Integer, Node> nodes = new HashMap<>();
+  private Node root;
+  private long totalPoints;
+  private long totalPossiblePoints;
+
+  public GlobalRanking(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  /**
+   * Replaces the ranking with the current content of the users table.
+   */
+  public int rebuild() {
+    return rebuild(userId -> null);
+  }
+
+  /**
+   * Replaces the ranking with the users table plus the given points not written to it yet.
+   * Returns the number of users.
+   */
+  public int rebuild(IntFunction<ScoreDelta> pending) {
+    List<Node> loaded = jdbcTemplate.query(
+        "SELECT id, username, global_points, global_possible_points FROM users",
+        (rs, rowNum) -> new Node(rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getInt(4)));
+
+    lock.writeLock().lock();
+    try {
+      nodes.clear();
+      root = null;
+      totalPoints = 0;
+      totalPossiblePoints = 0;
+      for (Node node : loaded) {
+        ScoreDelta delta = pending.apply(node.userId);
+        if (delta != null) {
+          node.globalPoints += delta.globalPoints();
+          node.globalPossiblePoints += delta.globalPossiblePoints();
+        }
+        nodes.put(node.userId, node);
+        root = insert(root, node);
+        totalPoints += node.globalPoints;
+        totalPossiblePoints += node.globalPossiblePoints;
+      }
+      return loaded.size();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void put(int userId, String username, int globalPoints, int globalPossiblePoints) {
+    lock.writeLock().lock();
+    try {
+      Node existing = nodes.remove(userId);
+      if (existing != null) {
+        root = remove(root, existing);
+        totalPoints -= existing.globalPoints;
+        totalPossiblePoints -= existing.globalPossiblePoints;
+      }
+      Node node = new Node(userId, username, globalPoints, globalPossiblePoints);
+      nodes.put(userId, node);
+      root = insert(root, node);
+      totalPoints += globalPoints;
+      totalPossiblePoints += globalPossiblePoints;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Moves a user by the given amount of points; unknown users are ignored until the next rebuild.
+   */
+  public void add(int userId, int globalPoints, int globalPossiblePoints) {
+    if (globalPoints == 0 && globalPossiblePoints == 0) {
+      return;
+    }
+
+    lock.writeLock().lock();
+    try {
+      Node node = nodes.get(userId);
+      if (node == null) {
+        return;
+      }
+      root = remove(root, node);
+      node.globalPoints += globalPoints;
+      node.globalPossiblePoints += globalPossiblePoints;
+      totalPoints += globalPoints;
+      totalPossiblePoints += globalPossiblePoints;
+      node.left = null;
+      node.right = null;
+      node.size = 1;
+      root = insert(root, node);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(int userId) {
+    lock.writeLock().lock();
+    try {
+      Node node = nodes.remove(userId);
+      if (node != null) {
+        root = remove(root, node);
+        totalPoints -= node.globalPoints;
+        totalPossiblePoints -= node.globalPossiblePoints;
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      nodes.clear();
+      root = null;
+      totalPoints = 0;
+      totalPossiblePoints = 0;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the 1-based place of the user or null if the user is unknown.
+   */
+  public Integer rankOf(int userId) {
+    lock.readLock().lock();
+    try {
+      Node node = nodes.get(userId);
+      return node == null ? null : rank(node);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the place of the user among all users and the share of other users ranked below, or null if unknown.
+   */
+  public RankInfo rankInfo(int userId) {
+    lock.readLock().lock();
+    try {
+      Node node = nodes.get(userId);
+      if (node == null) {
+        return null;
+      }
+      int rank = rank(node);
+      int total = nodes.size();
+      double percentile = total == 1 ? 100.0 : 100.0 * (total - rank) / (total - 1);
+      return new RankInfo(userId, rank, total, percentile);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public List<RankedUser> top(int limit) {
+    lock.readLock().lock();
+    try {
+      List<RankedUser> result = new ArrayList<>(Math.min(Math.max(limit, 0), nodes.size()));
+      collect(root, limit, result);
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the users placed from rank - radius to rank + radius around the user, or null if the user is unknown.
+   */
+  public List<RankedUser> around(int userId, int radius) {
+    lock.readLock().lock();
+    try {
+      Node node = nodes.get(userId);
+      if (node == null) {
+        return null;
+      }
+      int rank = rank(node);
+      int from = Math.max(1, rank - Math.max(radius, 0));
+      int to = Math.min(nodes.size(), rank + Math.max(radius, 0));
+      List<RankedUser> result = new ArrayList<>(to - from + 1);
+      collectRange(root, 0, from, to, result);
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Number of users and sums of their points, compared with the users table to find out whether it changed.
+   */
+  public Checksum checksum() {
+    lock.readLock().lock();
+    try {
+      return new Checksum(nodes.size(), totalPoints, totalPossiblePoints);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return nodes.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private int rank(Node node) {
+    int before = 0;
+    Node current = root;
+    while (current != null) {
+      int cmp = compare(node, current);
+      if (cmp < 0) {
+        current = current.left;
+      } else if (cmp > 0) {
+        before += size(current.left) + 1;
+        current = current.right;
+      } else {
+        return before + size(current.left) + 1;
+      }
+    }
+    throw new IllegalStateException("User " + node.userId + " is missing in the ranking tree");
+  }
+
+  private static void collect(Node node, int limit, List<RankedUser> result) {
+    // in-order walk that stops once the list is full
+    if (node == null || result.size() >= limit) {
+      return;
+    }
+    collect(node.left, limit, result);
+    if (result.size() < limit) {
+      result.add(node.toRankedUser(result.size() + 1));
+      collect(node.right, limit, result);
+    }
+  }
+
+  private static void collectRange(Node node, int before, int from, int to, List<RankedUser> result) {
+    // in-order walk over the places [from, to] only, "before" is the number of nodes left of this subtree
+    if (node == null) {
+      return;
+    }
+    int place = before + size(node.left) + 1;
+    if (from < place) {
+      collectRange(node.left, before, from, to, result);
+    }
+    if (from <= place && place <= to) {
+      result.add(node.toRankedUser(place));
+    }
+    if (place < to) {
+      collectRange(node.right, place, from, to, result);
+    }
+  }
+
+  private static int compare(Node a, Node b) {
+    if (a.globalPoints != b.globalPoints) {
+      return Integer.compare(b.globalPoints, a.globalPoints);
+    }
+    if (a.globalPossiblePoints != b.globalPossiblePoints) {
+      return Integer.compare(a.globalPossiblePoints, b.globalPossiblePoints);
+    }
+    return Integer.compare(a.userId, b.userId);
+  }
+
+  private static int size(Node node) {
+    return node == null ? 0 : node.size;
+  }
+
+  private static Node update(Node node) {
+    node.size = size(node.left) + size(node.right) + 1;
+    return node;
+  }
+
+  private static Node insert(Node root, Node node) {
+    if (root == null) {
+      return node;
+    }
+    if (node.priority > root.priority) {
+      Node[] parts = split(root, node);
+      node.left = parts[0];
+      node.right = parts[1];
+      return update(node);
+    }
+    if (compare(node, root) < 0) {
+      root.left = insert(root.left, node);
+    } else {
+      root.right = insert(root.right, node);
+    }
+    return update(root);
+  }
+
+  private static Node remove(Node root, Node node) {
+    if (root == null) {
+      return null;
+    }
+    int cmp = compare(node, root);
+    if (cmp == 0) {
+      return merge(root.left, root.right);
+    }
+    if (cmp < 0) {
+      root.left = remove(root.left, node);
+    } else {
+      root.right = remove(root.right, node);
+    }
+    return update(root);
+  }
+
+  private static Node[] split(Node root, Node key) {
+    // {nodes ordered before key, nodes ordered after key}
+    if (root == null) {
+      return new Node[]{null, null};
+    }
+    if (compare(root, key) < 0) {
+      Node[] parts = split(root.right, key);
+      root.right = parts[0];
+      return new Node[]{update(root), parts[1]};
+    }
+    Node[] parts = split(root.left, key);
+    root.left = parts[1];
+    return new Node[]{parts[0], update(root)};
+  }
+
+  private static Node merge(Node left, Node right) {
+    if (left == null) {
+      return right;
+    }
+    if (right == null) {
+      return left;
+    }
+    if (left.priority > right.priority) {
+      left.right = merge(left.right, right);
+      return update(left);
+    }
+    right.left = merge(left, right.left);
+    return update(right);
+  }
+
+  private static final class Node {
+    private final int userId;
+    private final String username;
+    private final int priority = ThreadLocalRandom.current().nextInt();
+    private int globalPoints;
+    private int globalPossiblePoints;
+    private int size = 1;
+    private Node left;
+    private Node right;
+
+    private Node(int userId, String username, int globalPoints, int globalPossiblePoints) {
+      this.userId = userId;
+      this.username = username;
+      this.globalPoints = globalPoints;
+      this.globalPossiblePoints = globalPossiblePoints;
+    }
+
+    private RankedUser toRankedUser(int rank) {
+      return new RankedUser(rank, userId, username, globalPoints, globalPossiblePoints);
+    }
+  }
+
+  public record RankedUser(int rank, int userId, String username, int globalPoints, int globalPossiblePoints) {
+  }
+
+  public record RankInfo(int userId, int rank, int total, double percentile) {
+  }
+
+  public record Checksum(long users, long globalPoints, long globalPossiblePoints) {
+  }
+}
@@ -0,0 +1,255 @@
+package com.mipt.dbAPI;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class OpenGamesDirectory {
+  // In-memory directory of the games waiting for players (status 0), indexed by topic.
+  // Loaded from the games table on startup, then kept up to date by DbService as games are
+  // created, joined, left, started, stopped and deleted, so the lobby browser never
+  // queries the database. Every change bumps the version of its topic; the listing of a
+  // topic is rendered to JSON once per version and served as the same bytes until the next change.
+
+  private static final String OPEN_GAMES_SQL = """
+      SELECT g.id, g.topic_id, g.is_private IS NOT FALSE, g.participants_number, g.current_participants
+      FROM games g
+      WHERE g.status = 0
+      """;
+  private static final int ALL_TOPICS = -1;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<Integer, Game> games = new HashMap<>();
+  private final Map<Integer, NavigableMap<Integer, Game>> gamesByTopic = new HashMap<>();
+  private final Map<Integer, Long> versions = new HashMap<>();
+  // topic -> rendered listing of the current version, ALL_TOPICS for the list of every topic
+  private final Map<Integer, Listing> listings = new ConcurrentHashMap<>();
+  // tells the versions of different runs apart, they start from zero again after a restart
+  private final String epoch = HexFormat.of().toHexDigits(ThreadLocalRandom.current().nextInt());
+
+  public OpenGamesDirectory(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  /**
+   * Replaces the directory with the games waiting for players in the games table.
+   * Returns the number of games.
+   */
+  public int rebuild() {
+    List<Game> loaded = jdbcTemplate.query(OPEN_GAMES_SQL, (rs, rowNum) -> new Game(
+        rs.getInt(1), rs.getInt(2), rs.getBoolean(3), rs.getInt(4), rs.getInt(5)));
+
+    lock.writeLock().lock();
+    try {
+      clearGames();
+      for (Game game : loaded) {
+        add(game);
+      }
+      return loaded.size();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void created(int gameId, int topicId, boolean isPrivate, int participantsNumber) {
+    lock.writeLock().lock();
+    try {
+      Game existing = games.get(gameId);
+      if (existing != null) {
+        remove(existing);
+      }
+      add(new Game(gameId, topicId, isPrivate, participantsNumber, 0));
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Moves the participant counter of the game; games that are not waiting for players are ignored.
+   */
+  public void participantsChanged(int gameId, int delta) {
+    lock.writeLock().lock();
+    try {
+      Game game = games.get(gameId);
+      if (game != null) {
+        game.participants = Math.max(0, game.participants + delta);
+        changed(game.topicId);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void settingsChanged(int gameId, boolean isPrivate, int participantsNumber) {
+    lock.writeLock().lock();
+    try {
+      Game game = games.get(gameId);
+      if (game != null) {
+        game.isPrivate = isPrivate;
+        game.participantsNumber = participantsNumber;
+        changed(game.topicId);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Drops the game once it started, stopped or was deleted.
+   */
+  public void closed(int gameId) {
+    lock.writeLock().lock();
+    try {
+      Game game = games.get(gameId);
+      if (game != null) {
+        remove(game);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      clearGames();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Public games of the topic waiting for players as [[gameId, currentParticipantsNumber, participantsNumber], ...].
+   */
+  public Listing listing(int topicId) {
+    return cachedListing(topicId);
+  }
+
+  /**
+   * Public games of every topic as [[gameId, topicId, currentParticipantsNumber, participantsNumber], ...].
+   */
+  public Listing listing() {
+    return cachedListing(ALL_TOPICS);
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return games.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private Listing cachedListing(int topicId) {
+    Listing cached = listings.get(topicId);
+    if (cached != null) {
+      return cached;
+    }
+    // rendered and stored under the read lock, so a change can't drop it before it is stored
+    lock.readLock().lock();
+    try {
+      cached = listings.get(topicId);
+      if (cached == null) {
+        cached = render(topicId);
+        listings.put(topicId, cached);
+      }
+      return cached;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private Listing render(int topicId) {
+    StringBuilder json = new StringBuilder("[");
+    Iterable<Game> listed = topicId == ALL_TOPICS
+        ? new TreeMap<>(games).values()
+        : gamesByTopic.getOrDefault(topicId, new TreeMap<>()).values();
+    for (Game game : listed) {
+      if (game.isPrivate) {
+        continue;
+      }
+      if (json.length() > 1) {
+        json.append(',');
+      }
+      json.append('[').append(game.gameId);
+      if (topicId == ALL_TOPICS) {
+        json.append(',').append(game.topicId);
+      }
+      json.append(',').append(game.participants).append(',').append(game.participantsNumber).append(']');
+    }
+    json.append(']');
+
+    long version = versions.getOrDefault(topicId, 0L);
+    String etag = "\"" + epoch + "-" + topicId + "-" + version + "\"";
+    return new Listing(topicId, version, json.toString().getBytes(StandardCharsets.UTF_8), etag);
+  }
+
+  private void add(Game game) {
+    games.put(game.gameId, game);
+    gamesByTopic.computeIfAbsent(game.topicId, topicId -> new TreeMap<>()).put(game.gameId, game);
+    changed(game.topicId);
+  }
+
+  private void remove(Game game) {
+    games.remove(game.gameId);
+    NavigableMap<Integer, Game> topicGames = gamesByTopic.get(game.topicId);
+    if (topicGames != null) {
+      topicGames.remove(game.gameId);
+      if (topicGames.isEmpty()) {
+        gamesByTopic.remove(game.topicId);
+      }
+    }
+    changed(game.topicId);
+  }
+
+  private void clearGames() {
+    for (Integer topicId : gamesByTopic.keySet()) {
+      changed(topicId);
+    }
+    games.clear();
+    gamesByTopic.clear();
+    changed(ALL_TOPICS);
+  }
+
+  private void changed(int topicId) {
+    // called under the write lock
+    versions.merge(topicId, 1L, Long::sum);
+    versions.merge(ALL_TOPICS, 1L, Long::sum);
+    listings.remove(topicId);
+    listings.remove(ALL_TOPICS);
+  }
+
+  private static final class Game {
+    private final int gameId;
+    private final int topicId;
+    private boolean isPrivate;
+    private int participantsNumber;
+    private int participants;
+
+    private Game(int gameId, int topicId, boolean isPrivate, int participantsNumber, int participants) {
+      this.gameId = gameId;
+      this.topicId = topicId;
+      this.isPrivate = isPrivate;
+      this.participantsNumber = participantsNumber;
+      this.participants = participants;
+    }
+  }
+
+  /**
+   * Rendered listing: UTF-8 JSON body, the version of the topic it was rendered from and its ETag.
+   */
+  public record Listing(int topicId, long version, byte[] body, String etag) {
+  }
+}
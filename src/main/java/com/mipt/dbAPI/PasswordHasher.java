@@ -0,0 +1,172 @@
+package com.mipt.dbAPI;
+
+import at.favre.lib.crypto.bcrypt.BCrypt;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public class PasswordHasher implements AutoCloseable {
+  // BCrypt hashing and verification on a small pool of its own. A hash takes hundreds of
+  // milliseconds of CPU, so running it on the request threads lets a login storm take all
+  // the CPU from lobby polls and answers; here at most `threads` hashes run at once, at most
+  // queueCapacity wait, and the rest is refused with RejectedExecutionException at once.
+
+  public static final int DEFAULT_COST = 12;
+
+  private final int cost;
+  private final int threads;
+  private final ThreadPoolExecutor executor;
+
+  private final LongAdder hashes = new LongAdder();
+  private final LongAdder verifications = new LongAdder();
+  private final LongAdder rehashes = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder waitNanosTotal = new LongAdder();
+  private final LongAccumulator waitNanosMax = new LongAccumulator(Long::max, 0);
+  private final LongAdder workNanosTotal = new LongAdder();
+  private final LongAccumulator workNanosMax = new LongAccumulator(Long::max, 0);
+
+  public PasswordHasher(int cost, int threads, int queueCapacity) {
+    this.cost = cost;
+    // 0 leaves half of the CPUs to the request threads
+    this.threads = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    AtomicInteger counter = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(this.threads, this.threads, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+      Thread thread = new Thread(runnable, "password-hasher-" + counter.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Hashes the password with the configured cost, blocks until the hash is ready.
+   * Throws RejectedExecutionException if too many passwords are being hashed.
+   */
+  public String hash(String password) {
+    return await(hashAsync(password));
+  }
+
+  /**
+   * Hashes the password with the configured cost without blocking the caller.
+   * Throws RejectedExecutionException if too many passwords are being hashed.
+   */
+  public CompletableFuture<String> hashAsync(String password) {
+    return submit(() -> {
+      hashes.increment();
+      return BCrypt.withDefaults().hashToString(cost, password.toCharArray());
+    });
+  }
+
+  /**
+   * Checks the password against the stored hash, blocks until it is checked.
+   * needsRehash is set for a matching hash of another cost, it should be replaced by hash(password).
+   * Throws RejectedExecutionException if too many passwords are being hashed.
+   */
+  public Verification verify(String password, String storedHash) {
+    return await(submit(() -> {
+      verifications.increment();
+      BCrypt.Result result = BCrypt.verifyer().verify(password.toCharArray(), storedHash);
+      return new Verification(result.verified, result.verified && result.details.cost != cost);
+    }));
+  }
+
+  /**
+   * Counts a hash that was replaced by one of the configured cost.
+   */
+  public void rehashed() {
+    rehashes.increment();
+  }
+
+  private <T> CompletableFuture<T> submit(Supplier<T> work) {
+    long queuedAt = System.nanoTime();
+    try {
+      return CompletableFuture.supplyAsync(() -> {
+        long start = System.nanoTime();
+        waitNanosTotal.add(start - queuedAt);
+        waitNanosMax.accumulate(start - queuedAt);
+        try {
+          return work.get();
+        } finally {
+          long elapsed = System.nanoTime() - start;
+          workNanosTotal.add(elapsed);
+          workNanosMax.accumulate(elapsed);
+        }
+      }, executor);
+    } catch (RejectedExecutionException e) {
+      rejected.increment();
+      throw e;
+    }
+  }
+
+  private static <T> T await(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  public int getCost() {
+    return cost;
+  }
+
+  public Snapshot snapshot() {
+    long done = hashes.sum() + verifications.sum();
+    return new Snapshot(
+        cost,
+        threads,
+        executor.getActiveCount(),
+        executor.getQueue().size(),
+        executor.getQueue().size() + executor.getQueue().remainingCapacity(),
+        hashes.sum(),
+        verifications.sum(),
+        rehashes.sum(),
+        rejected.sum(),
+        done == 0 ? 0 : nanosToMillis(waitNanosTotal.sum()) / done,
+        nanosToMillis(waitNanosMax.get()),
+        done == 0 ? 0 : nanosToMillis(workNanosTotal.sum()) / done,
+        nanosToMillis(workNanosMax.get())
+    );
+  }
+
+  private static double nanosToMillis(long nanos) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  public record Verification(boolean verified, boolean needsRehash) {
+  }
+
+  public record Snapshot(
+      int cost,
+      int threads,
+      int active,
+      int queued,
+      int queueCapacity,
+      long hashes,
+      long verifications,
+      long rehashes,
+      long rejected,
+      double avgWaitMs,
+      double maxWaitMs,
+      double avgWorkMs,
+      double maxWorkMs
+  ) {
+  }
+}
@@ -0,0 +1,7 @@
+package com.mipt.dbAPI;
+
+/**
+ * Identifies a reservoir of pre-generated questions: one per topic and difficulty level.
+ */
+public record PoolKey(int topicId, int levelDifficulty) {
+}
@@ -0,0 +1,168 @@
+package com.mipt.dbAPI;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class SchemaMigrator {
+  // Brings the schema up to date with the scripts V<version>__<description>.sql of the
+  // migration location. Every script runs once, in its own transaction, and is recorded in
+  // schema_migrations with a checksum; a recorded script that was edited afterwards stops
+  // the startup. Instances starting together take turns on a PostgreSQL advisory lock.
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SchemaMigrator.class);
+  private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+  // arbitrary key of the advisory lock, the same for every instance
+  private static final long LOCK_KEY = 0x5155495a4149L;
+  private static final String CREATE_HISTORY_SQL = """
+      CREATE TABLE IF NOT EXISTS schema_migrations (
+          version INT PRIMARY KEY,
+          description TEXT NOT NULL,
+          checksum TEXT NOT NULL,
+          applied_at TIMESTAMP NOT NULL DEFAULT now()
+      )
+      """;
+
+  private final DataSource dataSource;
+  private final String location;
+
+  public SchemaMigrator(DataSource dataSource, String location) {
+    this.dataSource = dataSource;
+    this.location = location;
+  }
+
+  /**
+   * Applies the scripts that are not applied yet, returns them in the order they ran.
+   */
+  public List<Migration> migrate() throws SQLException {
+    List<Migration> scripts = loadScripts();
+    List<Migration> applied = new ArrayList<>();
+
+    try (Connection connection = dataSource.getConnection()) {
+      boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(true);
+      try (Statement statement = connection.createStatement()) {
+        statement.execute("SELECT pg_advisory_lock(" + LOCK_KEY + ")");
+      }
+      try {
+        try (Statement statement = connection.createStatement()) {
+          statement.execute(CREATE_HISTORY_SQL);
+        }
+        Map<Integer, String> checksums = appliedChecksums(connection);
+
+        for (Migration script : scripts) {
+          String checksum = checksums.get(script.version());
+          if (checksum == null) {
+            apply(connection, script);
+            applied.add(script);
+            LOGGER.info("Applied schema migration V{}__{}", script.version(), script.description());
+          } else if (!checksum.equals(script.checksum())) {
+            throw new IllegalStateException("Schema migration V" + script.version() + "__" + script.description()
+                + " was changed after it had been applied");
+          }
+        }
+      } finally {
+        try (Statement statement = connection.createStatement()) {
+          statement.execute("SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+        }
+        connection.setAutoCommit(autoCommit);
+      }
+    }
+    return applied;
+  }
+
+  private static Map<Integer, String> appliedChecksums(Connection connection) throws SQLException {
+    Map<Integer, String> checksums = new HashMap<>();
+    try (Statement statement = connection.createStatement();
+         ResultSet rs = statement.executeQuery("SELECT version, checksum FROM schema_migrations")) {
+      while (rs.next()) {
+        checksums.put(rs.getInt(1), rs.getString(2));
+      }
+    }
+    return checksums;
+  }
+
+  private static void apply(Connection connection, Migration script) throws SQLException {
+    connection.setAutoCommit(false);
+    try {
+      try (Statement statement = connection.createStatement()) {
+        statement.execute(script.sql());
+      }
+      try (PreparedStatement statement = connection.prepareStatement(
+          "INSERT INTO schema_migrations (version, description, checksum) VALUES (?, ?, ?)")) {
+        statement.setInt(1, script.version());
+        statement.setString(2, script.description());
+        statement.setString(3, script.checksum());
+        statement.executeUpdate();
+      }
+      connection.commit();
+    } catch (SQLException | RuntimeException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.setAutoCommit(true);
+    }
+  }
+
+  private List<Migration> loadScripts() {
+    List<Migration> scripts = new ArrayList<>();
+    try {
+      Resource[] resources = new PathMatchingResourcePatternResolver().getResources(location + "/V*__*.sql");
+      for (Resource resource : resources) {
+        Matcher matcher = SCRIPT_NAME.matcher(String.valueOf(resource.getFilename()));
+        if (!matcher.matches()) {
+          throw new IllegalStateException("Bad schema migration name " + resource.getFilename());
+        }
+        String sql;
+        try (InputStream in = resource.getInputStream()) {
+          // the same checksum for Windows checkouts
+          sql = new String(in.readAllBytes(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+        }
+        scripts.add(new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2), sql, checksumOf(sql)));
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to read schema migrations from " + location, e);
+    }
+
+    scripts.sort(Comparator.comparingInt(Migration::version));
+    for (int i = 1; i < scripts.size(); i++) {
+      if (scripts.get(i).version() == scripts.get(i - 1).version()) {
+        throw new IllegalStateException("Duplicate schema migration version " + scripts.get(i).version());
+      }
+    }
+    return scripts;
+  }
+
+  private static String checksumOf(String sql) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(sql.getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  public record Migration(int version, String description, String sql, String checksum) {
+  }
+}
@@ -0,0 +1,295 @@
+package com.mipt.dbAPI;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+public class ScoreAccumulator implements AutoCloseable {
+  // Write-behind buffer for the points columns of the users table.
+  // Adds only touch striped in-memory counters; a background thread writes the merged
+  // per-user deltas as one JDBC batch every flush interval or after flushThreshold adds.
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ScoreAccumulator.class);
+  private static final String UPDATE_SQL = "UPDATE users SET current_game_points = current_game_points + ?, "
+      + "global_points = global_points + ?, "
+      + "global_possible_points = global_possible_points + ? WHERE id = ?";
+  private static final long CLOSE_TIMEOUT_MS = 5_000;
+
+  private final DataSource dataSource;
+  private final int flushThreshold;
+  // entries are never removed while running: removing them would race with the lock-free add
+  private final Map<Integer, PendingScore> pending = new ConcurrentHashMap<>();
+  private final AtomicInteger unflushedUpdates = new AtomicInteger();
+  private final AtomicBoolean thresholdFlushScheduled = new AtomicBoolean();
+  // flush holds the write lock, readers of "database + pending" values validate against it
+  private final StampedLock flushLock = new StampedLock();
+  private final ScheduledExecutorService flusher;
+
+  private final LongAdder flushes = new LongAdder();
+  private final LongAdder flushedRows = new LongAdder();
+  private final LongAdder failedFlushes = new LongAdder();
+
+  public ScoreAccumulator(DataSource dataSource, long flushIntervalMs, int flushThreshold) {
+    this.dataSource = dataSource;
+    this.flushThreshold = Math.max(1, flushThreshold);
+    this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "score-flusher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  public void add(ScoreDelta delta) {
+    if (delta.isEmpty()) {
+      return;
+    }
+    merge(delta);
+
+    if (unflushedUpdates.incrementAndGet() >= flushThreshold && thresholdFlushScheduled.compareAndSet(false, true)) {
+      try {
+        flusher.execute(() -> {
+          thresholdFlushScheduled.set(false);
+          flushQuietly();
+        });
+      } catch (RejectedExecutionException e) {
+        // closing: the final flush picks the points up
+        thresholdFlushScheduled.set(false);
+      }
+    }
+  }
+
+  /**
+   * Points of the user that are not written to the database yet.
+   */
+  public ScoreDelta pending(int userId) {
+    PendingScore score = pending.get(userId);
+    if (score == null) {
+      return new ScoreDelta(userId, 0, 0, 0);
+    }
+    return score.toDelta(userId);
+  }
+
+  /**
+   * Sum of the points of all users that are not written to the database yet (userId is 0).
+   */
+  public ScoreDelta pendingTotal() {
+    int currentGamePoints = 0;
+    int globalPoints = 0;
+    int globalPossiblePoints = 0;
+    for (PendingScore score : pending.values()) {
+      ScoreDelta delta = score.toDelta(0);
+      currentGamePoints += delta.currentGamePoints();
+      globalPoints += delta.globalPoints();
+      globalPossiblePoints += delta.globalPossiblePoints();
+    }
+    return new ScoreDelta(0, currentGamePoints, globalPoints, globalPossiblePoints);
+  }
+
+  /**
+   * Runs a read of "database value + pending points" so that it does not overlap with a flush,
+   * otherwise the points being flushed could be missed or counted twice. The reader may hold a
+   * pool connection while it waits, a flush never waits for the pool while it holds the lock.
+   */
+  public <T> T read(ScoreRead<T> reader) throws SQLException, DatabaseAccessException {
+    long stamp = flushLock.tryOptimisticRead();
+    if (stamp != 0) {
+      T result = reader.read();
+      if (flushLock.validate(stamp)) {
+        return result;
+      }
+    }
+
+    stamp = flushLock.readLock();
+    try {
+      return reader.read();
+    } finally {
+      flushLock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Writes all pending points to the users table in one batch. On failure the points stay pending.
+   * Must not be called while holding a pool connection, see {@link #read}.
+   */
+  public void flush() throws SQLException {
+    if (!hasPending()) {
+      return;
+    }
+
+    // the connection is taken before the lock: readers wait for the lock while holding pool
+    // connections, so a flush waiting for the pool under the lock could starve both
+    try (Connection connection = dataSource.getConnection()) {
+      long stamp = flushLock.writeLock();
+      try {
+        unflushedUpdates.set(0);
+        List<ScoreDelta> deltas = drain();
+        if (deltas.isEmpty()) {
+          return;
+        }
+
+        try {
+          write(connection, deltas);
+        } catch (SQLException | RuntimeException e) {
+          failedFlushes.increment();
+          deltas.forEach(this::merge);
+          throw e;
+        }
+        flushes.increment();
+        flushedRows.add(deltas.size());
+      } finally {
+        flushLock.unlockWrite(stamp);
+      }
+    }
+  }
+
+  /**
+   * Drops all pending points (used when the database is erased).
+   */
+  public void clear() {
+    long stamp = flushLock.writeLock();
+    try {
+      pending.clear();
+      unflushedUpdates.set(0);
+    } finally {
+      flushLock.unlockWrite(stamp);
+    }
+  }
+
+  public Snapshot snapshot() {
+    int pendingUsers = 0;
+    for (PendingScore score : pending.values()) {
+      if (!score.toDelta(0).isEmpty()) {
+        pendingUsers++;
+      }
+    }
+    return new Snapshot(pendingUsers, unflushedUpdates.get(), flushes.sum(), flushedRows.sum(), failedFlushes.sum());
+  }
+
+  @Override
+  public void close() {
+    flusher.shutdown();
+    try {
+      flusher.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    try {
+      flush();
+    } catch (SQLException | RuntimeException e) {
+      LOGGER.error("Failed to write pending points of {} users on shutdown", snapshot().pendingUsers(), e);
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (SQLException | RuntimeException e) {
+      LOGGER.warn("Failed to flush pending points, will retry", e);
+    }
+  }
+
+  private void merge(ScoreDelta delta) {
+    PendingScore score = pending.computeIfAbsent(delta.userId(), id -> new PendingScore());
+    score.currentGamePoints.add(delta.currentGamePoints());
+    score.globalPoints.add(delta.globalPoints());
+    score.globalPossiblePoints.add(delta.globalPossiblePoints());
+  }
+
+  private List<ScoreDelta> drain() {
+    List<ScoreDelta> deltas = new ArrayList<>();
+    for (Map.Entry<Integer, PendingScore> entry : pending.entrySet()) {
+      PendingScore score = entry.getValue();
+      // sumThenReset takes every cell atomically, concurrent adds land either here or in the next flush
+      ScoreDelta delta = new ScoreDelta(
+          entry.getKey(),
+          (int) score.currentGamePoints.sumThenReset(),
+          (int) score.globalPoints.sumThenReset(),
+          (int) score.globalPossiblePoints.sumThenReset()
+      );
+      if (!delta.isEmpty()) {
+        deltas.add(delta);
+      }
+    }
+    // same row order in every batch, so concurrent flushes cannot deadlock each other
+    deltas.sort(Comparator.comparingInt(ScoreDelta::userId));
+    return deltas;
+  }
+
+  private boolean hasPending() {
+    for (PendingScore score : pending.values()) {
+      if (!score.toDelta(0).isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void write(Connection connection, List<ScoreDelta> deltas) throws SQLException {
+    boolean autoCommit = connection.getAutoCommit();
+    connection.setAutoCommit(false);
+    try (PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)) {
+      for (ScoreDelta delta : deltas) {
+        statement.setInt(1, delta.currentGamePoints());
+        statement.setInt(2, delta.globalPoints());
+        statement.setInt(3, delta.globalPossiblePoints());
+        statement.setInt(4, delta.userId());
+        statement.addBatch();
+      }
+      statement.executeBatch();
+      connection.commit();
+    } catch (SQLException | RuntimeException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.setAutoCommit(autoCommit);
+    }
+  }
+
+  @FunctionalInterface
+  public interface ScoreRead<T> {
+    T read() throws SQLException, DatabaseAccessException;
+  }
+
+  private static final class PendingScore {
+    private final LongAdder currentGamePoints = new LongAdder();
+    private final LongAdder globalPoints = new LongAdder();
+    private final LongAdder globalPossiblePoints = new LongAdder();
+
+    private ScoreDelta toDelta(int userId) {
+      return new ScoreDelta(
+          userId,
+          (int) currentGamePoints.sum(),
+          (int) globalPoints.sum(),
+          (int) globalPossiblePoints.sum()
+      );
+    }
+  }
+
+  public record Snapshot(
+      int pendingUsers,
+      int unflushedUpdates,
+      long flushes,
+      long flushedRows,
+      long failedFlushes
+  ) {
+  }
+}
@@ -0,0 +1,11 @@
+package com.mipt.dbAPI;
+
+/**
+ * Points accumulated for a single user that have not been written to the users table yet.
+ */
+public record ScoreDelta(int userId, int currentGamePoints, int globalPoints, int globalPossiblePoints) {
+
+  public boolean isEmpty() {
+    return currentGamePoints == 0 && globalPoints == 0 && globalPossiblePoints == 0;
+  }
+}
@@ -0,0 +1,156 @@
+package com.mipt.dbAPI;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class SessionCache {
+  // Bounded session -> userId cache in front of the users.session lookups.
+  // Split into stripes, each one a small access-ordered LRU map with its own lock.
+  // A lookup that read the database before an invalidation must not cache what it read,
+  // so puts carry the version taken before the read and are dropped if sessions changed since.
+
+  private static final int STRIPES = 16;
+
+  private final boolean enabled;
+  private final long ttlNanos;
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final AtomicLong invalidations = new AtomicLong();
+
+  public SessionCache(int maxSize, long ttlMs) {
+    this.enabled = maxSize > 0 && ttlMs > 0;
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+    int stripeCapacity = Math.max(1, (maxSize + STRIPES - 1) / STRIPES);
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe(stripeCapacity);
+    }
+  }
+
+  /**
+   * Returns the cached userId of the session or null if it is unknown or expired.
+   */
+  public Integer get(String session) {
+    if (!enabled || session == null) {
+      return null;
+    }
+
+    Stripe stripe = stripeOf(session);
+    synchronized (stripe) {
+      CachedUser entry = stripe.get(session);
+      if (entry != null && entry.expiresAtNanos - System.nanoTime() > 0) {
+        hits.increment();
+        return entry.userId;
+      }
+      if (entry != null) {
+        stripe.remove(session);
+        evictions.increment();
+      }
+    }
+    misses.increment();
+    return null;
+  }
+
+  /**
+   * Version of the cached sessions, to be taken before the database is read for a put.
+   */
+  public long version() {
+    return invalidations.get();
+  }
+
+  public void put(String session, int userId, long version) {
+    if (!enabled || session == null) {
+      return;
+    }
+
+    Stripe stripe = stripeOf(session);
+    synchronized (stripe) {
+      // an invalidation of this session took the same stripe lock, so it is seen here
+      if (invalidations.get() == version) {
+        stripe.put(session, new CachedUser(userId, System.nanoTime() + ttlNanos));
+      }
+    }
+  }
+
+  public void invalidate(String session) {
+    if (session == null) {
+      return;
+    }
+
+    Stripe stripe = stripeOf(session);
+    synchronized (stripe) {
+      invalidations.incrementAndGet();
+      stripe.remove(session);
+    }
+  }
+
+  public void clear() {
+    invalidations.incrementAndGet();
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        stripe.clear();
+      }
+    }
+  }
+
+  public Snapshot snapshot() {
+    int size = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.size();
+      }
+    }
+    long hitCount = hits.sum();
+    long missCount = misses.sum();
+    long lookups = hitCount + missCount;
+    return new Snapshot(
+        enabled,
+        size,
+        hitCount,
+        missCount,
+        lookups == 0 ? 0 : (double) hitCount / lookups,
+        evictions.sum()
+    );
+  }
+
+  private Stripe stripeOf(String session) {
+    int hash = session.hashCode();
+    return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+  }
+
+  private record CachedUser(int userId, long expiresAtNanos) {
+  }
+
+  private final class Stripe extends LinkedHashMap<String, CachedUser> {
+    private final int capacity;
+
+    private Stripe(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+      if (size() > capacity) {
+        evictions.increment();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  public record Snapshot(
+      boolean enabled,
+      int size,
+      long hits,
+      long misses,
+      double hitRate,
+      long evictions
+  ) {
+  }
+}
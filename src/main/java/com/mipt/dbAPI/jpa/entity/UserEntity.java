@@ -1,11 +1,14 @@
 package com.mipt.dbAPI.jpa.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.sql.Timestamp;
 
 @Entity
 @Table(name = "users")
+// only changed columns are written, so saving a user does not overwrite points added by ScoreAccumulator
+@DynamicUpdate
 public class UserEntity {
 
   @Id
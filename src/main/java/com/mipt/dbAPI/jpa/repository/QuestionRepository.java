@@ -3,6 +3,7 @@ package com.mipt.dbAPI.jpa.repository;
 import com.mipt.dbAPI.jpa.entity.QuestionEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface QuestionRepository extends JpaRepository<QuestionEntity, Integer> {
@@ -10,4 +11,6 @@ public interface QuestionRepository extends JpaRepository<QuestionEntity, Intege
   long countByGame_Id(Integer gameId);
 
   Optional<QuestionEntity> findByGame_IdAndQuestionNumber(Integer gameId, int questionNumber);
+
+  List<QuestionEntity> findByGame_IdOrderByQuestionNumberAsc(Integer gameId);
 }
@@ -2,8 +2,6 @@ package com.mipt.dbAPI.jpa.repository;
 
 import com.mipt.dbAPI.jpa.entity.UserEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -21,9 +19,4 @@ public interface UserRepository extends JpaRepository<UserEntity, Integer> {
   List<UserEntity> findByCurrentGame_IdOrderByCurrentGamePointsDesc(Integer gameId);
 
   List<UserEntity> findByCurrentGame_IdOrderByIdAsc(Integer gameId);
-
-  @Query("select count(u.id) from UserEntity u where u.currentGame.id = :gameId")
-  long countParticipantsInGame(@Param("gameId") Integer gameId);
-
-  List<UserEntity> findTop100ByOrderByGlobalPointsDescGlobalPossiblePointsAsc();
 }
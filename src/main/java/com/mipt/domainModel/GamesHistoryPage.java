@@ -0,0 +1,14 @@
+package com.mipt.domainModel;
+
+import java.util.List;
+
+/**
+ * One page of the played games of a user, newest first. nextCursor is passed back to get
+ * the following page and is null on the last one.
+ */
+public record GamesHistoryPage(List<Game> games, Integer nextCursor) {
+
+  public GamesHistoryPage {
+    games = List.copyOf(games);
+  }
+}
@@ -0,0 +1,27 @@
+package com.mipt.domainModel;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Immutable view of a user profile read in one query: user row, played games and achievements.
+ */
+public record ProfileSnapshot(
+    int userId,
+    String username,
+    int picId,
+    String description,
+    Instant lastActivity,
+    int globalPoints,
+    int globalPossiblePoints,
+    int currentGamePoints,
+    Integer currentGameId,
+    List<Integer> gamesPlayed,
+    List<Integer> achievements
+) {
+
+  public ProfileSnapshot {
+    gamesPlayed = List.copyOf(gamesPlayed);
+    achievements = List.copyOf(achievements);
+  }
+}
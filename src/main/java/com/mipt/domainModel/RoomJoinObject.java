@@ -2,6 +2,8 @@ package com.mipt.domainModel;
 
 public class RoomJoinObject extends Game {
   private String session;
+  // place of the game in the question generation queue, null if its questions came from the pool
+  private Integer generationQueuePosition;
 
   public String getSession() {
     return session;
@@ -10,4 +12,12 @@ public class RoomJoinObject extends Game {
   public void setSession(String session) {
     this.session = session;
   }
+
+  public Integer getGenerationQueuePosition() {
+    return generationQueuePosition;
+  }
+
+  public void setGenerationQueuePosition(Integer generationQueuePosition) {
+    this.generationQueuePosition = generationQueuePosition;
+  }
 }
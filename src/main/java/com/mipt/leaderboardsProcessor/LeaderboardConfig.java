@@ -0,0 +1,9 @@
+package com.mipt.leaderboardsProcessor;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(LeaderboardProperties.class)
+public class LeaderboardConfig {
+}
@@ -0,0 +1,46 @@
+package com.mipt.leaderboardsProcessor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.leaderboard")
+public class LeaderboardProperties {
+  // the TOP-100 snapshot is re-published from the in-memory ranking this often
+  private long refreshIntervalMs = 1_000;
+  // the ranking is compared with the users table this often and rebuilt if they differ
+  private long reconcileIntervalMs = 30_000;
+  // delay before the first retry of a failed reconcile, doubled on every further failure
+  private long backoffInitialMs = 1_000;
+  private long backoffMaxMs = 300_000;
+
+  public long getRefreshIntervalMs() {
+    return refreshIntervalMs;
+  }
+
+  public void setRefreshIntervalMs(long refreshIntervalMs) {
+    this.refreshIntervalMs = refreshIntervalMs;
+  }
+
+  public long getReconcileIntervalMs() {
+    return reconcileIntervalMs;
+  }
+
+  public void setReconcileIntervalMs(long reconcileIntervalMs) {
+    this.reconcileIntervalMs = reconcileIntervalMs;
+  }
+
+  public long getBackoffInitialMs() {
+    return backoffInitialMs;
+  }
+
+  public void setBackoffInitialMs(long backoffInitialMs) {
+    this.backoffInitialMs = backoffInitialMs;
+  }
+
+  public long getBackoffMaxMs() {
+    return backoffMaxMs;
+  }
+
+  public void setBackoffMaxMs(long backoffMaxMs) {
+    this.backoffMaxMs = backoffMaxMs;
+  }
+}
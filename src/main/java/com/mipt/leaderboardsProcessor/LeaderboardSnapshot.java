@@ -0,0 +1,78 @@
+package com.mipt.leaderboardsProcessor;
+
+import org.json.JSONArray;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Latest published global leaderboard, kept as ready-to-send UTF-8 JSON with its ETag.
+ * The leaderboard job swaps it as a whole, readers never see a half-built snapshot.
+ */
+@Component
+public class LeaderboardSnapshot {
+
+  private final AtomicReference<Snapshot> current = new AtomicReference<>();
+
+  /**
+   * Publishes the leaderboard, returns false if it equals the current snapshot (nothing is swapped then).
+   */
+  public boolean publish(JSONArray leaderboard) {
+    byte[] body = leaderboard.toString().getBytes(StandardCharsets.UTF_8);
+    String etag = etagOf(body);
+
+    while (true) {
+      Snapshot previous = current.get();
+      if (previous != null && previous.etag().equals(etag)) {
+        return false;
+      }
+      long version = previous == null ? 1 : previous.version() + 1;
+      if (current.compareAndSet(previous, new Snapshot(body, etag, version, Instant.now()))) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Returns the latest snapshot or null if nothing was published yet.
+   */
+  public Snapshot current() {
+    return current.get();
+  }
+
+  /**
+   * Checks an If-None-Match header value against the snapshot ETag.
+   */
+  public static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      String tag = candidate.trim();
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals("*") || tag.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String etagOf(byte[] body) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+      return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  public record Snapshot(byte[] body, String etag, long version, Instant publishedAt) {
+  }
+}
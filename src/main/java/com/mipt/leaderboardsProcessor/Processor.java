@@ -1,34 +1,135 @@
 package com.mipt.leaderboardsProcessor;
 
+import com.mipt.dbAPI.DatabaseAccessException;
+import com.mipt.dbAPI.DbService;
+import com.mipt.dbAPI.GlobalRanking;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
 
-import org.json.JSONArray;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.charset.StandardCharsets;
-import java.io.IOException;
 import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Leaderboard job. Every tick publishes the TOP-100 of the in-memory ranking; every reconcile
+ * interval compares a checksum of the users table with the ranking and rebuilds the ranking only
+ * if they differ, e.g. after points were written by another instance. Failed reconciles are
+ * retried with jittered exponential backoff, the snapshot keeps being published meanwhile.
+ */
+@Component
 public class Processor {
-  public static void process() throws IOException, SQLException {
-    LeaderboardsLoader loader = new LeaderboardsLoader(
-      "jdbc:postgresql://localhost:5432/quizai",
-      "postgres",
-      "postgres"
-    );
 
-    JSONArray data = loader.getGlobalLeaderboards();
+  private static final Logger LOGGER = LoggerFactory.getLogger(Processor.class);
+
+  private final DbService dbService;
+  private final LeaderboardSnapshot leaderboardSnapshot;
+  private final LeaderboardProperties properties;
 
-    // Определяем путь к файлу в resources
-    Path outputPath = Paths.get("src/main/resources/global-leaderboards.json");
+  // only touched by the job; runs never overlap (fixed delay), though each may run on a new virtual thread
+  private long nextReconcileAt = System.nanoTime();
+  private int consecutiveFailures;
 
-    // Создаем директории, если они не существуют
-    Files.createDirectories(outputPath.getParent());
+  private final LongAdder reconciles = new LongAdder();
+  private final LongAdder rebuilds = new LongAdder();
+  private final LongAdder unchanged = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAccumulator maxRunDurationMs = new LongAccumulator(Long::max, 0);
+  private volatile long lastRunDurationMs;
+  private volatile long lastRowCount;
+  private volatile int currentFailures;
+  private volatile long nextReconcileInMs;
+
+  public Processor(DbService dbService, LeaderboardSnapshot leaderboardSnapshot, LeaderboardProperties properties) {
+    this.dbService = dbService;
+    this.leaderboardSnapshot = leaderboardSnapshot;
+    this.properties = properties;
+  }
+
+  @Scheduled(fixedDelayString = "${app.leaderboard.refresh-interval-ms:1000}")
+  public void process() {
+    long now = System.nanoTime();
+    if (now - nextReconcileAt >= 0) {
+      reconcile(now);
+    }
+    nextReconcileInMs = Math.max(0, TimeUnit.NANOSECONDS.toMillis(nextReconcileAt - System.nanoTime()));
+
+    try {
+      if (leaderboardSnapshot.publish(dbService.getGlobalLeaderboards())) {
+        LOGGER.debug("Published global leaderboards version {}", leaderboardSnapshot.current().version());
+      }
+    } catch (SQLException e) {
+      LOGGER.error("Failed to publish global leaderboards", e);
+    }
+  }
 
-    // Сохраняем данные
-    String jsonString = data.toString(2);
-    Files.writeString(outputPath, jsonString, StandardCharsets.UTF_8);
+  private void reconcile(long start) {
+    reconciles.increment();
+    try {
+      GlobalRanking.Checksum stored = dbService.getStoredRankingChecksum();
+      if (stored.equals(dbService.getGlobalRankingChecksum())) {
+        unchanged.increment();
+        lastRowCount = stored.users();
+      } else {
+        lastRowCount = dbService.rebuildGlobalRanking();
+        rebuilds.increment();
+      }
+      consecutiveFailures = 0;
+      nextReconcileAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getReconcileIntervalMs());
+    } catch (SQLException | DatabaseAccessException | DataAccessException e) {
+      failures.increment();
+      consecutiveFailures++;
+      long delayMs = backoffMs(consecutiveFailures);
+      nextReconcileAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+      LOGGER.warn("Failed to reconcile the global ranking ({} in a row), retrying in {} ms",
+          consecutiveFailures, delayMs, e);
+    } finally {
+      currentFailures = consecutiveFailures;
+      long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      lastRunDurationMs = durationMs;
+      maxRunDurationMs.accumulate(durationMs);
+    }
+  }
+
+  private long backoffMs(int failures) {
+    // initial * 2^(failures - 1) capped at the maximum, the random half spreads retries of several instances
+    long initial = Math.max(1, properties.getBackoffInitialMs());
+    long max = Math.max(initial, properties.getBackoffMaxMs());
+    long delay = failures > 30 ? max : Math.min(max, initial << (failures - 1));
+    return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+  }
+
+  public Snapshot snapshot() {
+    LeaderboardSnapshot.Snapshot published = leaderboardSnapshot.current();
+    return new Snapshot(
+        reconciles.sum(),
+        rebuilds.sum(),
+        unchanged.sum(),
+        failures.sum(),
+        currentFailures,
+        lastRunDurationMs,
+        maxRunDurationMs.get(),
+        lastRowCount,
+        published == null ? 0 : published.version(),
+        nextReconcileInMs
+    );
+  }
 
-    System.out.println("Saved leaderboards to: " + outputPath.toAbsolutePath());
+  public record Snapshot(
+      long reconciles,
+      long rebuilds,
+      long unchanged,
+      long failures,
+      int consecutiveFailures,
+      long lastRunDurationMs,
+      long maxRunDurationMs,
+      long lastRowCount,
+      long publishedVersion,
+      long nextReconcileInMs
+  ) {
   }
-}
\ No newline at end of file
+}
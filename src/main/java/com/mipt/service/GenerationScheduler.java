@@ -0,0 +1,300 @@
+package com.mipt.service;
+
+import com.mipt.dbAPI.GenerationJobs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the question generation jobs of games on a fixed number of worker threads.
+ * Jobs wait in the generation_jobs table, so they survive a restart and are shared by all
+ * instances; the game with more players in its lobby goes first, then the older games.
+ * A job that does not fit into the queue is rejected instead of being started anyway,
+ * a failed one is retried with backoff, and a job of a stopped instance is taken over
+ * once its heartbeat is stale.
+ */
+public class GenerationScheduler implements AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(GenerationScheduler.class);
+
+  private final GenerationJobs jobs;
+  private final int workerCount;
+  private final int capacity;
+  private final long pollMs;
+  private final long heartbeatMs;
+  private final long staleAfterMs;
+  private final int maxAttempts;
+  private final long retryBackoffMs;
+  // tells the jobs of this instance apart in the table
+  private final String owner;
+
+  private final List<Thread> workers = new ArrayList<>();
+  private final ScheduledExecutorService heartbeat;
+  private volatile Handler handler;
+
+  // guarded by this
+  private int idleWorkers;
+  private boolean closed;
+
+  private final LongAdder submitted = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder completed = new LongAdder();
+  private final LongAdder retried = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final LongAdder recovered = new LongAdder();
+  private final LongAdder running = new LongAdder();
+  private final LongAdder waitMsTotal = new LongAdder();
+  private final LongAccumulator waitMsMax = new LongAccumulator(Long::max, 0);
+  private final LongAdder runNanosTotal = new LongAdder();
+  private final LongAccumulator runNanosMax = new LongAccumulator(Long::max, 0);
+
+  public GenerationScheduler(GenerationJobs jobs, int workers, int capacity, long pollMs, long heartbeatMs,
+                             long staleAfterMs, int maxAttempts, long retryBackoffMs) {
+    this.jobs = jobs;
+    this.workerCount = Math.max(1, workers);
+    this.capacity = Math.max(1, capacity);
+    this.pollMs = Math.max(1, pollMs);
+    this.heartbeatMs = Math.max(1, heartbeatMs);
+    this.staleAfterMs = staleAfterMs;
+    this.maxAttempts = Math.max(1, maxAttempts);
+    this.retryBackoffMs = retryBackoffMs;
+    this.owner = ManagementFactory.getRuntimeMXBean().getName() + "/"
+        + HexFormat.of().toHexDigits(ThreadLocalRandom.current().nextInt());
+    this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "question-generation-heartbeat");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Recovers the jobs and games left by stopped instances, then starts the workers and the heartbeat.
+   */
+  public synchronized void start(Handler handler) {
+    if (this.handler != null || closed) {
+      return;
+    }
+    this.handler = handler;
+    sweep();
+    try {
+      int orphans = jobs.enqueueOrphans(staleAfterMs);
+      if (orphans > 0) {
+        recovered.add(orphans);
+        LOGGER.info("Queued question generation for {} games left without a job", orphans);
+      }
+    } catch (RuntimeException e) {
+      LOGGER.error("Failed to queue question generation for orphaned games", e);
+    }
+
+    for (int i = 0; i < workerCount; i++) {
+      Thread worker = new Thread(this::work, "question-generation-" + i);
+      worker.setDaemon(true);
+      workers.add(worker);
+      worker.start();
+    }
+    heartbeat.scheduleWithFixedDelay(this::beat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Queues the generation job of the game. A job runs on a worker thread and blocks it until
+   * the generation is over, so at most as many games are generated at once as there are workers.
+   */
+  public Admission submit(int gameId, int topicId, int levelDifficulty, int numberOfQuestions) {
+    int position = jobs.enqueue(gameId, topicId, levelDifficulty, numberOfQuestions, capacity);
+    if (position == 0) {
+      rejected.increment();
+      return Admission.REJECTED;
+    }
+    submitted.increment();
+    synchronized (this) {
+      // idle workers take the first jobs right away
+      position = Math.max(0, position - idleWorkers);
+      notify();
+    }
+    return new Admission(true, position);
+  }
+
+  /**
+   * Whether the game has a queued or running job on any instance.
+   */
+  public boolean isPending(int gameId) {
+    return jobs.isPending(gameId);
+  }
+
+  private void work() {
+    while (true) {
+      GenerationJobs.Job job = null;
+      try {
+        job = jobs.claim(owner);
+      } catch (RuntimeException e) {
+        LOGGER.error("Failed to claim a question generation job", e);
+      }
+
+      if (job == null) {
+        // jobs queued by other instances or whose backoff is over are found by polling
+        synchronized (this) {
+          if (closed) {
+            return;
+          }
+          idleWorkers++;
+          try {
+            wait(pollMs);
+          } catch (InterruptedException e) {
+            return;
+          } finally {
+            idleWorkers--;
+          }
+        }
+        continue;
+      }
+      run(job);
+    }
+  }
+
+  private void run(GenerationJobs.Job job) {
+    waitMsTotal.add(job.waitedMs());
+    waitMsMax.accumulate(job.waitedMs());
+
+    running.increment();
+    long start = System.nanoTime();
+    try {
+      handler.run(job);
+      jobs.complete(job.gameId(), owner);
+      completed.increment();
+    } catch (Exception e) {
+      LOGGER.error("Question generation job of game {} failed, attempt {} of {}",
+          job.gameId(), job.attempts(), maxAttempts, e);
+      try {
+        if (jobs.retry(job.gameId(), owner, String.valueOf(e.getMessage()), maxAttempts, retryBackoffMs)) {
+          fail(job);
+        } else {
+          retried.increment();
+        }
+      } catch (RuntimeException retryFailure) {
+        // the heartbeat stops, the sweeper of some instance retries the job
+        LOGGER.error("Failed to queue question generation of game {} again", job.gameId(), retryFailure);
+      }
+    } finally {
+      running.decrement();
+      long elapsed = System.nanoTime() - start;
+      runNanosTotal.add(elapsed);
+      runNanosMax.accumulate(elapsed);
+    }
+  }
+
+  private void beat() {
+    try {
+      jobs.heartbeat(owner);
+    } catch (RuntimeException e) {
+      LOGGER.error("Failed to heartbeat question generation jobs", e);
+    }
+    sweep();
+  }
+
+  private void sweep() {
+    try {
+      for (GenerationJobs.Job job : jobs.requeueStale(staleAfterMs, maxAttempts, retryBackoffMs)) {
+        fail(job);
+      }
+    } catch (RuntimeException e) {
+      LOGGER.error("Failed to recover stale question generation jobs", e);
+    }
+  }
+
+  private void fail(GenerationJobs.Job job) {
+    failed.increment();
+    LOGGER.error("Question generation of game {} failed after {} attempts", job.gameId(), job.attempts());
+    try {
+      handler.failed(job);
+    } catch (Exception e) {
+      LOGGER.error("Failed to close game {} after failed question generation", job.gameId(), e);
+    }
+  }
+
+  public Snapshot snapshot() {
+    int depth;
+    try {
+      depth = jobs.queueDepth();
+    } catch (RuntimeException e) {
+      depth = -1;
+    }
+    long started = completed.sum() + retried.sum() + failed.sum();
+    return new Snapshot(
+        owner,
+        workerCount,
+        running.intValue(),
+        depth,
+        capacity,
+        submitted.sum(),
+        rejected.sum(),
+        completed.sum(),
+        retried.sum(),
+        failed.sum(),
+        recovered.sum(),
+        started == 0 ? 0 : (double) waitMsTotal.sum() / started,
+        waitMsMax.get(),
+        started == 0 ? 0 : nanosToMillis(runNanosTotal.sum()) / started,
+        nanosToMillis(runNanosMax.get())
+    );
+  }
+
+  private static double nanosToMillis(long nanos) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  @Override
+  public void close() {
+    synchronized (this) {
+      closed = true;
+      notifyAll();
+    }
+    heartbeat.shutdownNow();
+    // running jobs stop heartbeating and are taken over by another instance or after the restart
+    workers.forEach(Thread::interrupt);
+  }
+
+  /**
+   * Generates the questions of a claimed job. run throws if the game did not get all its questions.
+   */
+  public interface Handler {
+    void run(GenerationJobs.Job job) throws Exception;
+
+    void failed(GenerationJobs.Job job) throws Exception;
+  }
+
+  /**
+   * Whether the job was queued and its place in the queue, 0 if a worker takes it right away.
+   */
+  public record Admission(boolean accepted, int position) {
+    public static final Admission REJECTED = new Admission(false, 0);
+  }
+
+  public record Snapshot(
+      String owner,
+      int workers,
+      int running,
+      int queueDepth,
+      int queueCapacity,
+      long submitted,
+      long rejected,
+      long completed,
+      long retried,
+      long failed,
+      long recovered,
+      double avgWaitMs,
+      double maxWaitMs,
+      double avgRunMs,
+      double maxRunMs
+  ) {
+  }
+}
@@ -0,0 +1,178 @@
+package com.mipt.service;
+
+import com.mipt.dbAPI.DatabaseAccessException;
+import com.mipt.dbAPI.DbService;
+import com.mipt.dbAPI.GameListener;
+import com.mipt.dbAPI.ScoreDelta;
+import com.mipt.utils.BackendUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the state of running games (status 2) in memory so that answers are
+ * scored without touching the database. Points go to the write-behind buffer of
+ * DbService and reach the users table in batches. A game is forgotten once its stop or
+ * deletion is committed, or after it got no answers for the idle timeout.
+ */
+public class LiveGameRegistry implements GameListener {
+
+  private static final int ACTIVE_STATUS = 2;
+  private static final int STOPPED_STATUS = 3;
+
+  private final DbService dbService;
+  private final long idleTimeoutNanos;
+  private final BackendUtils utils = new BackendUtils();
+  private final Map<Integer, LiveGame> games = new ConcurrentHashMap<>();
+
+  public LiveGameRegistry(DbService dbService, long idleTimeoutMs) {
+    this.dbService = dbService;
+    this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+  }
+
+  /**
+   * Loads questions, difficulty and participants of a game that has just been
+   * started or resumed.
+   */
+  public void activate(int gameId) throws SQLException, DatabaseAccessException {
+    LiveGame game = games.get(gameId);
+    if (game == null) {
+      game = load(gameId);
+    }
+    game.active = true;
+  }
+
+  /**
+   * Marks a paused game as inactive; answers are rejected until it is activated again.
+   */
+  public void deactivate(int gameId) {
+    LiveGame game = games.get(gameId);
+    if (game != null) {
+      game.active = false;
+    }
+  }
+
+  /**
+   * Scores a submitted answer and returns whether it was right.
+   */
+  public boolean submitAnswer(String session, int gameId, int questionNumber, int submittedAnswerNumber,
+                              int timeTakenToAnswerInSeconds) throws SQLException, DatabaseAccessException {
+    LiveGame game = games.get(gameId);
+    if (game == null) {
+      game = load(gameId);
+    }
+    if (!game.active) {
+      throw new DatabaseAccessException("Game is not active");
+    }
+    game.lastUsedNanos = System.nanoTime();
+
+    Integer rightAnswer = game.rightAnswers.get(questionNumber);
+    if (rightAnswer == null) {
+      // the question could have been loaded after the game was registered
+      rightAnswer = dbService.getRightAnswer(gameId, questionNumber);
+      game.rightAnswers.put(questionNumber, rightAnswer);
+    }
+
+    int userId = resolveUserId(game, session);
+    boolean isRight = submittedAnswerNumber == rightAnswer;
+    int pointsForAnswer = isRight ? utils.countPoints(game.levelDifficulty, timeTakenToAnswerInSeconds) : 0;
+    int possiblePointsForAnswer = utils.countPossiblePoints(game.levelDifficulty);
+    dbService.addScore(new ScoreDelta(userId, pointsForAnswer, pointsForAnswer, possiblePointsForAnswer));
+    return isRight;
+  }
+
+  /**
+   * Forgets a stopped or deleted game; its pending points are written by
+   * DbService.stopGame / deleteGame.
+   */
+  public void finish(int gameId) {
+    LiveGame game = games.remove(gameId);
+    if (game != null) {
+      game.active = false;
+    }
+  }
+
+  @Override
+  public void statusChanged(int gameId, int status) {
+    if (status == STOPPED_STATUS) {
+      finish(gameId);
+    }
+  }
+
+  @Override
+  public void gameDeleted(int gameId) {
+    finish(gameId);
+  }
+
+  /**
+   * Forgets the games that got no answers for the idle timeout, an answer to
+   * one of them loads it again.
+   */
+  @Scheduled(fixedDelayString = "${app.live-games.eviction-interval-ms:60000}")
+  public void evictIdle() {
+    long now = System.nanoTime();
+    games.values().removeIf(game -> now - game.lastUsedNanos > idleTimeoutNanos);
+  }
+
+  public int size() {
+    return games.size();
+  }
+
+  private LiveGame load(int gameId) throws SQLException, DatabaseAccessException {
+    if (dbService.getStatus(gameId) != ACTIVE_STATUS) {
+      throw new DatabaseAccessException("Game is not active");
+    }
+
+    LiveGame game = new LiveGame(dbService.getPreset(gameId)[1]);
+    game.rightAnswers.putAll(dbService.getRightAnswers(gameId));
+    game.sessions.putAll(dbService.getParticipantSessions(gameId));
+    LiveGame existing = games.putIfAbsent(gameId, game);
+    if (existing != null) {
+      return existing;
+    }
+
+    // a stop committed during the load ran finish() before the game was put, so the status is read again
+    boolean active = false;
+    try {
+      active = dbService.getStatus(gameId) == ACTIVE_STATUS;
+    } finally {
+      if (!active) {
+        games.remove(gameId, game);
+      }
+    }
+    if (!active) {
+      throw new DatabaseAccessException("Game is not active");
+    }
+    return game;
+  }
+
+  private int resolveUserId(LiveGame game, String session) throws SQLException, DatabaseAccessException {
+    if (session == null) {
+      throw new DatabaseAccessException();
+    }
+    Integer userId = game.sessions.get(session);
+    if (userId == null) {
+      userId = dbService.getUserId(session);
+      if (userId == null) {
+        throw new DatabaseAccessException();
+      }
+      game.sessions.put(session, userId);
+    }
+    return userId;
+  }
+
+  private static final class LiveGame {
+    private final int levelDifficulty;
+    private final Map<Integer, Integer> rightAnswers = new ConcurrentHashMap<>();
+    private final Map<String, Integer> sessions = new ConcurrentHashMap<>();
+    private volatile boolean active = true;
+    private volatile long lastUsedNanos = System.nanoTime();
+
+    private LiveGame(int levelDifficulty) {
+      this.levelDifficulty = levelDifficulty;
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package com.mipt.service;
+
+import com.mipt.dbAPI.DbService;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(LiveGamesProperties.class)
+public class LiveGamesConfig {
+
+  @Bean
+  public LiveGameRegistry liveGameRegistry(DbService dbService, LiveGamesProperties properties) {
+    LiveGameRegistry liveGameRegistry = new LiveGameRegistry(dbService, properties.getIdleTimeoutMs());
+    // stops and deletions reach the registry after they are committed
+    dbService.addGameListener(liveGameRegistry);
+    return liveGameRegistry;
+  }
+}
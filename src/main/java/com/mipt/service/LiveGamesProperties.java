@@ -0,0 +1,26 @@
+package com.mipt.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.live-games")
+public class LiveGamesProperties {
+  // a running game without answers for this time is dropped from memory and loaded again on the next answer
+  private long idleTimeoutMs = 1_800_000;
+  private long evictionIntervalMs = 60_000;
+
+  public long getIdleTimeoutMs() {
+    return idleTimeoutMs;
+  }
+
+  public void setIdleTimeoutMs(long idleTimeoutMs) {
+    this.idleTimeoutMs = idleTimeoutMs;
+  }
+
+  public long getEvictionIntervalMs() {
+    return evictionIntervalMs;
+  }
+
+  public void setEvictionIntervalMs(long evictionIntervalMs) {
+    this.evictionIntervalMs = evictionIntervalMs;
+  }
+}
@@ -0,0 +1,162 @@
+package com.mipt.service;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LlmClient implements AutoCloseable {
+  // One long-lived HTTP client for all LLM calls, so connections to the LLM endpoint are reused.
+  // Requests run on virtual threads; at most maxConcurrentRequests of them talk to the LLM at once,
+  // the rest wait for a permit.
+
+  public static final long DEFAULT_CONNECT_TIMEOUT_MS = 5_000;
+  public static final long DEFAULT_REQUEST_TIMEOUT_MS = 120_000;
+  public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 16;
+  public static final long DEFAULT_KEEP_ALIVE_SECONDS = 300;
+
+  // read by the JDK once, when the first HttpClient is built
+  private static final String KEEP_ALIVE_PROPERTY = "jdk.httpclient.keepalive.timeout";
+
+  private final URI chatUri;
+  private final Duration requestTimeout;
+  private final Semaphore permits;
+  private final ExecutorService executor;
+  private final HttpClient httpClient;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger waiting = new AtomicInteger();
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder timeouts = new LongAdder();
+  private final LongAdder latencyNanosTotal = new LongAdder();
+  private final LongAccumulator latencyNanosMax = new LongAccumulator(Long::max, 0);
+
+  public LlmClient(String chatUrl) {
+    this(chatUrl, DEFAULT_CONNECT_TIMEOUT_MS, DEFAULT_REQUEST_TIMEOUT_MS,
+        DEFAULT_MAX_CONCURRENT_REQUESTS, DEFAULT_KEEP_ALIVE_SECONDS);
+  }
+
+  public LlmClient(String chatUrl, long connectTimeoutMs, long requestTimeoutMs,
+                   int maxConcurrentRequests, long keepAliveSeconds) {
+    if (System.getProperty(KEEP_ALIVE_PROPERTY) == null) {
+      System.setProperty(KEEP_ALIVE_PROPERTY, String.valueOf(keepAliveSeconds));
+    }
+
+    this.chatUri = URI.create(chatUrl);
+    this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+    this.permits = new Semaphore(Math.max(1, maxConcurrentRequests), true);
+    this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("llm-client-", 0).factory());
+    this.httpClient = HttpClient.newBuilder()
+        // Ollama speaks HTTP/1.1, skip the h2c upgrade attempt on every new connection
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+        .executor(executor)
+        .build();
+  }
+
+  /**
+   * Sends the payload to the chat endpoint and returns the response body.
+   * Completes exceptionally on connection errors, timeouts and non-200 responses.
+   */
+  public CompletableFuture<String> chat(JSONObject payload) {
+    HttpRequest request = HttpRequest.newBuilder()
+        .uri(chatUri)
+        .timeout(requestTimeout)
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(payload.toString(), StandardCharsets.UTF_8))
+        .build();
+
+    return CompletableFuture.supplyAsync(() -> send(request), executor);
+  }
+
+  private String send(HttpRequest request) {
+    waiting.incrementAndGet();
+    try {
+      permits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CompletionException(e);
+    } finally {
+      waiting.decrementAndGet();
+    }
+
+    inFlight.incrementAndGet();
+    requests.increment();
+    long start = System.nanoTime();
+    try {
+      HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+      if (response.statusCode() != 200) {
+        failures.increment();
+        throw new CompletionException(new IOException("LLM responded with status " + response.statusCode()));
+      }
+      return response.body();
+    } catch (HttpTimeoutException e) {
+      failures.increment();
+      timeouts.increment();
+      throw new CompletionException(e);
+    } catch (IOException e) {
+      failures.increment();
+      throw new CompletionException(e);
+    } catch (InterruptedException e) {
+      failures.increment();
+      Thread.currentThread().interrupt();
+      throw new CompletionException(e);
+    } finally {
+      long elapsed = System.nanoTime() - start;
+      latencyNanosTotal.add(elapsed);
+      latencyNanosMax.accumulate(elapsed);
+      inFlight.decrementAndGet();
+      permits.release();
+    }
+  }
+
+  public Snapshot snapshot() {
+    long sent = requests.sum();
+    return new Snapshot(
+        inFlight.get(),
+        waiting.get(),
+        sent,
+        failures.sum(),
+        timeouts.sum(),
+        sent == 0 ? 0 : nanosToMillis(latencyNanosTotal.sum()) / sent,
+        nanosToMillis(latencyNanosMax.get())
+    );
+  }
+
+  private static double nanosToMillis(long nanos) {
+    return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  @Override
+  public void close() {
+    httpClient.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  public record Snapshot(
+      int inFlight,
+      int waiting,
+      long requests,
+      long failures,
+      long timeouts,
+      double averageLatencyMs,
+      double maxLatencyMs
+  ) {
+  }
+}
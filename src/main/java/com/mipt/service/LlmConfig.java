@@ -0,0 +1,47 @@
+package com.mipt.service;
+
+import com.mipt.QuestionGenerator;
+import com.mipt.dbAPI.GenerationJobs;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties({LlmProperties.class, QuestionPoolProperties.class})
+public class LlmConfig {
+
+  @Bean(destroyMethod = "close")
+  public LlmClient llmClient(LlmProperties llmProperties) {
+    return new LlmClient(
+        llmProperties.getUrl(),
+        llmProperties.getConnectTimeoutMs(),
+        llmProperties.getRequestTimeoutMs(),
+        llmProperties.getMaxConcurrentRequests(),
+        llmProperties.getKeepAliveSeconds()
+    );
+  }
+
+  @Bean
+  public QuestionGenerator questionGenerator(LlmClient llmClient, LlmProperties llmProperties) {
+    return new QuestionGenerator(
+        llmClient,
+        llmProperties.getModel(),
+        llmProperties.getMaxInFlight(),
+        llmProperties.getNearDuplicateThreshold()
+    );
+  }
+
+  @Bean(destroyMethod = "close")
+  public GenerationScheduler generationScheduler(GenerationJobs generationJobs, LlmProperties llmProperties) {
+    return new GenerationScheduler(
+        generationJobs,
+        llmProperties.getGenerationWorkers(),
+        llmProperties.getGenerationQueueCapacity(),
+        llmProperties.getGenerationPollMs(),
+        llmProperties.getGenerationHeartbeatMs(),
+        llmProperties.getGenerationStaleAfterMs(),
+        llmProperties.getGenerationMaxAttempts(),
+        llmProperties.getGenerationRetryBackoffMs()
+    );
+  }
+}
@@ -0,0 +1,174 @@
+package com.mipt.service;
+
+import com.mipt.QuestionGenerator;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.llm")
+public class LlmProperties {
+  private String url = QuestionGenerator.DEFAULT_CHAT_URL;
+  private String model = QuestionGenerator.DEFAULT_MODEL;
+  // concurrent generation requests per game, 1 generates the questions one by one
+  private int maxInFlight = 4;
+  // trigram similarity from which two questions count as the same question
+  private double nearDuplicateThreshold = QuestionGenerator.DEFAULT_NEAR_DUPLICATE_THRESHOLD;
+  private long connectTimeoutMs = LlmClient.DEFAULT_CONNECT_TIMEOUT_MS;
+  // whole request, the model answers one question in seconds to minutes
+  private long requestTimeoutMs = LlmClient.DEFAULT_REQUEST_TIMEOUT_MS;
+  // concurrent requests to the LLM across all games
+  private int maxConcurrentRequests = LlmClient.DEFAULT_MAX_CONCURRENT_REQUESTS;
+  // how long an idle connection to the LLM is kept open
+  private long keepAliveSeconds = LlmClient.DEFAULT_KEEP_ALIVE_SECONDS;
+  // questions are stored one by one while generated; the lobby is ready once this many exist
+  private int readyAfterQuestions = 3;
+  // how long a request for a question that is still being generated waits before "pending"
+  private long questionWaitMs = 2_000;
+  // games generated at once, the others wait in the generation queue
+  private int generationWorkers = 2;
+  // games that may wait for generation, createGame is refused with 503 beyond that
+  private int generationQueueCapacity = 64;
+  // how often idle workers look for jobs queued by other instances or whose backoff is over
+  private long generationPollMs = 1_000;
+  // running jobs are heartbeated, a job whose heartbeat is older than stale-after belongs
+  // to a stopped instance and is taken over
+  private long generationHeartbeatMs = 5_000;
+  private long generationStaleAfterMs = 30_000;
+  // a failed job is retried after backoff, 2 x backoff, ... until it has no attempts left
+  private int generationMaxAttempts = 3;
+  private long generationRetryBackoffMs = 5_000;
+
+  public String getUrl() {
+    return url;
+  }
+
+  public void setUrl(String url) {
+    this.url = url;
+  }
+
+  public String getModel() {
+    return model;
+  }
+
+  public void setModel(String model) {
+    this.model = model;
+  }
+
+  public int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  public void setMaxInFlight(int maxInFlight) {
+    this.maxInFlight = maxInFlight;
+  }
+
+  public double getNearDuplicateThreshold() {
+    return nearDuplicateThreshold;
+  }
+
+  public void setNearDuplicateThreshold(double nearDuplicateThreshold) {
+    this.nearDuplicateThreshold = nearDuplicateThreshold;
+  }
+
+  public long getConnectTimeoutMs() {
+    return connectTimeoutMs;
+  }
+
+  public void setConnectTimeoutMs(long connectTimeoutMs) {
+    this.connectTimeoutMs = connectTimeoutMs;
+  }
+
+  public long getRequestTimeoutMs() {
+    return requestTimeoutMs;
+  }
+
+  public void setRequestTimeoutMs(long requestTimeoutMs) {
+    this.requestTimeoutMs = requestTimeoutMs;
+  }
+
+  public int getMaxConcurrentRequests() {
+    return maxConcurrentRequests;
+  }
+
+  public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+    this.maxConcurrentRequests = maxConcurrentRequests;
+  }
+
+  public long getKeepAliveSeconds() {
+    return keepAliveSeconds;
+  }
+
+  public void setKeepAliveSeconds(long keepAliveSeconds) {
+    this.keepAliveSeconds = keepAliveSeconds;
+  }
+
+  public int getReadyAfterQuestions() {
+    return readyAfterQuestions;
+  }
+
+  public void setReadyAfterQuestions(int readyAfterQuestions) {
+    this.readyAfterQuestions = readyAfterQuestions;
+  }
+
+  public long getQuestionWaitMs() {
+    return questionWaitMs;
+  }
+
+  public void setQuestionWaitMs(long questionWaitMs) {
+    this.questionWaitMs = questionWaitMs;
+  }
+
+  public int getGenerationWorkers() {
+    return generationWorkers;
+  }
+
+  public void setGenerationWorkers(int generationWorkers) {
+    this.generationWorkers = generationWorkers;
+  }
+
+  public int getGenerationQueueCapacity() {
+    return generationQueueCapacity;
+  }
+
+  public void setGenerationQueueCapacity(int generationQueueCapacity) {
+    this.generationQueueCapacity = generationQueueCapacity;
+  }
+
+  public long getGenerationPollMs() {
+    return generationPollMs;
+  }
+
+  public void setGenerationPollMs(long generationPollMs) {
+    this.generationPollMs = generationPollMs;
+  }
+
+  public long getGenerationHeartbeatMs() {
+    return generationHeartbeatMs;
+  }
+
+  public void setGenerationHeartbeatMs(long generationHeartbeatMs) {
+    this.generationHeartbeatMs = generationHeartbeatMs;
+  }
+
+  public long getGenerationStaleAfterMs() {
+    return generationStaleAfterMs;
+  }
+
+  public void setGenerationStaleAfterMs(long generationStaleAfterMs) {
+    this.generationStaleAfterMs = generationStaleAfterMs;
+  }
+
+  public int getGenerationMaxAttempts() {
+    return generationMaxAttempts;
+  }
+
+  public void setGenerationMaxAttempts(int generationMaxAttempts) {
+    this.generationMaxAttempts = generationMaxAttempts;
+  }
+
+  public long getGenerationRetryBackoffMs() {
+    return generationRetryBackoffMs;
+  }
+
+  public void setGenerationRetryBackoffMs(long generationRetryBackoffMs) {
+    this.generationRetryBackoffMs = generationRetryBackoffMs;
+  }
+}
@@ -0,0 +1,305 @@
+package com.mipt.service;
+
+import com.mipt.dbAPI.DatabaseAccessException;
+import com.mipt.dbAPI.DbService;
+import com.mipt.dbAPI.GameListener;
+import com.mipt.domainModel.LobbyObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes lobby changes to the room pages and the open-games page over server-sent events.
+ * DbService reports committed changes; the changes of a room are coalesced for a short time,
+ * then the lobby is read once and sent to every subscriber of the room instead of each of them polling.
+ * Only changes made by this instance are seen here; the pages pick up the ones of other instances
+ * with a slow reconciliation poll (templates/js/lobby-events.js).
+ */
+public class LobbyEvents implements GameListener, AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LobbyEvents.class);
+
+  private final DbService dbService;
+  private final QuestionLoadingService questionLoadingService;
+  private final long emitterTimeoutMs;
+  private final long coalesceMs;
+
+  private final Map<Integer, Set<SseEmitter>> lobbySubscribers = new ConcurrentHashMap<>();
+  private final Set<SseEmitter> openGamesSubscribers = ConcurrentHashMap.newKeySet();
+  // rooms changed since the last dispatch -> kinds of the changes
+  private final Map<Integer, Set<String>> changedLobbies = new ConcurrentHashMap<>();
+  private final AtomicBoolean openGamesChanged = new AtomicBoolean();
+  private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+  private final AtomicLong openGamesVersion = new AtomicLong();
+  private final ScheduledExecutorService dispatcher;
+
+  private final LongAdder events = new LongAdder();
+  private final LongAdder pushes = new LongAdder();
+  private final LongAdder failedPushes = new LongAdder();
+
+  public LobbyEvents(DbService dbService, QuestionLoadingService questionLoadingService,
+                     long emitterTimeoutMs, long coalesceMs, long heartbeatMs) {
+    this.dbService = dbService;
+    this.questionLoadingService = questionLoadingService;
+    this.emitterTimeoutMs = emitterTimeoutMs;
+    this.coalesceMs = Math.max(0, coalesceMs);
+    this.dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "lobby-events");
+      thread.setDaemon(true);
+      return thread;
+    });
+    dispatcher.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Opens a stream of "lobby" events of the room, the first one carries the current lobby.
+   */
+  public SseEmitter subscribeLobby(int gameId) {
+    SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+    lobbySubscribers.compute(gameId, (id, subscribers) -> {
+      Set<SseEmitter> result = subscribers == null ? ConcurrentHashMap.newKeySet() : subscribers;
+      result.add(emitter);
+      return result;
+    });
+    Runnable unsubscribe = () -> unsubscribeLobby(gameId, emitter);
+    emitter.onCompletion(unsubscribe);
+    emitter.onTimeout(unsubscribe);
+    emitter.onError(e -> unsubscribe.run());
+
+    execute(() -> sendLobby(gameId, Set.of(emitter), Set.of("subscribe")));
+    return emitter;
+  }
+
+  /**
+   * Opens a stream of "open-games" events sent whenever the list of open games may have changed.
+   */
+  public SseEmitter subscribeOpenGames() {
+    SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+    openGamesSubscribers.add(emitter);
+    Runnable unsubscribe = () -> openGamesSubscribers.remove(emitter);
+    emitter.onCompletion(unsubscribe);
+    emitter.onTimeout(unsubscribe);
+    emitter.onError(e -> unsubscribe.run());
+    return emitter;
+  }
+
+  @Override
+  public void gameCreated(int gameId) {
+    openGamesChanged();
+  }
+
+  @Override
+  public void participantJoined(int gameId) {
+    lobbyChanged(gameId, "join");
+    openGamesChanged();
+  }
+
+  @Override
+  public void participantLeft(int gameId) {
+    lobbyChanged(gameId, "leave");
+    openGamesChanged();
+  }
+
+  @Override
+  public void statusChanged(int gameId, int status) {
+    lobbyChanged(gameId, "status");
+    openGamesChanged();
+  }
+
+  @Override
+  public void questionsLoaded(int gameId) {
+    lobbyChanged(gameId, "questions");
+  }
+
+  @Override
+  public void settingsChanged(int gameId) {
+    openGamesChanged();
+  }
+
+  @Override
+  public void gameDeleted(int gameId) {
+    lobbyChanged(gameId, "deleted");
+    openGamesChanged();
+  }
+
+  private void lobbyChanged(int gameId, String change) {
+    events.increment();
+    if (!lobbySubscribers.containsKey(gameId)) {
+      return;
+    }
+    changedLobbies.computeIfAbsent(gameId, id -> ConcurrentHashMap.newKeySet()).add(change);
+    scheduleDispatch();
+  }
+
+  private void openGamesChanged() {
+    openGamesVersion.incrementAndGet();
+    if (openGamesSubscribers.isEmpty()) {
+      return;
+    }
+    openGamesChanged.set(true);
+    scheduleDispatch();
+  }
+
+  private void scheduleDispatch() {
+    if (dispatchScheduled.compareAndSet(false, true)) {
+      try {
+        dispatcher.schedule(this::dispatch, coalesceMs, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        // closing
+        dispatchScheduled.set(false);
+      }
+    }
+  }
+
+  private void dispatch() {
+    // changes arriving from now on schedule the next dispatch
+    dispatchScheduled.set(false);
+
+    for (Integer gameId : changedLobbies.keySet()) {
+      Set<String> changes = changedLobbies.remove(gameId);
+      Set<SseEmitter> subscribers = lobbySubscribers.get(gameId);
+      if (changes != null && subscribers != null) {
+        sendLobby(gameId, Set.copyOf(subscribers), changes);
+      }
+    }
+
+    if (openGamesChanged.getAndSet(false)) {
+      SseEmitter.SseEventBuilder event = SseEmitter.event()
+          .name("open-games")
+          .data(Map.of("version", openGamesVersion.get()), MediaType.APPLICATION_JSON);
+      for (SseEmitter emitter : Set.copyOf(openGamesSubscribers)) {
+        send(emitter, event, () -> openGamesSubscribers.remove(emitter));
+      }
+    }
+  }
+
+  private void sendLobby(int gameId, Set<SseEmitter> subscribers, Set<String> changes) {
+    if (changes.contains("deleted")) {
+      closeLobby(gameId, subscribers);
+      return;
+    }
+
+    LobbyObject lobby = new LobbyObject();
+    lobby.setGameId(gameId);
+    try {
+      lobby.setStatus(dbService.getStatus(gameId));
+      lobby.setPlayersUsernames(List.of(dbService.getParticipantUsernames(gameId)));
+      lobby.setReady(questionLoadingService.isReadyToStart(gameId));
+    } catch (DatabaseAccessException e) {
+      closeLobby(gameId, subscribers);
+      return;
+    } catch (SQLException | RuntimeException e) {
+      LOGGER.warn("Failed to read the lobby of game {} for its subscribers", gameId, e);
+      return;
+    }
+
+    SseEmitter.SseEventBuilder event = SseEmitter.event()
+        .name("lobby")
+        .data(new LobbyEvent(List.copyOf(new TreeSet<>(changes)), lobby), MediaType.APPLICATION_JSON);
+    for (SseEmitter emitter : subscribers) {
+      send(emitter, event, () -> unsubscribeLobby(gameId, emitter));
+    }
+  }
+
+  private void closeLobby(int gameId, Set<SseEmitter> subscribers) {
+    SseEmitter.SseEventBuilder event = SseEmitter.event()
+        .name("closed")
+        .data(Map.of("gameId", gameId), MediaType.APPLICATION_JSON);
+    for (SseEmitter emitter : subscribers) {
+      send(emitter, event, () -> unsubscribeLobby(gameId, emitter));
+      unsubscribeLobby(gameId, emitter);
+      emitter.complete();
+    }
+  }
+
+  private void heartbeat() {
+    SseEmitter.SseEventBuilder ping = SseEmitter.event().comment("ping");
+    lobbySubscribers.forEach((gameId, subscribers) -> {
+      for (SseEmitter emitter : Set.copyOf(subscribers)) {
+        send(emitter, ping, () -> unsubscribeLobby(gameId, emitter));
+      }
+    });
+    for (SseEmitter emitter : Set.copyOf(openGamesSubscribers)) {
+      send(emitter, ping, () -> openGamesSubscribers.remove(emitter));
+    }
+  }
+
+  private void send(SseEmitter emitter, SseEmitter.SseEventBuilder event, Runnable onFailure) {
+    try {
+      emitter.send(event);
+      pushes.increment();
+    } catch (IOException | IllegalStateException e) {
+      // the client is gone, the container completes the emitter
+      failedPushes.increment();
+      onFailure.run();
+    }
+  }
+
+  private void unsubscribeLobby(int gameId, SseEmitter emitter) {
+    lobbySubscribers.computeIfPresent(gameId, (id, subscribers) -> {
+      subscribers.remove(emitter);
+      return subscribers.isEmpty() ? null : subscribers;
+    });
+  }
+
+  private void execute(Runnable task) {
+    try {
+      dispatcher.execute(task);
+    } catch (RejectedExecutionException e) {
+      LOGGER.debug("Lobby events are closed, dropping a task");
+    }
+  }
+
+  public Snapshot snapshot() {
+    int lobbyStreams = 0;
+    for (Set<SseEmitter> subscribers : lobbySubscribers.values()) {
+      lobbyStreams += subscribers.size();
+    }
+    return new Snapshot(
+        lobbySubscribers.size(),
+        lobbyStreams,
+        openGamesSubscribers.size(),
+        events.sum(),
+        pushes.sum(),
+        failedPushes.sum(),
+        openGamesVersion.get()
+    );
+  }
+
+  @Override
+  public void close() {
+    dispatcher.shutdownNow();
+    lobbySubscribers.values().forEach(subscribers -> subscribers.forEach(SseEmitter::complete));
+    openGamesSubscribers.forEach(SseEmitter::complete);
+  }
+
+  public record LobbyEvent(List<String> changes, LobbyObject lobby) {
+  }
+
+  public record Snapshot(
+      int rooms,
+      int lobbyStreams,
+      int openGamesStreams,
+      long events,
+      long pushes,
+      long failedPushes,
+      long openGamesVersion
+  ) {
+  }
+}
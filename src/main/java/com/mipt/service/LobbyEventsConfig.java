@@ -0,0 +1,25 @@
+package com.mipt.service;
+
+import com.mipt.dbAPI.DbService;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(LobbyEventsProperties.class)
+public class LobbyEventsConfig {
+
+  @Bean(destroyMethod = "close")
+  public LobbyEvents lobbyEvents(DbService dbService, QuestionLoadingService questionLoadingService,
+                                 LobbyEventsProperties properties) {
+    LobbyEvents lobbyEvents = new LobbyEvents(
+        dbService,
+        questionLoadingService,
+        properties.getEmitterTimeoutMs(),
+        properties.getCoalesceMs(),
+        properties.getHeartbeatMs()
+    );
+    dbService.addGameListener(lobbyEvents);
+    return lobbyEvents;
+  }
+}
@@ -0,0 +1,37 @@
+package com.mipt.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.lobby-events")
+public class LobbyEventsProperties {
+  // an event stream is closed after this time, the browser reconnects by itself
+  private long emitterTimeoutMs = 1_800_000;
+  // changes of a room within this time are sent as one event
+  private long coalesceMs = 50;
+  // keeps idle streams open through proxies and finds disconnected clients
+  private long heartbeatMs = 15_000;
+
+  public long getEmitterTimeoutMs() {
+    return emitterTimeoutMs;
+  }
+
+  public void setEmitterTimeoutMs(long emitterTimeoutMs) {
+    this.emitterTimeoutMs = emitterTimeoutMs;
+  }
+
+  public long getCoalesceMs() {
+    return coalesceMs;
+  }
+
+  public void setCoalesceMs(long coalesceMs) {
+    this.coalesceMs = coalesceMs;
+  }
+
+  public long getHeartbeatMs() {
+    return heartbeatMs;
+  }
+
+  public void setHeartbeatMs(long heartbeatMs) {
+    this.heartbeatMs = heartbeatMs;
+  }
+}
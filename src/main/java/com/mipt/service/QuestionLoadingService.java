@@ -3,54 +3,166 @@ package com.mipt.service;
 import com.mipt.QuestionGenerator;
 import com.mipt.dbAPI.DatabaseAccessException;
 import com.mipt.dbAPI.DbService;
+import com.mipt.dbAPI.GenerationJobs;
 import com.mipt.domainModel.Topic;
 import org.json.JSONArray;
+import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
-public class QuestionLoadingService {
+public class QuestionLoadingService implements GenerationScheduler.Handler {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(QuestionLoadingService.class);
+  private static final long STORE_POLL_MS = 100;
 
   private final DbService dbService;
+  private final QuestionGenerator questionGenerator;
+  private final LlmClient llmClient;
+  private final LlmProperties llmProperties;
+  private final GenerationScheduler generationScheduler;
+  // games whose questions are being generated right now
+  private final Map<Integer, GenerationProgress> inProgress = new ConcurrentHashMap<>();
 
-  public QuestionLoadingService(DbService dbService) {
+  public QuestionLoadingService(DbService dbService, QuestionGenerator questionGenerator, LlmClient llmClient,
+                                LlmProperties llmProperties, GenerationScheduler generationScheduler) {
     this.dbService = dbService;
+    this.questionGenerator = questionGenerator;
+    this.llmClient = llmClient;
+    this.llmProperties = llmProperties;
+    this.generationScheduler = generationScheduler;
   }
 
   /**
-   * Triggers question generation for the provided game without blocking the caller thread.
+   * Starts the generation workers once the application is up, after the jobs and games
+   * left by stopped instances are recovered.
    */
-  @Async
-  public void loadQuestionsAsync(int gameId, int levelDifficulty, int numberOfQuestions, int topicId) {
+  @EventListener(ApplicationReadyEvent.class)
+  public void startGeneration() {
+    generationScheduler.start(this);
+  }
+
+  /**
+   * Queues question generation for the provided game without blocking the caller thread.
+   * Every question is stored as soon as it is generated. Returns the place of the game
+   * in the generation queue, or a rejected admission if the queue is full.
+   */
+  public GenerationScheduler.Admission loadQuestionsAsync(int gameId, int levelDifficulty, int numberOfQuestions,
+                                                          int topicId) {
+    return generationScheduler.submit(gameId, topicId, levelDifficulty, numberOfQuestions);
+  }
+
+  /**
+   * Generates the questions the game is missing, numbered after the ones it already has,
+   * so a job that was interrupted continues where it stopped.
+   */
+  @Override
+  public void run(GenerationJobs.Job job) throws Exception {
+    int gameId = job.gameId();
+    int missing = job.numberOfQuestions() - job.storedQuestions();
+    if (missing <= 0) {
+      return;
+    }
+
+    GenerationProgress progress = new GenerationProgress(job.storedQuestions());
+    inProgress.put(gameId, progress);
     try {
-      Topic topic = dbService.getTopicById(topicId);
-      String payload = buildGeneratorPayload(topic.getName(), numberOfQuestions, levelDifficulty);
-
-      QuestionGenerator.generate(payload)
-          .thenAccept(json -> persistQuestions(gameId, json))
-          .exceptionally(ex -> {
-            LOGGER.error("Failed to generate questions for game {}", gameId, ex);
-            return null;
-          });
-    } catch (DatabaseAccessException | SQLException e) {
-      LOGGER.error("Failed to start question generation for game {}", gameId, e);
+      generate(job, missing, progress);
+    } finally {
+      inProgress.remove(gameId, progress);
+      progress.finish();
+    }
+
+    int stored = progress.storedQuestions();
+    if (stored < job.numberOfQuestions() && dbService.checkGameExists(gameId)) {
+      throw new IllegalStateException("Generated " + stored + " of " + job.numberOfQuestions() + " questions");
+    }
+  }
+
+  /**
+   * Called when the generation of a game failed for good: the game is played with the
+   * questions it got, a game without questions is deleted.
+   */
+  @Override
+  public void failed(GenerationJobs.Job job) throws SQLException, DatabaseAccessException {
+    if (dbService.trimToLoadedQuestions(job.gameId()) == 0) {
+      dbService.deleteGame(job.gameId());
+    }
+  }
+
+  private void generate(GenerationJobs.Job job, int missing, GenerationProgress progress)
+      throws SQLException, DatabaseAccessException, InterruptedException {
+    int gameId = job.gameId();
+    int offset = job.storedQuestions();
+    Topic topic = dbService.getTopicById(job.topicId());
+    String payload = buildGeneratorPayload(topic.getName(), missing, job.levelDifficulty());
+
+    // questions arrive on the LLM client threads and are stored by the worker that runs the job,
+    // so at most one connection per running job is taken from the pool
+    BlockingQueue<JSONObject> generated = new LinkedBlockingQueue<>();
+    CompletableFuture<String> generation = questionGenerator.generateQuestions(payload, generated::add);
+    try {
+      while (!generation.isDone() || !generated.isEmpty()) {
+        JSONObject question = generated.poll(STORE_POLL_MS, TimeUnit.MILLISECONDS);
+        if (question != null) {
+          persistQuestion(gameId, question, offset, progress);
+        }
+      }
+      generation.join();
+    } catch (InterruptedException e) {
+      generation.cancel(true);
+      throw e;
+    } catch (CompletionException | CancellationException e) {
+      LOGGER.error("Failed to generate questions for game {}, llm client state: {}",
+          gameId, llmClient.snapshot(), e);
     }
   }
 
-  private void persistQuestions(int gameId, String rawJson) {
+  /**
+   * Returns whether enough questions are stored for the game to start.
+   */
+  public boolean isReadyToStart(int gameId) throws SQLException, DatabaseAccessException {
+    return dbService.isGameReady(gameId, llmProperties.getReadyAfterQuestions());
+  }
+
+  /**
+   * Waits up to app.llm.question-wait-ms for a question that is still being generated.
+   * Returns true once it is stored, false on timeout or if the game is not being generated.
+   */
+  public boolean awaitQuestion(int gameId, int questionNumber) throws InterruptedException {
+    GenerationProgress progress = inProgress.get(gameId);
+    return progress != null && progress.await(questionNumber, llmProperties.getQuestionWaitMs());
+  }
+
+  public boolean isGenerating(int gameId) {
+    // a queued game or a game generated by another instance has a job in the table
+    return inProgress.containsKey(gameId) || generationScheduler.isPending(gameId);
+  }
+
+  private void persistQuestion(int gameId, JSONObject question, int offset, GenerationProgress progress) {
     try {
-      JSONArray questionsJson = new JSONArray(rawJson);
-      dbService.loadQuestions(gameId, questionsJson);
+      question.put("question_number", question.getInt("question_number") + offset);
+      dbService.loadQuestions(gameId, new JSONArray().put(question));
+      progress.stored(question.getInt("question_number"));
     } catch (DatabaseAccessException | SQLException e) {
-      LOGGER.error("Failed to load generated questions into DB for game {}", gameId, e);
+      LOGGER.error("Failed to load generated question into DB for game {}", gameId, e);
     } catch (Exception e) {
-      LOGGER.error("Failed to parse generated questions for game {}", gameId, e);
+      LOGGER.error("Failed to parse generated question for game {}", gameId, e);
     }
   }
 
@@ -58,5 +170,59 @@ public class QuestionLoadingService {
     return "[{\"topic\":\"" + topicName + "\",\"numberOfQuestions\":" + numberOfQuestions
         + ",\"difficult\":" + levelDifficulty + "}]";
   }
-}
 
+  private static final class GenerationProgress {
+    // a lock instead of a monitor: players wait here on request threads, and a virtual thread
+    // waiting in Object.wait keeps its carrier thread blocked
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private int storedQuestions;
+    private boolean finished;
+
+    private GenerationProgress(int storedQuestions) {
+      this.storedQuestions = storedQuestions;
+    }
+
+    private int storedQuestions() {
+      lock.lock();
+      try {
+        return storedQuestions;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void stored(int questionNumber) {
+      lock.lock();
+      try {
+        storedQuestions = Math.max(storedQuestions, questionNumber);
+        changed.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void finish() {
+      lock.lock();
+      try {
+        finished = true;
+        changed.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private boolean await(int questionNumber, long timeoutMs) throws InterruptedException {
+      lock.lock();
+      try {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (storedQuestions < questionNumber && !finished && remaining > 0) {
+          remaining = changed.awaitNanos(remaining);
+        }
+        return storedQuestions >= questionNumber;
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
@@ -0,0 +1,230 @@
+package com.mipt.service;
+
+import com.mipt.QuestionGenerator;
+import com.mipt.dbAPI.DatabaseAccessException;
+import com.mipt.dbAPI.DbService;
+import com.mipt.dbAPI.PoolKey;
+import com.mipt.domainModel.Topic;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps a reservoir of pre-generated questions for every topic and difficulty, so
+ * that new games get their questions without waiting for the LLM. A pool that falls
+ * below the low watermark is refilled batch by batch up to the high watermark, and
+ * only while the LLM is not busy generating questions for games.
+ */
+@Service
+public class QuestionPool {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(QuestionPool.class);
+  private static final int[] DIFFICULTIES = {1, 2, 3};
+
+  private final DbService dbService;
+  private final QuestionGenerator questionGenerator;
+  private final LlmClient llmClient;
+  private final QuestionPoolProperties properties;
+
+  private volatile Map<PoolKey, Integer> depths = Map.of();
+  // pools being refilled -> when they dropped below the low watermark
+  private final Map<PoolKey, Long> refillingSince = new ConcurrentHashMap<>();
+  private final AtomicBoolean refillRunning = new AtomicBoolean();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder refills = new LongAdder();
+  private final LongAdder failedRefills = new LongAdder();
+  private final LongAdder generatedQuestions = new LongAdder();
+  private final LongAccumulator maxRefillLagMs = new LongAccumulator(Long::max, 0);
+  private volatile long lastRefillLagMs;
+
+  public QuestionPool(DbService dbService, QuestionGenerator questionGenerator, LlmClient llmClient,
+                      QuestionPoolProperties properties) {
+    this.dbService = dbService;
+    this.questionGenerator = questionGenerator;
+    this.llmClient = llmClient;
+    this.properties = properties;
+  }
+
+  /**
+   * Loads the questions of a freshly created game from the pool.
+   * Returns false if the pool cannot cover the whole game, nothing is loaded then.
+   */
+  public boolean tryServe(int gameId) {
+    if (!properties.isEnabled()) {
+      return false;
+    }
+
+    boolean served;
+    try {
+      served = dbService.takePoolQuestions(gameId);
+    } catch (DatabaseAccessException | SQLException e) {
+      LOGGER.error("Failed to take pooled questions for game {}", gameId, e);
+      served = false;
+    }
+
+    if (served) {
+      hits.increment();
+    } else {
+      misses.increment();
+    }
+    return served;
+  }
+
+  /**
+   * Starts one refill batch for the emptiest pool below its watermark, if the LLM is idle.
+   */
+  @Scheduled(fixedDelayString = "${app.question-pool.refill-interval-ms:10000}")
+  public void refill() {
+    if (!properties.isEnabled() || refillRunning.get()) {
+      return;
+    }
+
+    try {
+      Map<PoolKey, String> topics = new HashMap<>();
+      for (Topic topic : dbService.getAllTopics()) {
+        for (int difficulty : DIFFICULTIES) {
+          topics.put(new PoolKey(topic.getTopicId(), difficulty), topic.getName());
+        }
+      }
+      Map<PoolKey, Integer> stored = dbService.getPoolDepths();
+      Map<PoolKey, Integer> current = new HashMap<>();
+      for (PoolKey key : topics.keySet()) {
+        current.put(key, stored.getOrDefault(key, 0));
+      }
+      depths = Map.copyOf(current);
+
+      PoolKey target = updateWatermarks(current);
+      LlmClient.Snapshot llm = llmClient.snapshot();
+      if (target == null || llm.inFlight() > 0 || llm.waiting() > 0) {
+        // nothing to do, or players are waiting for the LLM right now
+        return;
+      }
+
+      int count = Math.min(properties.getBatchSize(), properties.getHighWatermark() - current.get(target));
+      if (count > 0 && refillRunning.compareAndSet(false, true)) {
+        startRefill(target, topics.get(target), count);
+      }
+    } catch (SQLException e) {
+      LOGGER.error("Failed to read question pool depths", e);
+    }
+  }
+
+  private PoolKey updateWatermarks(Map<PoolKey, Integer> current) {
+    long now = System.nanoTime();
+    refillingSince.keySet().retainAll(current.keySet());
+
+    for (Map.Entry<PoolKey, Integer> entry : current.entrySet()) {
+      PoolKey key = entry.getKey();
+      int depth = entry.getValue();
+      if (depth < properties.getLowWatermark()) {
+        refillingSince.putIfAbsent(key, now);
+      } else if (depth >= properties.getHighWatermark()) {
+        Long since = refillingSince.remove(key);
+        if (since != null) {
+          long lagMs = TimeUnit.NANOSECONDS.toMillis(now - since);
+          lastRefillLagMs = lagMs;
+          maxRefillLagMs.accumulate(lagMs);
+        }
+      }
+    }
+
+    return refillingSince.keySet().stream()
+        .min(Comparator.comparingInt(current::get))
+        .orElse(null);
+  }
+
+  private void startRefill(PoolKey key, String topicName, int count) {
+    String payload = new JSONArray().put(new JSONObject()
+        .put("topic", topicName)
+        .put("numberOfQuestions", count)
+        .put("difficult", key.levelDifficulty())).toString();
+
+    questionGenerator.generateQuestions(payload)
+        .thenAccept(json -> {
+          try {
+            int added = dbService.addPoolQuestions(key.topicId(), key.levelDifficulty(), new JSONArray(json));
+            if (added == 0) {
+              // the LLM gave nothing usable, e.g. it is not reachable
+              failedRefills.increment();
+              return;
+            }
+            generatedQuestions.add(added);
+            refills.increment();
+          } catch (DatabaseAccessException | SQLException e) {
+            failedRefills.increment();
+            LOGGER.error("Failed to store pooled questions for {}", key, e);
+          }
+        })
+        .exceptionally(ex -> {
+          failedRefills.increment();
+          LOGGER.error("Failed to generate pooled questions for {}", key, ex);
+          return null;
+        })
+        .whenComplete((ignored, ex) -> refillRunning.set(false));
+  }
+
+  public Snapshot snapshot() {
+    long now = System.nanoTime();
+    List<PoolState> pools = new ArrayList<>();
+    for (Map.Entry<PoolKey, Integer> entry : depths.entrySet()) {
+      Long since = refillingSince.get(entry.getKey());
+      pools.add(new PoolState(
+          entry.getKey().topicId(),
+          entry.getKey().levelDifficulty(),
+          entry.getValue(),
+          since != null,
+          since == null ? 0 : TimeUnit.NANOSECONDS.toMillis(now - since)
+      ));
+    }
+    pools.sort(Comparator.comparingInt(PoolState::topicId).thenComparingInt(PoolState::levelDifficulty));
+
+    long served = hits.sum();
+    long requested = served + misses.sum();
+    return new Snapshot(
+        properties.isEnabled(),
+        served,
+        requested - served,
+        requested == 0 ? 0 : (double) served / requested,
+        refills.sum(),
+        failedRefills.sum(),
+        generatedQuestions.sum(),
+        lastRefillLagMs,
+        maxRefillLagMs.get(),
+        pools
+    );
+  }
+
+  public record PoolState(int topicId, int levelDifficulty, int depth, boolean refilling, long refillLagMs) {
+  }
+
+  public record Snapshot(
+      boolean enabled,
+      long hits,
+      long misses,
+      double hitRate,
+      long refills,
+      long failedRefills,
+      long generatedQuestions,
+      long lastRefillLagMs,
+      long maxRefillLagMs,
+      List<PoolState> pools
+  ) {
+  }
+}
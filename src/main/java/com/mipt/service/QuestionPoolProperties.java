@@ -0,0 +1,55 @@
+package com.mipt.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.question-pool")
+public class QuestionPoolProperties {
+  private boolean enabled = true;
+  // a pool is refilled once it has fewer questions than the low watermark ...
+  private int lowWatermark = 20;
+  // ... and until it has at least the high watermark
+  private int highWatermark = 60;
+  // questions asked from the LLM in one refill
+  private int batchSize = 10;
+  private long refillIntervalMs = 10_000;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public int getLowWatermark() {
+    return lowWatermark;
+  }
+
+  public void setLowWatermark(int lowWatermark) {
+    this.lowWatermark = lowWatermark;
+  }
+
+  public int getHighWatermark() {
+    return highWatermark;
+  }
+
+  public void setHighWatermark(int highWatermark) {
+    this.highWatermark = highWatermark;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  public long getRefillIntervalMs() {
+    return refillIntervalMs;
+  }
+
+  public void setRefillIntervalMs(long refillIntervalMs) {
+    this.refillIntervalMs = refillIntervalMs;
+  }
+}
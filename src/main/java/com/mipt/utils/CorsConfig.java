@@ -17,6 +17,7 @@ public class CorsConfig {
             .allowedOrigins("http://localhost:8080")
             .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
             .allowedHeaders("*")
+            .exposedHeaders("ETag")
             .allowCredentials(true);
       }
     };
@@ -0,0 +1,23 @@
+-- HASH indexes can't be covering or unique; B-tree serves the same equality lookups.
+DROP INDEX IF EXISTS users_idx;
+DROP INDEX IF EXISTS users_username_idx;
+DROP INDEX IF EXISTS topics_idx;
+
+-- session -> user id without touching the table (index-only scan)
+CREATE INDEX IF NOT EXISTS users_session_idx ON users (session) INCLUDE (id);
+CREATE INDEX IF NOT EXISTS users_username_idx ON users (username);
+CREATE INDEX IF NOT EXISTS topics_name_idx ON topics (name);
+
+-- participants of a game: findByCurrentGame_Id*, countParticipantsInGame, stopGame, deleteGame
+CREATE INDEX IF NOT EXISTS users_current_game_idx ON users (current_game_id) WHERE current_game_id IS NOT NULL;
+
+-- findByGame_IdAndQuestionNumber, findByGame_IdOrderByQuestionNumberAsc, countByGame_Id
+CREATE INDEX IF NOT EXISTS questions_game_number_idx ON questions (game_id, question_number);
+
+-- keyset pages of the games history and the games of the profile snapshot
+CREATE INDEX IF NOT EXISTS games_history_user_idx ON games_history (user_id, id);
+-- ON DELETE CASCADE of games
+CREATE INDEX IF NOT EXISTS games_history_game_idx ON games_history (game_id);
+
+-- achievements of the profile snapshot
+CREATE INDEX IF NOT EXISTS user_achievements_user_idx ON user_achievements (user_id, achievement_id);
@@ -0,0 +1,22 @@
+-- Question generation jobs of games. A worker of any instance claims a queued job with
+-- SELECT ... FOR UPDATE SKIP LOCKED and heartbeats it while the questions are generated;
+-- a running job whose heartbeat stopped is queued again or failed by the sweeper.
+CREATE TABLE IF NOT EXISTS generation_jobs (
+    game_id INT PRIMARY KEY REFERENCES games (id) ON DELETE CASCADE,
+    topic_id INT,
+    level_difficulty SMALLINT,
+    number_of_questions INT,
+    -- 0 queued, 1 running, 2 failed; a finished job is deleted
+    status SMALLINT NOT NULL DEFAULT 0,
+    attempts INT NOT NULL DEFAULT 0,
+    run_after TIMESTAMPTZ NOT NULL DEFAULT now(),
+    owner TEXT,
+    heartbeat_at TIMESTAMPTZ,
+    last_error TEXT,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+-- claim and queue depth
+CREATE INDEX IF NOT EXISTS generation_jobs_queued_idx ON generation_jobs (run_after) WHERE status = 0;
+-- heartbeats of an instance and the stale job sweep
+CREATE INDEX IF NOT EXISTS generation_jobs_running_idx ON generation_jobs (heartbeat_at) WHERE status = 1;
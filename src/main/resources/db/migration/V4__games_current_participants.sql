@@ -0,0 +1,10 @@
+-- Participants of a game kept next to its capacity. A join takes a place with one conditional
+-- UPDATE ... WHERE current_participants < participants_number, so concurrent joins of a room
+-- queue on its row instead of counting users and overfilling it.
+ALTER TABLE games ADD COLUMN IF NOT EXISTS current_participants INT NOT NULL DEFAULT 0;
+
+UPDATE games g
+SET current_participants = (SELECT count(*) FROM users u WHERE u.current_game_id = g.id);
+
+ALTER TABLE games DROP CONSTRAINT IF EXISTS games_current_participants_check;
+ALTER TABLE games ADD CONSTRAINT games_current_participants_check CHECK (current_participants >= 0);
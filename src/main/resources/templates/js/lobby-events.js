@@ -0,0 +1,63 @@
+// Подписка на события сервера (server-sent events): состояние лобби комнаты, изменения списка открытых игр.
+// Пока поток не подключен (или браузер не поддерживает EventSource), вызывается onDisconnected,
+// и страница опрашивает сервер сама; после подключения вызывается onConnected.
+// События присылает только тот экземпляр приложения, к которому подключен поток, а изменения делают все
+// (вопросы сохраняет экземпляр, забравший задание генерации), поэтому и при подключенном потоке
+// раз в RECONCILE_INTERVAL_MS вызывается reconcile - редкий опрос, подтягивающий пропущенные изменения
+const RECONCILE_INTERVAL_MS = 15000;
+
+class LobbyEventsClient {
+  static connect(url, handlers, onDisconnected, onConnected, reconcile) {
+    const stream = {
+      connected: false,
+      source: null,
+      reconcileTimer: null,
+      startReconcile() {
+        if (reconcile && !this.reconcileTimer) {
+          this.reconcileTimer = setInterval(reconcile, RECONCILE_INTERVAL_MS);
+        }
+      },
+      stopReconcile() {
+        if (this.reconcileTimer) {
+          clearInterval(this.reconcileTimer);
+          this.reconcileTimer = null;
+        }
+      },
+      close() {
+        this.connected = false;
+        this.stopReconcile();
+        if (this.source) {
+          this.source.close();
+        }
+      }
+    };
+
+    if (!window.EventSource) {
+      onDisconnected();
+      return stream;
+    }
+
+    const source = new EventSource(url, { withCredentials: true });
+    stream.source = source;
+
+    source.onopen = () => {
+      stream.connected = true;
+      onConnected();
+      stream.startReconcile();
+    };
+
+    // EventSource переподключается сам, до этого работает опрос
+    source.onerror = () => {
+      stream.connected = false;
+      stream.stopReconcile();
+      onDisconnected();
+    };
+
+    Object.entries(handlers).forEach(([name, handler]) => {
+      source.addEventListener(name, event => handler(JSON.parse(event.data)));
+    });
+
+    onDisconnected();
+    return stream;
+  }
+}
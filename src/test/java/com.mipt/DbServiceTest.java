@@ -1,24 +1,44 @@
 package com.mipt;
 
+import at.favre.lib.crypto.bcrypt.BCrypt;
 import com.mipt.dbAPI.DatabaseAccessException;
 import com.mipt.dbAPI.DbService;
+import com.mipt.dbAPI.GameListener;
+import com.mipt.dbAPI.OpenGamesDirectory;
+import com.mipt.dbAPI.PoolKey;
+import com.mipt.dbAPI.ScoreDelta;
 import com.mipt.domainModel.Achievement;
+import com.mipt.domainModel.Game;
+import com.mipt.domainModel.GamesHistoryPage;
+import com.mipt.domainModel.ProfileSnapshot;
 import com.mipt.domainModel.Question;
 import com.mipt.domainModel.Topic;
 import org.jetbrains.annotations.NotNull;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.junit.jupiter.api.*;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.containers.wait.strategy.Wait;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -170,6 +190,53 @@ public class DbServiceTest {
     assertDoesNotThrow(() -> dbService.authenticate("test2", "1234", "SESSION2"));
   }
 
+  @Test
+  void testAddScore_RolledBack() throws SQLException, DatabaseAccessException {
+    int userId = dbService.getUserId("SESSION");
+    // the score is added inside a transaction that never commits
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      dbService.addScore(new ScoreDelta(userId, 0, 5, 5));
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    assertEquals(0, dbService.getGlobalPoints("SESSION"));
+    assertEquals(0, dbService.getUsersAroundGlobalRank(userId, 0).get(0).globalPoints());
+
+    dbService.addScore(new ScoreDelta(userId, 0, 5, 5));
+    assertEquals(5, dbService.getGlobalPoints("SESSION"));
+    assertEquals(5, dbService.getUsersAroundGlobalRank(userId, 0).get(0).globalPoints());
+  }
+
+  @Test
+  void testAuthenticate_InvalidatesPreviousSession() throws SQLException, DatabaseAccessException {
+    // the cached session must not outlive a new login of the same user
+    Integer userId = dbService.getUserId("SESSION");
+    assertEquals("test1", dbService.getUsername("SESSION"));
+
+    dbService.authenticate("test1", "12345", "SESSION3");
+    assertNull(dbService.getUserId("SESSION"));
+    assertThrows(DatabaseAccessException.class, () -> dbService.getUsername("SESSION"));
+    assertThrows(DatabaseAccessException.class, () -> dbService.addGlobalPoints("SESSION", 1));
+    assertEquals(userId, dbService.getUserId("SESSION3"));
+  }
+
+  @Test
+  void testLogOut_OnOtherInstance() throws SQLException, DatabaseAccessException {
+    // each instance has its own session cache
+    DbService otherInstance = new DbService(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    Integer userId = dbService.getUserId("SESSION");
+    assertEquals(userId, dbService.getUserId("SESSION"));
+
+    otherInstance.logOut("SESSION");
+    assertNull(dbService.getUserId("SESSION"));
+    assertThrows(DatabaseAccessException.class, () -> dbService.addGlobalPoints("SESSION", 1));
+
+    otherInstance.authenticate("test1", "12345", "SESSION");
+    assertEquals(userId, dbService.getUserId("SESSION"));
+  }
+
   @Test
   void testChangePassword() throws SQLException, DatabaseAccessException {
     assertThrows(DatabaseAccessException.class, () -> dbService.changePassword("NOT_EXISTING_SESSION", "1"));
@@ -186,6 +253,36 @@ public class DbServiceTest {
     assertDoesNotThrow(() -> dbService.authenticate("test2", "1234new", "SESSION2"));
   }
 
+  @Test
+  void testAuthenticate_RehashesPasswordOfAnotherCost() throws Exception {
+    // a hash of an older, cheaper cost is replaced by one of the configured cost on login
+    String oldHash = BCrypt.withDefaults().hashToString(4, "12345".toCharArray());
+    try (Connection connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+         PreparedStatement update = connection.prepareStatement("UPDATE users SET password = ? WHERE username = 'test1'");
+         PreparedStatement select = connection.prepareStatement("SELECT password FROM users WHERE username = 'test1'")) {
+      update.setString(1, oldHash);
+      update.executeUpdate();
+
+      dbService.logOut("SESSION");
+      dbService.authenticate("test1", "12345", "SESSION");
+
+      String storedHash = oldHash;
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (storedHash.equals(oldHash) && System.nanoTime() < deadline) {
+        Thread.sleep(20);
+        try (ResultSet resultSet = select.executeQuery()) {
+          resultSet.next();
+          storedHash = resultSet.getString(1);
+        }
+      }
+      assertTrue(storedHash.startsWith("$2a$12$"));
+    }
+
+    dbService.logOut("SESSION");
+    assertThrows(DatabaseAccessException.class, () -> dbService.authenticate("test1", "wrong", "SESSION"));
+    assertDoesNotThrow(() -> dbService.authenticate("test1", "12345", "SESSION"));
+  }
+
   @Test
   void testChangeProfilePic_GetProfilePic() throws SQLException, DatabaseAccessException {
     assertThrows(DatabaseAccessException.class, () -> dbService.changeProfilePic("NOT_EXISTING_SESSION", 1));
@@ -276,6 +373,187 @@ public class DbServiceTest {
     assertEquals(gameId, dbService.getCurrentGame("SESSION2"));
   }
 
+  @Test
+  void testSetCurrentGame_ConcurrentJoinsDoNotOverfill() throws Exception {
+    int players = 500;
+    int participantsNumber = 20;
+    Integer gameId = dbService.createGame("SESSION", 1, 5, participantsNumber, 1);
+    // the players are inserted directly, registering 500 of them would be 500 BCrypt hashes
+    try (Connection connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+         PreparedStatement insert = connection.prepareStatement("""
+             INSERT INTO users (session, username, password, pic_id, description, games_played_number,
+                                global_points, global_possible_points, current_game_points)
+             SELECT 'JOIN_SESSION_' || i, 'join' || i, 'x', 0, '', 0, 0, 0, 0 FROM generate_series(0, ? - 1) i
+             """)) {
+      insert.setInt(1, players);
+      insert.executeUpdate();
+    }
+
+    // every player clicks join at the same moment, then the ones inside leave while the rest retry
+    ExecutorService executor = Executors.newFixedThreadPool(players);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Boolean>> joins = new ArrayList<>();
+    for (int i = 0; i < players; i++) {
+      String session = "JOIN_SESSION_" + i;
+      joins.add(executor.submit(() -> {
+        start.await();
+        try {
+          dbService.setCurrentGame(session, gameId);
+          return true;
+        } catch (DatabaseAccessException e) {
+          assertEquals("Request is out of bounds", e.getMessage());
+          return false;
+        }
+      }));
+    }
+    start.countDown();
+    List<String> joined = new ArrayList<>();
+    for (int i = 0; i < players; i++) {
+      if (joins.get(i).get()) {
+        joined.add("JOIN_SESSION_" + i);
+      }
+    }
+    assertEquals(participantsNumber, joined.size());
+    assertEquals(participantsNumber, dbService.getCurrentParticipantsNumber(gameId));
+    assertEquals(participantsNumber, countParticipants(gameId));
+
+    CountDownLatch restart = new CountDownLatch(1);
+    List<Future<?>> moves = new ArrayList<>();
+    for (int i = 0; i < players; i++) {
+      String session = "JOIN_SESSION_" + i;
+      moves.add(executor.submit(() -> {
+        restart.await();
+        try {
+          if (joined.contains(session)) {
+            dbService.leaveGame(session);
+          } else {
+            dbService.setCurrentGame(session, gameId);
+          }
+        } catch (DatabaseAccessException e) {
+          assertEquals("Request is out of bounds", e.getMessage());
+        }
+        return null;
+      }));
+    }
+    restart.countDown();
+    for (Future<?> move : moves) {
+      move.get();
+    }
+    executor.shutdown();
+
+    int participants = countParticipants(gameId);
+    assertTrue(participants <= participantsNumber);
+    assertEquals(participants, dbService.getCurrentParticipantsNumber(gameId));
+  }
+
+  @Test
+  void testStopGame_ConcurrentLeave() throws Exception {
+    Integer gameId = dbService.createGame("SESSION", 1, 5, 4, 1);
+    dbService.setCurrentGame("SESSION", gameId);
+    dbService.setCurrentGame("SESSION2", gameId);
+    // a pending point of the leaving player: the flush before the stop has to write its row
+    dbService.addGlobalPoints("SESSION2", 1);
+    int userId = dbService.getUserId("SESSION2");
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (Connection connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())) {
+      // a leave in flight: the user row is locked, the game row comes next
+      connection.setAutoCommit(false);
+      try (PreparedStatement leave = connection.prepareStatement("UPDATE users SET current_game_id = NULL WHERE id = ?")) {
+        leave.setInt(1, userId);
+        leave.executeUpdate();
+      }
+
+      Future<?> stop = executor.submit(() -> {
+        dbService.flushScores();
+        dbService.stopGame(gameId);
+        return null;
+      });
+      Thread.sleep(200);
+      try (PreparedStatement freePlace = connection.prepareStatement(
+          "UPDATE games SET current_participants = current_participants - 1 WHERE id = ? AND current_participants > 0")) {
+        freePlace.setInt(1, gameId);
+        freePlace.executeUpdate();
+      }
+      connection.commit();
+
+      stop.get(10, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(3, dbService.getStatus(gameId));
+    assertEquals(0, dbService.getCurrentParticipantsNumber(gameId));
+    assertEquals(0, countParticipants(gameId));
+    assertEquals(1, dbService.getGlobalPoints("SESSION2"));
+  }
+
+  private static int countParticipants(int gameId) throws SQLException {
+    try (Connection connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+         PreparedStatement select = connection.prepareStatement("SELECT count(*) FROM users WHERE current_game_id = ?")) {
+      select.setInt(1, gameId);
+      try (ResultSet resultSet = select.executeQuery()) {
+        resultSet.next();
+        return resultSet.getInt(1);
+      }
+    }
+  }
+
+  @Test
+  void testAddGameListener() throws SQLException, DatabaseAccessException, JSONException {
+    List<String> events = new ArrayList<>();
+    dbService.addGameListener(new GameListener() {
+      @Override
+      public void gameCreated(int gameId) {
+        events.add("created");
+      }
+
+      @Override
+      public void participantJoined(int gameId) {
+        events.add("joined");
+      }
+
+      @Override
+      public void participantLeft(int gameId) {
+        events.add("left");
+      }
+
+      @Override
+      public void statusChanged(int gameId, int status) {
+        events.add("status " + status);
+      }
+
+      @Override
+      public void questionsLoaded(int gameId) {
+        events.add("questions");
+      }
+
+      @Override
+      public void settingsChanged(int gameId) {
+        events.add("settings");
+      }
+
+      @Override
+      public void gameDeleted(int gameId) {
+        events.add("deleted");
+      }
+    });
+
+    Integer gameId = dbService.createGame("SESSION", 1, 5, 4, 1);
+    dbService.setCurrentGame("SESSION", gameId);
+    dbService.setCurrentGame("SESSION2", gameId);
+    dbService.leaveGame("SESSION2");
+    dbService.setPrivate(gameId, true);
+    dbService.loadQuestions(gameId, getJsonArrayOfTestQuestions());
+    dbService.setStatus(gameId, 1);
+    dbService.deleteGame(gameId);
+
+    // failed changes are not reported
+    assertThrows(DatabaseAccessException.class, () -> dbService.leaveGame("SESSION2"));
+
+    assertEquals(List.of("created", "joined", "joined", "left", "settings", "questions", "status 1", "deleted"), events);
+  }
+
   @Test
   void testAddGamePlayed_GetGamesPlayed() throws SQLException, DatabaseAccessException {
     // test working OUT OF THE GAME
@@ -310,6 +588,77 @@ public class DbServiceTest {
     assertArrayEquals(testArr, dbService.getGamesPlayed("SESSION2"));
   }
 
+  @Test
+  void testGetGamesHistory() throws SQLException, DatabaseAccessException {
+    assertThrows(DatabaseAccessException.class, () -> dbService.getGamesHistory("NOT_EXISTING_SESSION", null, 2));
+    assertTrue(dbService.getGamesHistory("SESSION", null, 2).games().isEmpty());
+    assertNull(dbService.getGamesHistory("SESSION", null, 2).nextCursor());
+
+    // playing 3 games
+    List<Integer> gameIds = new ArrayList<>();
+    for (int i = 1; i <= 3; i++) {
+      Integer gameId = dbService.createGame("SESSION", i, 5 + i, 4, 1);
+      dbService.setCurrentGame("SESSION", gameId);
+      dbService.addGamePlayed("SESSION");
+      dbService.stopGame(gameId);
+      gameIds.add(gameId);
+    }
+
+    // newest first, two per page
+    GamesHistoryPage first = dbService.getGamesHistory("SESSION", null, 2);
+    assertEquals(2, first.games().size());
+    assertEquals(gameIds.get(2), first.games().get(0).getGameId());
+    assertEquals(gameIds.get(1), first.games().get(1).getGameId());
+    assertEquals(Game.LevelDifficulty.HARD, first.games().get(0).getLevelDifficulty());
+    assertEquals(8, first.games().get(0).getNumberOfQuestions());
+    assertEquals(4, first.games().get(0).getParticipantsNumber());
+    assertEquals(1, first.games().get(0).getTopicId());
+    assertEquals(dbService.getGameEndTime(gameIds.get(2)).toInstant(), first.games().get(0).getGameEndTime());
+    assertNotNull(first.nextCursor());
+
+    GamesHistoryPage second = dbService.getGamesHistory("SESSION", first.nextCursor(), 2);
+    assertEquals(1, second.games().size());
+    assertEquals(gameIds.get(0), second.games().get(0).getGameId());
+    assertEquals(Game.LevelDifficulty.EASY, second.games().get(0).getLevelDifficulty());
+    assertNull(second.nextCursor());
+
+    // other users' games are not listed
+    assertTrue(dbService.getGamesHistory("SESSION2", null, 2).games().isEmpty());
+  }
+
+  @Test
+  void testGetProfileSnapshot() throws SQLException, DatabaseAccessException {
+    assertThrows(DatabaseAccessException.class, () -> dbService.getProfileSnapshot("NOT_EXISTING_SESSION"));
+
+    // filling the profile
+    Integer gameId = dbService.createGame("SESSION", 1, 5, 4, 1);
+    dbService.setCurrentGame("SESSION", gameId);
+    dbService.addGamePlayed("SESSION");
+    dbService.changeDescription("SESSION", "about me");
+    dbService.changeProfilePic("SESSION", 3);
+    Integer achievementId = dbService.addAchievement(createTestAchievement());
+    dbService.attachAchievement("SESSION", achievementId);
+    dbService.addGlobalPoints("SESSION", 7);
+    dbService.addGlobalPossiblePoints("SESSION", 9);
+
+    // the snapshot matches the per-field getters
+    ProfileSnapshot profile = dbService.getProfileSnapshot("SESSION");
+    assertEquals(dbService.getUserId("SESSION"), profile.userId());
+    assertEquals("test1", profile.username());
+    assertEquals(3, profile.picId());
+    assertEquals("about me", profile.description());
+    assertEquals(7, profile.globalPoints());
+    assertEquals(9, profile.globalPossiblePoints());
+    assertEquals(gameId, profile.currentGameId());
+    assertArrayEquals(dbService.getGamesPlayed("SESSION"), profile.gamesPlayed().toArray(new Integer[0]));
+    assertArrayEquals(dbService.getAchievementsOf("SESSION"), profile.achievements().toArray(new Integer[0]));
+
+    ProfileSnapshot emptyProfile = dbService.getProfileSnapshot("SESSION2");
+    assertNull(emptyProfile.currentGameId());
+    assertTrue(emptyProfile.gamesPlayed().isEmpty());
+    assertTrue(emptyProfile.achievements().isEmpty());
+  }
+
   @Test
   void testAddGlobalPoints_GetGlobalPoints() throws SQLException, DatabaseAccessException {
     // creating game
@@ -336,6 +685,37 @@ public class DbServiceTest {
     assertEquals(0, dbService.getGlobalPoints("SESSION2"));
   }
 
+  @Test
+  void testAddGlobalPoints_Concurrent() throws Exception {
+    // many threads adding points to the same user must not lose updates
+    int threads = 8;
+    int addsPerThread = 250;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      futures.add(executor.submit(() -> {
+        for (int j = 0; j < addsPerThread; j++) {
+          dbService.addGlobalPoints("SESSION", 1);
+          dbService.addGlobalPossiblePoints("SESSION", 2);
+        }
+        return null;
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    assertEquals(threads * addsPerThread, dbService.getGlobalPoints("SESSION"));
+    assertEquals(2 * threads * addsPerThread, dbService.getGlobalPossiblePoints("SESSION"));
+
+    // the flushed values are the same
+    dbService.flushScores();
+    JSONArray leaderboard = dbService.getGlobalLeaderboards();
+    assertEquals(threads * addsPerThread, leaderboard.getJSONArray(0).getInt(2));
+    assertEquals(2 * threads * addsPerThread, leaderboard.getJSONArray(0).getInt(3));
+  }
+
   @Test
   void testAddGlobalPossiblePoints_GetGlobalPossiblePoints() throws SQLException, DatabaseAccessException {
     // creating game
@@ -441,6 +821,41 @@ public class DbServiceTest {
     assertEquals(dbService.getPreset(gameId1)[3], first.getInt(3)); // max participants number
   }
 
+  @Test
+  void testGetOpenGames_FollowsGameChanges() throws SQLException, DatabaseAccessException, JSONException {
+    Integer gameId1 = dbService.createGame("SESSION", 1, 5, 4, 1, false);
+    Integer gameId2 = dbService.createGame("SESSION2", 1, 5, 5, 1, false);
+    Integer otherTopicGameId = dbService.createGame("SESSION2", 1, 5, 4, 2, false);
+
+    // the same bytes until the topic changes
+    OpenGamesDirectory.Listing listing = dbService.getOpenGamesListing(1);
+    assertSame(listing, dbService.getOpenGamesListing(1));
+    assertEquals("[[" + gameId1 + ",0,4],[" + gameId2 + ",0,5]]", dbService.getOpenGames(1).toString());
+
+    dbService.setCurrentGame("SESSION", gameId1);
+    dbService.setCurrentGame("SESSION2", gameId1);
+    assertNotEquals(listing.etag(), dbService.getOpenGamesListing(1).etag());
+    assertEquals("[[" + gameId1 + ",2,4],[" + gameId2 + ",0,5]]", dbService.getOpenGames(1).toString());
+
+    // moving to another game, leaving, changing settings
+    dbService.setCurrentGame("SESSION2", gameId2);
+    dbService.leaveGame("SESSION");
+    dbService.changeParticipantsNumber(gameId2, 6);
+    assertEquals("[[" + gameId1 + ",0,4],[" + gameId2 + ",1,6]]", dbService.getOpenGames(1).toString());
+    assertEquals("[[" + otherTopicGameId + ",0,4]]", dbService.getOpenGames(2).toString());
+
+    // private, started, stopped and deleted games are not listed
+    dbService.setPrivate(gameId1, true);
+    assertEquals("[[" + gameId2 + ",1,6]]", dbService.getOpenGames(1).toString());
+    dbService.setPrivate(gameId1, false);
+    dbService.setStatus(gameId1, 1);
+    dbService.stopGame(gameId2);
+    dbService.deleteGame(otherTopicGameId);
+    assertEquals(0, dbService.getOpenGames(1).length());
+    assertEquals(0, dbService.getOpenGames(2).length());
+    assertEquals(0, dbService.getOpenGames().length());
+  }
+
   @Test
   void testGetPreset() throws SQLException, DatabaseAccessException {
     // creating game
@@ -569,6 +984,75 @@ public class DbServiceTest {
     assertThrows(DatabaseAccessException.class, () -> dbService.getQuestion(gameId, 3));
   }
 
+  @Test
+  void testLoadQuestions_InvalidJsonLoadsNothing() throws SQLException, DatabaseAccessException, JSONException {
+    Integer gameId = dbService.createGame("SESSION", 1, 2, 4, 1);
+
+    // the second question is broken, so the first one must not be loaded either
+    JSONArray badIndex = getJsonArrayOfTestQuestions();
+    badIndex.getJSONObject(1).getJSONArray("available_answers").getJSONObject(3).put("index", 1);
+    assertThrows(DatabaseAccessException.class, () -> dbService.loadQuestions(gameId, badIndex));
+
+    JSONArray missingText = getJsonArrayOfTestQuestions();
+    missingText.getJSONObject(1).remove("question_text");
+    assertThrows(DatabaseAccessException.class, () -> dbService.loadQuestions(gameId, missingText));
+
+    JSONArray duplicateNumber = getJsonArrayOfTestQuestions();
+    duplicateNumber.getJSONObject(1).put("question_number", 1);
+    assertThrows(DatabaseAccessException.class, () -> dbService.loadQuestions(gameId, duplicateNumber));
+
+    assertThrows(DatabaseAccessException.class, () -> dbService.getQuestion(gameId, 1));
+    assertFalse(dbService.isGameReady(gameId));
+
+    dbService.loadQuestions(gameId, getJsonArrayOfTestQuestions());
+    assertTrue(dbService.isGameReady(gameId));
+  }
+
+  @Test
+  void testIsGameReady_FirstQuestions() throws SQLException, DatabaseAccessException, JSONException {
+    Integer gameId = dbService.createGame("SESSION", 1, 5, 4, 1);
+    assertFalse(dbService.isGameReady(gameId, 2));
+
+    // questions arrive one by one while they are generated
+    JSONArray questions = getJsonArrayOfTestQuestions();
+    dbService.loadQuestions(gameId, new JSONArray().put(questions.getJSONObject(0)));
+    assertTrue(dbService.isGameReady(gameId, 1));
+    assertFalse(dbService.isGameReady(gameId, 2));
+    dbService.loadQuestions(gameId, new JSONArray().put(questions.getJSONObject(1)));
+    assertTrue(dbService.isGameReady(gameId, 2));
+    assertFalse(dbService.isGameReady(gameId));
+    // never more than the game has
+    assertFalse(dbService.isGameReady(gameId, 10));
+    assertThrows(DatabaseAccessException.class, () -> dbService.isGameReady(145, 1));
+  }
+
+  @Test
+  void testAddPoolQuestions_TakePoolQuestions() throws SQLException, DatabaseAccessException, JSONException {
+    assertEquals(2, dbService.addPoolQuestions(1, 1, getJsonArrayOfTestQuestions()));
+    assertEquals(2, dbService.getPoolDepths().get(new PoolKey(1, 1)));
+
+    // the pool cannot cover the game: nothing is taken
+    Integer bigGameId = dbService.createGame("SESSION", 1, 3, 4, 1);
+    assertFalse(dbService.takePoolQuestions(bigGameId));
+    assertFalse(dbService.isGameReady(bigGameId));
+    // other difficulty
+    Integer hardGameId = dbService.createGame("SESSION", 3, 2, 4, 1);
+    assertFalse(dbService.takePoolQuestions(hardGameId));
+    assertEquals(2, dbService.getPoolDepths().get(new PoolKey(1, 1)));
+
+    Integer gameId = dbService.createGame("SESSION", 1, 2, 4, 1);
+    assertTrue(dbService.takePoolQuestions(gameId));
+    assertTrue(dbService.isGameReady(gameId));
+    assertEquals(2, dbService.getRightAnswers(gameId).size());
+    assertNotNull(dbService.getQuestion(gameId, 1).getQuestionText());
+    assertNull(dbService.getPoolDepths().get(new PoolKey(1, 1)));
+
+    // questions are already loaded
+    dbService.addPoolQuestions(1, 1, getJsonArrayOfTestQuestions());
+    assertFalse(dbService.takePoolQuestions(gameId));
+    assertThrows(DatabaseAccessException.class, () -> dbService.takePoolQuestions(145));
+  }
+
   @Test
   void testGetGameLeaderboards_GetCurrentGameParticipantsNumber() throws SQLException, DatabaseAccessException {
     // creating game
@@ -586,6 +1070,9 @@ public class DbServiceTest {
 
     dbService.addCurrentGamePoints("SESSION", 100);
     dbService.addCurrentGamePoints("SESSION2", 150);
+    // pending points are counted without a flush
+    assertEquals("[[\"test2\",150],[\"test1\",100]]", dbService.getGameLeaderboards(gameId).toString());
+    dbService.flushScores();
     assertEquals("[[\"test2\",150],[\"test1\",100]]", dbService.getGameLeaderboards(gameId).toString());
   }
 
@@ -643,6 +1130,18 @@ public class DbServiceTest {
     assertEquals(100, second.getInt(2));
     assertEquals(170, second.getInt(3));
 
+    assertEquals(1, dbService.getGlobalRank(dbService.getUserId("SESSION")));
+    assertEquals(2, dbService.getGlobalRank(dbService.getUserId("SESSION2")));
+    assertEquals(2, dbService.getGlobalRankInfo(dbService.getUserId("SESSION2")).rank());
+    assertEquals(2, dbService.getUsersAroundGlobalRank(dbService.getUserId("SESSION2"), 1).size());
+
+    // the ranking matches the users table plus pending points, so the leaderboard job does not rebuild it
+    assertEquals(dbService.getGlobalRankingChecksum(), dbService.getStoredRankingChecksum());
+    dbService.flushScores();
+    assertEquals(dbService.getGlobalRankingChecksum(), dbService.getStoredRankingChecksum());
+    assertEquals(2, dbService.rebuildGlobalRanking());
+    assertEquals(1, dbService.getGlobalRank(dbService.getUserId("SESSION")));
+
     // deleting the game
     assertTrue(dbService.checkGameExists(gameId1));
     dbService.deleteGame(gameId1);
@@ -0,0 +1,287 @@
+package com.mipt;
+
+import com.mipt.dbAPI.DbService;
+import com.mipt.dbAPI.GenerationJobs;
+import com.mipt.domainModel.Topic;
+import com.mipt.service.GenerationScheduler;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the table-backed queue of question generation jobs: claim order, SKIP LOCKED,
+ * admission, retries with backoff and the recovery of jobs and games left by a stopped instance.
+ */
+@Testcontainers
+public class GenerationJobsTest {
+
+  @Container
+  private static final PostgreSQLContainer<?> postgres =
+      new PostgreSQLContainer<>("postgres:13-alpine")
+          .withDatabaseName("testdb")
+          .withUsername("testuser")
+          .withPassword("testpass")
+          .withInitScript("init.sql")
+          .withReuse(true)
+          .waitingFor(Wait.forListeningPort())
+          .waitingFor(Wait.forLogMessage(".*database system is ready to accept connections.*\\n", 1))
+          .withStartupTimeout(Duration.ofSeconds(90));
+
+  static DbService dbService;
+  static JdbcTemplate jdbcTemplate;
+  static GenerationJobs jobs;
+  static int topicId;
+
+  @BeforeAll
+  static void setUp() throws Exception {
+    assertTrue(postgres.isRunning(), "PostgreSQL container should be running");
+    // applies the migrations
+    dbService = new DbService(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    jdbcTemplate = new JdbcTemplate(
+        new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()));
+    jobs = new GenerationJobs(jdbcTemplate);
+
+    Topic topic = new Topic();
+    topic.setName("generation jobs");
+    topicId = dbService.addTopic(topic);
+    dbService.register("jobs host", "1");
+    dbService.authenticate("jobs host", "1", "JOBS_HOST");
+    dbService.register("jobs player", "1");
+    dbService.authenticate("jobs player", "1", "JOBS_PLAYER");
+  }
+
+  @BeforeEach
+  void clearQueue() {
+    jdbcTemplate.update("DELETE FROM generation_jobs");
+  }
+
+  private static int createGame() throws Exception {
+    return dbService.createGame("JOBS_HOST", 1, 5, 4, topicId);
+  }
+
+  private static void ageHeartbeat(int gameId) {
+    jdbcTemplate.update("UPDATE generation_jobs SET heartbeat_at = now() - interval '1 hour' WHERE game_id = ?", gameId);
+  }
+
+  private static JSONArray questions(int count) throws JSONException {
+    JSONArray questions = new JSONArray();
+    for (int number = 1; number <= count; number++) {
+      JSONArray answers = new JSONArray();
+      for (int index = 1; index <= 4; index++) {
+        answers.put(new JSONObject().put("index", index).put("answer", "Answer " + index));
+      }
+      questions.put(new JSONObject()
+          .put("question_number", number)
+          .put("question_text", QuestionGeneratorTest.uniqueText(number))
+          .put("available_answers", answers)
+          .put("right_answer_number", 2));
+    }
+    return questions;
+  }
+
+  @Test
+  void testClaim_WaitingPlayersFirst_SkipsLockedJobs() throws Exception {
+    int first = createGame();
+    int second = createGame();
+    int third = createGame();
+    assertEquals(1, jobs.enqueue(first, topicId, 1, 5, 10));
+    assertEquals(2, jobs.enqueue(second, topicId, 1, 5, 10));
+    assertEquals(3, jobs.enqueue(third, topicId, 1, 5, 10));
+
+    // a player waits in the newest game, it goes first
+    dbService.setCurrentGame("JOBS_PLAYER", third);
+    GenerationJobs.Job claimed = jobs.claim("a");
+    assertEquals(third, claimed.gameId());
+    assertEquals(1, claimed.attempts());
+    dbService.leaveGame("JOBS_PLAYER");
+
+    // the oldest job is locked by another worker's transaction, the next one is claimed without waiting
+    try (Connection other = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+         Statement statement = other.createStatement()) {
+      other.setAutoCommit(false);
+      statement.execute("SELECT * FROM generation_jobs WHERE game_id = " + first + " FOR UPDATE");
+      assertEquals(second, jobs.claim("b").gameId());
+      assertNull(jobs.claim("b"));
+      other.rollback();
+    }
+    assertEquals(first, jobs.claim("b").gameId());
+    assertEquals(0, jobs.queueDepth());
+    assertTrue(jobs.isPending(first));
+
+    assertTrue(jobs.complete(first, "b"));
+    assertFalse(jobs.complete(second, "a"));
+    assertFalse(jobs.isPending(first));
+  }
+
+  @Test
+  void testEnqueue_RejectedWhenQueueIsFull() throws Exception {
+    int first = createGame();
+    int second = createGame();
+    assertEquals(1, jobs.enqueue(first, topicId, 1, 5, 1));
+    assertEquals(0, jobs.enqueue(second, topicId, 1, 5, 1));
+    assertFalse(jobs.isPending(second));
+    assertEquals(1, jobs.queueDepth());
+  }
+
+  @Test
+  void testEnqueue_ConcurrentBurstDoesNotOverfill() throws Exception {
+    int requests = 20;
+    int capacity = 5;
+    List<Integer> games = new ArrayList<>();
+    for (int i = 0; i < requests; i++) {
+      games.add(createGame());
+    }
+
+    // every room is created at the same moment
+    ExecutorService executor = Executors.newFixedThreadPool(requests);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Integer>> positions = new ArrayList<>();
+    for (int gameId : games) {
+      positions.add(executor.submit(() -> {
+        start.await();
+        return jobs.enqueue(gameId, topicId, 1, 5, capacity);
+      }));
+    }
+    start.countDown();
+    List<Integer> admitted = new ArrayList<>();
+    for (Future<Integer> position : positions) {
+      int place = position.get(30, TimeUnit.SECONDS);
+      if (place > 0) {
+        admitted.add(place);
+      }
+    }
+    executor.shutdown();
+
+    assertEquals(capacity, jobs.queueDepth());
+    // one place for each admitted job
+    Collections.sort(admitted);
+    assertEquals(List.of(1, 2, 3, 4, 5), admitted);
+  }
+
+  @Test
+  void testRetry_BackoffThenFailure() throws Exception {
+    int gameId = createGame();
+    jobs.enqueue(gameId, topicId, 1, 5, 10);
+
+    jobs.claim("a");
+    assertFalse(jobs.retry(gameId, "a", "LLM is down", 2, 60_000));
+    // the backoff is not over yet
+    assertNull(jobs.claim("a"));
+    assertTrue(jobs.isPending(gameId));
+
+    jdbcTemplate.update("UPDATE generation_jobs SET run_after = now() WHERE game_id = ?", gameId);
+    GenerationJobs.Job retried = jobs.claim("a");
+    assertEquals(2, retried.attempts());
+    assertTrue(jobs.retry(gameId, "a", "LLM is down", 2, 60_000));
+    assertFalse(jobs.isPending(gameId));
+  }
+
+  @Test
+  void testRequeueStale_ResumesAfterStoredQuestions() throws Exception {
+    int gameId = createGame();
+    jobs.enqueue(gameId, topicId, 1, 5, 10);
+    jobs.claim("stopped instance");
+    dbService.loadQuestions(gameId, questions(2));
+
+    // the heartbeat is fresh
+    assertTrue(jobs.requeueStale(60_000, 3, 0).isEmpty());
+    assertNull(jobs.claim("b"));
+
+    // a heartbeat keeps the job with its owner
+    ageHeartbeat(gameId);
+    assertEquals(1, jobs.heartbeat("stopped instance"));
+    assertTrue(jobs.requeueStale(60_000, 3, 0).isEmpty());
+    assertNull(jobs.claim("b"));
+
+    // the owner stopped, the job is queued again
+    ageHeartbeat(gameId);
+    assertTrue(jobs.requeueStale(60_000, 3, 0).isEmpty());
+
+    GenerationJobs.Job resumed = jobs.claim("b");
+    assertEquals(gameId, resumed.gameId());
+    assertEquals(2, resumed.attempts());
+    assertEquals(2, resumed.storedQuestions());
+
+    // no attempts left, the job is failed for good
+    ageHeartbeat(gameId);
+    List<GenerationJobs.Job> failed = jobs.requeueStale(60_000, 2, 0);
+    assertEquals(1, failed.size());
+    assertEquals(gameId, failed.get(0).gameId());
+  }
+
+  @Test
+  void testEnqueueOrphans_QueuesGamesWithoutJob() throws Exception {
+    int orphan = createGame();
+    int recent = createGame();
+    int full = createGame();
+    dbService.loadQuestions(full, questions(5));
+    jdbcTemplate.update("UPDATE games SET created_at = created_at - interval '1 hour' WHERE id IN (?, ?)", orphan, full);
+
+    assertTrue(jobs.enqueueOrphans(60_000) >= 1);
+    assertTrue(jobs.isPending(orphan));
+    assertFalse(jobs.isPending(recent));
+    assertFalse(jobs.isPending(full));
+  }
+
+  @Test
+  void testScheduler_RetriesFailedJob() throws Exception {
+    int gameId = createGame();
+    CountDownLatch attempts = new CountDownLatch(2);
+    try (GenerationScheduler scheduler = new GenerationScheduler(jobs, 1, 10, 50, 1_000, 60_000, 3, 0)) {
+      scheduler.start(new GenerationScheduler.Handler() {
+        @Override
+        public void run(GenerationJobs.Job job) {
+          // games left by other tests may be recovered on start, they just complete
+          if (job.gameId() != gameId) {
+            return;
+          }
+          attempts.countDown();
+          if (job.attempts() == 1) {
+            throw new IllegalStateException("LLM is down");
+          }
+        }
+
+        @Override
+        public void failed(GenerationJobs.Job job) {
+          assertNotEquals(gameId, job.gameId(), "the job succeeds on the second attempt");
+        }
+      });
+
+      assertTrue(scheduler.submit(gameId, topicId, 1, 5).accepted());
+      assertTrue(attempts.await(10, TimeUnit.SECONDS));
+
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (scheduler.isPending(gameId) && System.nanoTime() < deadline) {
+        Thread.sleep(20);
+      }
+      assertFalse(scheduler.isPending(gameId));
+      GenerationScheduler.Snapshot snapshot = scheduler.snapshot();
+      assertEquals(1, snapshot.retried());
+      assertTrue(snapshot.completed() >= 1);
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package com.mipt;
+
+import com.mipt.dbAPI.GlobalRanking;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GlobalRankingTest {
+
+  @Test
+  void testTopAndRank() {
+    GlobalRanking ranking = new GlobalRanking(null);
+    ranking.put(1, "first", 100, 50);
+    ranking.put(2, "second", 100, 70);
+    ranking.put(3, "third", 20, 10);
+
+    assertEquals(List.of(1, 2, 3), ranking.top(10).stream().map(GlobalRanking.RankedUser::userId).toList());
+    assertEquals(2, ranking.rankOf(2));
+
+    ranking.add(3, 200, 200);
+    assertEquals(1, ranking.rankOf(3));
+    assertEquals(new GlobalRanking.RankedUser(1, 3, "third", 220, 210), ranking.top(1).get(0));
+    assertEquals(2, ranking.rankOf(1));
+
+    ranking.remove(1);
+    assertNull(ranking.rankOf(1));
+    assertEquals(2, ranking.rankOf(2));
+    assertEquals(2, ranking.size());
+    // unknown users are ignored
+    ranking.add(42, 1, 1);
+    assertNull(ranking.rankOf(42));
+  }
+
+  @Test
+  void testRankInfoAndAround() {
+    GlobalRanking ranking = new GlobalRanking(null);
+    for (int userId = 1; userId <= 10; userId++) {
+      // user 1 has the most points
+      ranking.put(userId, "user" + userId, 100 - userId, 0);
+    }
+
+    assertEquals(new GlobalRanking.RankInfo(1, 1, 10, 100.0), ranking.rankInfo(1));
+    assertEquals(new GlobalRanking.RankInfo(10, 10, 10, 0.0), ranking.rankInfo(10));
+    // 6 of the 9 other users are below the 4th place
+    assertEquals(100.0 * 6 / 9, ranking.rankInfo(4).percentile(), 1e-9);
+    assertNull(ranking.rankInfo(42));
+
+    assertEquals(List.of(3, 4, 5, 6, 7), ranking.around(5, 2).stream().map(GlobalRanking.RankedUser::userId).toList());
+    assertEquals(List.of(1, 2, 3), ranking.around(1, 2).stream().map(GlobalRanking.RankedUser::rank).toList());
+    assertEquals(List.of(8, 9, 10), ranking.around(10, 2).stream().map(GlobalRanking.RankedUser::userId).toList());
+    assertEquals(List.of(5), ranking.around(5, 0).stream().map(GlobalRanking.RankedUser::userId).toList());
+    assertNull(ranking.around(42, 2));
+
+    // moves with the points
+    ranking.add(10, 1000, 0);
+    assertEquals(List.of(10, 1, 2), ranking.around(10, 2).stream().map(GlobalRanking.RankedUser::userId).toList());
+  }
+
+  @Test
+  void testMatchesFullSortAfterRandomUpdates() {
+    GlobalRanking ranking = new GlobalRanking(null);
+    Map<Integer, int[]> points = new HashMap<>();
+    Random random = new Random(7);
+
+    for (int step = 0; step < 20_000; step++) {
+      int userId = random.nextInt(500);
+      if (!points.containsKey(userId)) {
+        points.put(userId, new int[]{0, 0});
+        ranking.put(userId, "user" + userId, 0, 0);
+      } else if (random.nextInt(50) == 0) {
+        points.remove(userId);
+        ranking.remove(userId);
+      } else {
+        int gained = random.nextInt(20);
+        int possible = gained + random.nextInt(20);
+        points.get(userId)[0] += gained;
+        points.get(userId)[1] += possible;
+        ranking.add(userId, gained, possible);
+      }
+    }
+
+    List<Integer> expected = new ArrayList<>(points.keySet());
+    expected.sort(Comparator.<Integer>comparingInt(id -> -points.get(id)[0])
+        .thenComparingInt(id -> points.get(id)[1])
+        .thenComparingInt(id -> id));
+
+    assertEquals(expected, ranking.top(expected.size() + 10).stream().map(GlobalRanking.RankedUser::userId).toList());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(i + 1, ranking.rankOf(expected.get(i)));
+    }
+    for (int i = 0; i < expected.size(); i += 37) {
+      List<Integer> window = expected.subList(Math.max(0, i - 3), Math.min(expected.size(), i + 4));
+      assertEquals(window, ranking.around(expected.get(i), 3).stream().map(GlobalRanking.RankedUser::userId).toList());
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package com.mipt;
+
+import com.mipt.leaderboardsProcessor.LeaderboardSnapshot;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LeaderboardSnapshotTest {
+
+  @Test
+  void testPublish_SwapsOnlyOnChange() throws JSONException {
+    LeaderboardSnapshot leaderboardSnapshot = new LeaderboardSnapshot();
+    assertNull(leaderboardSnapshot.current());
+
+    JSONArray leaderboard = new JSONArray().put(new JSONArray().put(1).put("user").put(10).put(20));
+    assertTrue(leaderboardSnapshot.publish(leaderboard));
+    LeaderboardSnapshot.Snapshot first = leaderboardSnapshot.current();
+    assertEquals(1, first.version());
+    assertEquals(leaderboard.toString(), new String(first.body(), StandardCharsets.UTF_8));
+
+    // same content -> same ETag, the snapshot is kept
+    assertFalse(leaderboardSnapshot.publish(new JSONArray(leaderboard.toString())));
+    assertSame(first, leaderboardSnapshot.current());
+
+    leaderboard.getJSONArray(0).put(2, 11);
+    assertTrue(leaderboardSnapshot.publish(leaderboard));
+    LeaderboardSnapshot.Snapshot second = leaderboardSnapshot.current();
+    assertEquals(2, second.version());
+    assertNotEquals(first.etag(), second.etag());
+  }
+
+  @Test
+  void testMatches_IfNoneMatch() {
+    String etag = "\"abc\"";
+    assertTrue(LeaderboardSnapshot.matches("\"abc\"", etag));
+    assertTrue(LeaderboardSnapshot.matches("\"x\", W/\"abc\"", etag));
+    assertTrue(LeaderboardSnapshot.matches("*", etag));
+    assertFalse(LeaderboardSnapshot.matches("\"abd\"", etag));
+    assertFalse(LeaderboardSnapshot.matches(null, etag));
+  }
+}
@@ -0,0 +1,156 @@
+package com.mipt;
+
+import com.mipt.dbAPI.DatabaseAccessException;
+import com.mipt.dbAPI.DbService;
+import com.mipt.domainModel.Topic;
+import com.mipt.service.LiveGameRegistry;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the in-memory state of running games is dropped when a game is stopped,
+ * also when the stop races with the first answer, and when a game stays idle.
+ */
+@Testcontainers
+public class LiveGameRegistryTest {
+
+  @Container
+  private static final PostgreSQLContainer<?> postgres =
+      new PostgreSQLContainer<>("postgres:13-alpine")
+          .withDatabaseName("testdb")
+          .withUsername("testuser")
+          .withPassword("testpass")
+          .withInitScript("init.sql")
+          .withReuse(true)
+          .waitingFor(Wait.forListeningPort())
+          .waitingFor(Wait.forLogMessage(".*database system is ready to accept connections.*\\n", 1))
+          .withStartupTimeout(Duration.ofSeconds(90));
+
+  static DbService dbService;
+  // runs while a game is loaded, between its status check and its registration
+  static volatile Runnable duringLoad;
+  static int topicId;
+
+  LiveGameRegistry registry;
+  int gameId;
+
+  @BeforeAll
+  static void setUp() throws Exception {
+    assertTrue(postgres.isRunning(), "PostgreSQL container should be running");
+    dbService = new DbService(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()) {
+      @Override
+      public Map<Integer, Integer> getRightAnswers(int gameId) throws SQLException, DatabaseAccessException {
+        Runnable action = duringLoad;
+        if (action != null) {
+          action.run();
+        }
+        return super.getRightAnswers(gameId);
+      }
+    };
+
+    Topic topic = new Topic();
+    topic.setName("live games");
+    topicId = dbService.addTopic(topic);
+    dbService.register("live host", "1");
+    dbService.authenticate("live host", "1", "LIVE_HOST");
+  }
+
+  @BeforeEach
+  void startGame() throws Exception {
+    registry = new LiveGameRegistry(dbService, 60_000);
+    dbService.addGameListener(registry);
+
+    gameId = dbService.createGame("LIVE_HOST", 1, 2, 4, topicId);
+    dbService.setCurrentGame("LIVE_HOST", gameId);
+    dbService.loadQuestions(gameId, questions());
+    dbService.setStatus(gameId, 2);
+  }
+
+  @AfterEach
+  void clear() {
+    duringLoad = null;
+  }
+
+  @Test
+  void testStopGame_FinishesGame() throws Exception {
+    registry.activate(gameId);
+    assertTrue(registry.submitAnswer("LIVE_HOST", gameId, 1, 2, 5));
+    assertEquals(1, registry.size());
+
+    dbService.stopGame(gameId);
+    assertEquals(0, registry.size());
+    DatabaseAccessException e = assertThrows(DatabaseAccessException.class,
+        () -> registry.submitAnswer("LIVE_HOST", gameId, 2, 2, 5));
+    assertEquals("Game is not active", e.getMessage());
+    assertEquals(0, registry.size());
+  }
+
+  @Test
+  void testStopGame_DuringLoad() throws Exception {
+    // the first answer passes the status check, then the stop is committed before the game is registered
+    duringLoad = () -> {
+      duringLoad = null;
+      try {
+        dbService.stopGame(gameId);
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    };
+
+    DatabaseAccessException e = assertThrows(DatabaseAccessException.class,
+        () -> registry.submitAnswer("LIVE_HOST", gameId, 1, 2, 5));
+    assertEquals("Game is not active", e.getMessage());
+    assertEquals(0, registry.size());
+    assertThrows(DatabaseAccessException.class, () -> registry.submitAnswer("LIVE_HOST", gameId, 1, 2, 5));
+  }
+
+  @Test
+  void testEvictIdle() throws Exception {
+    LiveGameRegistry idleRegistry = new LiveGameRegistry(dbService, 0);
+    idleRegistry.activate(gameId);
+    assertEquals(1, idleRegistry.size());
+
+    Thread.sleep(5);
+    idleRegistry.evictIdle();
+    assertEquals(0, idleRegistry.size());
+
+    // a game that is still running is loaded again by the next answer
+    assertTrue(idleRegistry.submitAnswer("LIVE_HOST", gameId, 1, 2, 5));
+    assertEquals(1, idleRegistry.size());
+
+    registry.activate(gameId);
+    registry.evictIdle();
+    assertEquals(1, registry.size());
+  }
+
+  private static JSONArray questions() throws JSONException {
+    JSONArray questions = new JSONArray();
+    for (int number = 1; number <= 2; number++) {
+      JSONArray answers = new JSONArray();
+      for (int index = 1; index <= 4; index++) {
+        answers.put(new JSONObject().put("index", index).put("answer", "Answer " + index + " of " + number));
+      }
+      questions.put(new JSONObject()
+          .put("question_number", number)
+          .put("question_text", "Live game question " + number + " " + System.nanoTime())
+          .put("available_answers", answers)
+          .put("right_answer_number", 2));
+    }
+    return questions;
+  }
+}
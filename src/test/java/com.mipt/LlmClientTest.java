@@ -0,0 +1,64 @@
+package com.mipt;
+
+import com.mipt.service.LlmClient;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LlmClientTest {
+
+  @Test
+  void testSequentialRequests_ReuseConnection() throws Exception {
+    try (StubLlmServer llm = new StubLlmServer(0, QuestionGeneratorTest::uniqueText);
+         LlmClient client = new LlmClient(llm.chatUrl())) {
+      for (int i = 0; i < 20; i++) {
+        String body = client.chat(new JSONObject()).get(10, TimeUnit.SECONDS);
+        assertTrue(new JSONObject(body).has("message"));
+      }
+
+      assertEquals(20, llm.requests());
+      assertEquals(1, llm.connections());
+      LlmClient.Snapshot snapshot = client.snapshot();
+      assertEquals(20, snapshot.requests());
+      assertEquals(0, snapshot.failures());
+      assertEquals(0, snapshot.inFlight());
+    }
+  }
+
+  @Test
+  void testConcurrentRequests_AreBounded() throws Exception {
+    try (StubLlmServer llm = new StubLlmServer(50, QuestionGeneratorTest::uniqueText);
+         LlmClient client = new LlmClient(llm.chatUrl(), 1_000, 10_000, 3, 60)) {
+      List<CompletableFuture<String>> responses = new ArrayList<>();
+      for (int i = 0; i < 12; i++) {
+        responses.add(client.chat(new JSONObject()));
+      }
+      CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+      assertEquals(12, llm.requests());
+      assertEquals(3, llm.maxInFlight());
+      assertTrue(llm.connections() <= 3);
+      assertEquals(12, client.snapshot().requests());
+    }
+  }
+
+  @Test
+  void testSlowResponse_TimesOut() throws Exception {
+    try (StubLlmServer llm = new StubLlmServer(1_000, QuestionGeneratorTest::uniqueText);
+         LlmClient client = new LlmClient(llm.chatUrl(), 1_000, 100, 4, 60)) {
+      CompletableFuture<String> response = client.chat(new JSONObject());
+
+      assertThrows(ExecutionException.class, () -> response.get(10, TimeUnit.SECONDS));
+      LlmClient.Snapshot snapshot = client.snapshot();
+      assertEquals(1, snapshot.failures());
+      assertEquals(1, snapshot.timeouts());
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package com.mipt;
+
+import com.mipt.dbAPI.PasswordHasher;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PasswordHasherTest {
+
+  @Test
+  void testVerify_RehashOnlyForAnotherCost() {
+    try (PasswordHasher oldHasher = new PasswordHasher(4, 1, 4);
+         PasswordHasher hasher = new PasswordHasher(5, 1, 4)) {
+      String oldHash = oldHasher.hash("12345");
+      assertTrue(oldHash.startsWith("$2a$04$"));
+
+      assertEquals(new PasswordHasher.Verification(false, false), hasher.verify("wrong", oldHash));
+      assertEquals(new PasswordHasher.Verification(true, true), hasher.verify("12345", oldHash));
+
+      String newHash = hasher.hash("12345");
+      assertTrue(newHash.startsWith("$2a$05$"));
+      assertEquals(new PasswordHasher.Verification(true, false), hasher.verify("12345", newHash));
+      assertEquals(2, hasher.snapshot().hashes() + oldHasher.snapshot().hashes());
+      assertEquals(3, hasher.snapshot().verifications());
+    }
+  }
+
+  @Test
+  void testHash_RejectedWhenQueueIsFull() {
+    try (PasswordHasher hasher = new PasswordHasher(12, 1, 1)) {
+      // one hash runs, one waits, the rest does not fit
+      List<CompletableFuture<String>> accepted = new ArrayList<>();
+      int rejected = 0;
+      for (int i = 0; i < 5; i++) {
+        try {
+          accepted.add(hasher.hashAsync("12345"));
+        } catch (RejectedExecutionException e) {
+          rejected++;
+        }
+      }
+      assertEquals(2, accepted.size());
+      assertEquals(3, rejected);
+      assertEquals(3, hasher.snapshot().rejected());
+      accepted.forEach(CompletableFuture::join);
+    }
+  }
+}
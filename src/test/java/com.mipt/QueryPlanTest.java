@@ -0,0 +1,201 @@
+package com.mipt;
+
+import com.mipt.dbAPI.DbService;
+import com.mipt.dbAPI.SchemaMigrator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the hot queries of DbService can be answered by the indexes of the migrations.
+ * The statements are the SQL constants of DbService and the SQL Hibernate sends for the
+ * repository methods, so the checks follow the code.
+ * The test tables are tiny, so sequential and bitmap scans are disabled to make the planner
+ * show which index it would use on a large table.
+ */
+@Testcontainers
+public class QueryPlanTest {
+
+  @Container
+  private static final PostgreSQLContainer<?> postgres =
+      new PostgreSQLContainer<>("postgres:13-alpine")
+          .withDatabaseName("testdb")
+          .withUsername("testuser")
+          .withPassword("testpass")
+          .withInitScript("init.sql")
+          .withReuse(true)
+          .waitingFor(Wait.forListeningPort())
+          .waitingFor(Wait.forLogMessage(".*database system is ready to accept connections.*\\n", 1))
+          .withStartupTimeout(Duration.ofSeconds(90));
+
+  static DbService dbService;
+  static Connection connection;
+  static int gameId;
+
+  @BeforeAll
+  static void setUp() throws SQLException {
+    assertTrue(postgres.isRunning(), "PostgreSQL container should be running");
+    // applies the migrations
+    dbService = new DbService(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+
+    connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    try (Statement statement = connection.createStatement()) {
+      // the repository methods read a game before their own query
+      try (ResultSet rs = statement.executeQuery("INSERT INTO games (status, participants_number) VALUES (0, 4) RETURNING id")) {
+        rs.next();
+        gameId = rs.getInt(1);
+      }
+      // users outside of games, on a table of a few rows an ordered primary key scan costs the same as the index
+      statement.execute("""
+          INSERT INTO users (session, username, password, pic_id, description, games_played_number,
+                             global_points, global_possible_points, current_game_points)
+          SELECT 'PLAN_SESSION_' || i, 'plan' || i, 'x', 0, '', 0, 0, 0, 0 FROM generate_series(0, 999) i
+          ON CONFLICT DO NOTHING
+          """);
+      // the visibility map lets the planner pick index-only scans
+      statement.execute("VACUUM ANALYZE");
+      statement.execute("SET enable_seqscan = off");
+      statement.execute("SET enable_bitmapscan = off");
+    }
+  }
+
+  @AfterAll
+  static void tearDown() throws SQLException {
+    connection.close();
+  }
+
+  private static String plan(String sql) throws SQLException {
+    StringBuilder plan = new StringBuilder();
+    try (Statement statement = connection.createStatement();
+         ResultSet rs = statement.executeQuery("EXPLAIN " + sql)) {
+      while (rs.next()) {
+        plan.append(rs.getString(1)).append('\n');
+      }
+    }
+    return plan.toString();
+  }
+
+  private static String bind(String sql, Object... values) {
+    // the parameters as literals, EXPLAIN of a statement with placeholders would need a prepared statement
+    StringBuilder bound = new StringBuilder();
+    int next = 0;
+    for (char c : sql.toCharArray()) {
+      if (c == '?') {
+        bound.append(values[next++]);
+      } else {
+        bound.append(c);
+      }
+    }
+    assertEquals(values.length, next, sql);
+    return bound.toString();
+  }
+
+  private static String captured(Executable call, String part) {
+    // the first statement of the call that contains the part, as Hibernate sent it
+    RecordingStatementInspector.start();
+    try {
+      call.execute();
+    } catch (Throwable e) {
+      // the tables are almost empty, the call may fail after its query has run
+    }
+    List<String> statements = RecordingStatementInspector.stop();
+    return statements.stream()
+        .filter(sql -> sql.contains(part))
+        .findFirst()
+        .orElseThrow(() -> new AssertionError("no statement with '" + part + "' in " + statements));
+  }
+
+  private static void assertUsesIndex(String index, String sql) throws SQLException {
+    String plan = plan(sql);
+    assertTrue(plan.contains(" on " + index) || plan.contains(" using " + index), "expected " + index + " in\n" + plan);
+    assertFalse(plan.contains("Seq Scan"), "expected no sequential scan in\n" + plan);
+  }
+
+  @Test
+  void testMigrations_AppliedOnce() throws SQLException {
+    try (Statement statement = connection.createStatement();
+         ResultSet rs = statement.executeQuery("SELECT count(*) FROM schema_migrations")) {
+      assertTrue(rs.next());
+      assertTrue(rs.getInt(1) >= 2);
+    }
+    // nothing left to apply
+    DriverManagerDataSource dataSource =
+        new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    assertTrue(new SchemaMigrator(dataSource, "classpath*:db/migration").migrate().isEmpty());
+
+    // no HASH indexes left
+    try (Statement statement = connection.createStatement();
+         ResultSet rs = statement.executeQuery(
+             "SELECT count(*) FROM pg_indexes WHERE schemaname = 'public' AND indexdef LIKE '%USING hash%'")) {
+      assertTrue(rs.next());
+      assertEquals(0, rs.getInt(1));
+    }
+  }
+
+  @Test
+  void testSessionLookup_IndexOnly() throws SQLException {
+    String plan = plan(bind(DbService.USER_ID_BY_SESSION_SQL, "'SESSION'"));
+    assertTrue(plan.contains("Index Only Scan using users_session_idx"), plan);
+    assertUsesIndex("users_pkey", bind(DbService.SESSION_BY_USER_ID_SQL, 1));
+  }
+
+  @Test
+  void testUsernameLookup() throws SQLException {
+    String sql = captured(() -> dbService.checkUserExists("test1"), "from users");
+    assertUsesIndex("users_username_idx", bind(sql, "'test1'", 1));
+  }
+
+  @Test
+  void testParticipantsOfGame() throws SQLException {
+    assertUsesIndex("users_current_game_idx", bind(DbService.LOCK_PARTICIPANTS_SQL, gameId));
+    String sql = captured(() -> dbService.getParticipantUsernames(gameId), "current_game_id");
+    assertUsesIndex("users_current_game_idx", bind(sql, gameId));
+  }
+
+  @Test
+  void testQuestionsOfGame() throws SQLException {
+    String question = captured(() -> dbService.getQuestion(gameId, 2), "from questions");
+    assertUsesIndex("questions_game_number_idx", bind(question, gameId, 2));
+    String questions = captured(() -> dbService.getRightAnswers(gameId), "from questions");
+    assertUsesIndex("questions_game_number_idx", bind(questions, gameId));
+    String count = captured(() -> dbService.isGameReady(gameId), "from questions");
+    assertUsesIndex("questions_game_number_idx", bind(count, gameId));
+  }
+
+  @Test
+  void testGamesHistoryPage() throws SQLException {
+    String plan = plan(bind(DbService.GAMES_HISTORY_PAGE_SQL, 1, 100, 21));
+    assertTrue(plan.contains("games_history_user_idx"), plan);
+    assertFalse(plan.contains("Sort"), "the index order must be used\n" + plan);
+  }
+
+  @Test
+  void testProfileSnapshot() throws SQLException {
+    String plan = plan(bind(DbService.PROFILE_SNAPSHOT_SQL, "'SESSION'"));
+    assertTrue(plan.contains("users_session_idx"), plan);
+    assertTrue(plan.contains("games_history_user_idx"), plan);
+    assertTrue(plan.contains("user_achievements_user_idx"), plan);
+    assertFalse(plan.contains("Seq Scan"), "expected no sequential scan in\n" + plan);
+  }
+
+  @Test
+  void testQuestionPoolPick() throws SQLException {
+    assertUsesIndex("question_pool_topic_difficulty_idx", bind(DbService.TAKE_POOL_QUESTIONS_SQL, gameId));
+  }
+}
@@ -0,0 +1,128 @@
+package com.mipt;
+
+import com.mipt.service.LlmClient;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuestionGeneratorTest {
+
+  private static final String DUPLICATE = "Какая планета самая большая в Солнечной системе?";
+
+  static String uniqueText(int seed) {
+    // random words, so that different seeds never look like near duplicates
+    Random random = new Random(seed);
+    StringBuilder text = new StringBuilder();
+    for (int word = 0; word < 6; word++) {
+      for (int letter = 0; letter < 6; letter++) {
+        text.append((char) ('а' + random.nextInt(32)));
+      }
+      text.append(' ');
+    }
+    return text.toString().trim() + "?";
+  }
+
+  private static String payload(int numberOfQuestions) {
+    return "[{\"topic\":\"физика\",\"numberOfQuestions\":" + numberOfQuestions + ",\"difficult\":2}]";
+  }
+
+  private static void assertNumberedAndUnique(JSONArray questions) throws JSONException {
+    QuestionDeduplicator deduplicator = new QuestionDeduplicator(QuestionGenerator.DEFAULT_NEAR_DUPLICATE_THRESHOLD);
+    for (int i = 0; i < questions.length(); i++) {
+      assertEquals(i + 1, questions.getJSONObject(i).getInt("question_number"));
+      assertTrue(deduplicator.tryAccept(questions.getJSONObject(i).getString("question_text")));
+    }
+  }
+
+  @Test
+  void testDeduplicator() {
+    QuestionDeduplicator deduplicator = new QuestionDeduplicator(0.8);
+    assertTrue(deduplicator.tryAccept(DUPLICATE));
+    // same text after normalization
+    assertFalse(deduplicator.tryAccept("  какая планета самая БОЛЬШАЯ в солнечной системе "));
+    // near duplicate
+    assertFalse(deduplicator.tryAccept("Какая планета самая большая в Солнечной системе, по-твоему?"));
+    // different questions
+    assertTrue(deduplicator.tryAccept("Кто открыл закон всемирного тяготения?"));
+    assertTrue(deduplicator.tryAccept("Какая планета самая маленькая в Солнечной системе?"));
+    assertFalse(deduplicator.tryAccept(""));
+  }
+
+  @Test
+  void testParallelGeneration_RespectsMaxInFlight() throws Exception {
+    try (StubLlmServer llm = new StubLlmServer(50, QuestionGeneratorTest::uniqueText)) {
+      QuestionGenerator generator = new QuestionGenerator(new LlmClient(llm.chatUrl()), "stub", 4, 0.8);
+
+      JSONArray questions = new JSONArray(generator.generateQuestions(payload(12)).get(30, TimeUnit.SECONDS));
+
+      assertEquals(12, questions.length());
+      assertNumberedAndUnique(questions);
+      assertEquals(12, llm.requests());
+      assertTrue(llm.maxInFlight() <= 4);
+      assertTrue(llm.maxInFlight() > 1);
+    }
+  }
+
+  @Test
+  void testParallelGeneration_RegeneratesDuplicates() throws Exception {
+    // every odd request among the first ten answers with (almost) the same question
+    try (StubLlmServer llm = new StubLlmServer(10, request -> {
+      if (request <= 10 && request % 2 == 1) {
+        return request % 4 == 1 ? DUPLICATE : DUPLICATE.toUpperCase() + "!!";
+      }
+      return uniqueText(request);
+    })) {
+      QuestionGenerator generator = new QuestionGenerator(new LlmClient(llm.chatUrl()), "stub", 4, 0.8);
+
+      JSONArray questions = new JSONArray(generator.generateQuestions(payload(8)).get(30, TimeUnit.SECONDS));
+
+      assertEquals(8, questions.length());
+      assertNumberedAndUnique(questions);
+      assertTrue(llm.requests() > 8);
+    }
+  }
+
+  @Test
+  void testSequentialGeneration_RegeneratesDuplicates() throws Exception {
+    try (StubLlmServer llm = new StubLlmServer(0, request -> request <= 2 ? DUPLICATE : uniqueText(request))) {
+      QuestionGenerator generator = new QuestionGenerator(new LlmClient(llm.chatUrl()), "stub", 1, 0.8);
+
+      JSONArray questions = new JSONArray(generator.generateQuestions(payload(3)).get(30, TimeUnit.SECONDS));
+
+      assertEquals(3, questions.length());
+      assertNumberedAndUnique(questions);
+      assertEquals(4, llm.requests());
+      assertEquals(1, llm.maxInFlight());
+    }
+  }
+
+  @Test
+  void testQuestionsAreDeliveredInOrderBeforeGenerationEnds() throws Exception {
+    try (StubLlmServer llm = new StubLlmServer(50, QuestionGeneratorTest::uniqueText)) {
+      QuestionGenerator generator = new QuestionGenerator(new LlmClient(llm.chatUrl()), "stub", 2, 0.8);
+      List<Integer> delivered = new CopyOnWriteArrayList<>();
+      long[] firstDeliveredAt = new long[1];
+
+      long start = System.nanoTime();
+      String result = generator.generateQuestions(payload(8), question -> {
+        if (delivered.isEmpty()) {
+          firstDeliveredAt[0] = System.nanoTime();
+        }
+        delivered.add(question.optInt("question_number"));
+      }).get(30, TimeUnit.SECONDS);
+      long finishedAt = System.nanoTime();
+
+      assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8), delivered);
+      assertEquals(8, new JSONArray(result).length());
+      // the first question is ready after one round of requests, not after all four
+      assertTrue(firstDeliveredAt[0] - start < (finishedAt - start) / 2);
+    }
+  }
+}
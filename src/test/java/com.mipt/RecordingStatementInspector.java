@@ -0,0 +1,40 @@
+package com.mipt;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the SQL Hibernate sends while recording is on (set in src/test/resources/hibernate.properties),
+ * so that QueryPlanTest explains the statements of the repositories instead of copies of them.
+ */
+public class RecordingStatementInspector implements StatementInspector {
+
+  private static final List<String> STATEMENTS = new ArrayList<>();
+  private static volatile boolean recording;
+
+  @Override
+  public String inspect(String sql) {
+    if (recording) {
+      synchronized (STATEMENTS) {
+        STATEMENTS.add(sql);
+      }
+    }
+    return sql;
+  }
+
+  public static void start() {
+    synchronized (STATEMENTS) {
+      STATEMENTS.clear();
+    }
+    recording = true;
+  }
+
+  public static List<String> stop() {
+    recording = false;
+    synchronized (STATEMENTS) {
+      return new ArrayList<>(STATEMENTS);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package com.mipt;
+
+import com.mipt.dbAPI.ScoreAccumulator;
+import com.mipt.dbAPI.ScoreDelta;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScoreAccumulatorTest {
+
+  private static final long NO_SCHEDULED_FLUSH_MS = 3_600_000;
+
+  // the deltas written by the batches, in order
+  private final List<ScoreDelta> written = new CopyOnWriteArrayList<>();
+  private final CountDownLatch connectionRequested = new CountDownLatch(1);
+  private final CountDownLatch connectionAvailable = new CountDownLatch(1);
+
+  @Test
+  void testFlush_WritesPendingPoints() throws Exception {
+    connectionAvailable.countDown();
+    try (ScoreAccumulator accumulator = new ScoreAccumulator(dataSource(), NO_SCHEDULED_FLUSH_MS, 1_000)) {
+      accumulator.add(new ScoreDelta(2, 1, 2, 3));
+      accumulator.add(new ScoreDelta(1, 0, 5, 5));
+      accumulator.add(new ScoreDelta(2, 1, 0, 0));
+
+      accumulator.flush();
+      assertEquals(List.of(new ScoreDelta(1, 0, 5, 5), new ScoreDelta(2, 2, 2, 3)), written);
+      assertEquals(0, accumulator.snapshot().pendingUsers());
+
+      // nothing pending: no connection, no batch
+      accumulator.flush();
+      assertEquals(2, written.size());
+      assertEquals(1, accumulator.snapshot().flushes());
+    }
+  }
+
+  @Test
+  void testFlush_WaitsForPoolWithoutLock() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try (ScoreAccumulator accumulator = new ScoreAccumulator(dataSource(), NO_SCHEDULED_FLUSH_MS, 1_000)) {
+      accumulator.add(new ScoreDelta(1, 0, 5, 5));
+      Future<?> flush = executor.submit(() -> {
+        accumulator.flush();
+        return null;
+      });
+      try {
+        assertTrue(connectionRequested.await(5, TimeUnit.SECONDS));
+
+        // the pool is exhausted: a reader holding a connection is not blocked by the waiting flush
+        Future<Integer> read = executor.submit(() -> accumulator.read(() -> accumulator.pending(1).globalPoints()));
+        assertEquals(5, read.get(5, TimeUnit.SECONDS));
+      } finally {
+        connectionAvailable.countDown();
+      }
+
+      flush.get(5, TimeUnit.SECONDS);
+      assertEquals(List.of(new ScoreDelta(1, 0, 5, 5)), written);
+      assertEquals(0, accumulator.read(() -> accumulator.pending(1).globalPoints()));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private DataSource dataSource() {
+    return proxy(DataSource.class, (method, args) -> {
+      if (method.equals("getConnection")) {
+        connectionRequested.countDown();
+        connectionAvailable.await();
+        return connection();
+      }
+      return null;
+    });
+  }
+
+  private Connection connection() {
+    return proxy(Connection.class, (method, args) -> switch (method) {
+      case "getAutoCommit" -> true;
+      case "prepareStatement" -> statement();
+      default -> null;
+    });
+  }
+
+  private PreparedStatement statement() {
+    int[] parameters = new int[4];
+    return proxy(PreparedStatement.class, (method, args) -> switch (method) {
+      case "setInt" -> {
+        parameters[(int) args[0] - 1] = (int) args[1];
+        yield null;
+      }
+      case "addBatch" -> {
+        written.add(new ScoreDelta(parameters[3], parameters[0], parameters[1], parameters[2]));
+        yield null;
+      }
+      case "executeBatch" -> new int[0];
+      default -> null;
+    });
+  }
+
+  private static <T> T proxy(Class<T> type, Handler handler) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+        (proxy, method, args) -> handler.handle(method.getName(), args)));
+  }
+
+  @FunctionalInterface
+  private interface Handler {
+    Object handle(String method, Object[] args) throws Exception;
+  }
+}
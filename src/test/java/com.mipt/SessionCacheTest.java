@@ -0,0 +1,107 @@
+package com.mipt;
+
+import com.mipt.dbAPI.SessionCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionCacheTest {
+
+  @Test
+  void testGet_HitsAndMisses() {
+    SessionCache cache = new SessionCache(100, 60_000);
+    assertNull(cache.get("SESSION"));
+    cache.put("SESSION", 1, cache.version());
+    assertEquals(1, cache.get("SESSION"));
+    assertEquals(1, cache.get("SESSION"));
+    assertNull(cache.get(null));
+
+    SessionCache.Snapshot snapshot = cache.snapshot();
+    assertEquals(1, snapshot.size());
+    assertEquals(2, snapshot.hits());
+    assertEquals(1, snapshot.misses());
+    assertEquals(2.0 / 3, snapshot.hitRate(), 1e-9);
+  }
+
+  @Test
+  void testGet_ExpiresAfterTtl() throws InterruptedException {
+    SessionCache cache = new SessionCache(100, 1);
+    cache.put("SESSION", 1, cache.version());
+    Thread.sleep(5);
+    assertNull(cache.get("SESSION"));
+    assertEquals(0, cache.snapshot().size());
+    assertEquals(1, cache.snapshot().evictions());
+  }
+
+  @Test
+  void testPut_EvictsLeastRecentlyUsed() {
+    // 16 stripes of 2 entries; the sessions have the same hash code, so they share a stripe
+    SessionCache cache = new SessionCache(32, 60_000);
+    cache.put("AaAa", 1, cache.version());
+    cache.put("AaBB", 2, cache.version());
+    assertEquals(1, cache.get("AaAa"));
+    cache.put("BBAa", 3, cache.version());
+
+    assertNull(cache.get("AaBB"));
+    assertEquals(1, cache.get("AaAa"));
+    assertEquals(3, cache.get("BBAa"));
+    assertEquals(1, cache.snapshot().evictions());
+  }
+
+  @Test
+  void testPut_DroppedAfterInvalidation() {
+    SessionCache cache = new SessionCache(100, 60_000);
+    // a lookup reads the row, the session is logged out and invalidated, then the lookup puts what it read
+    long version = cache.version();
+    cache.invalidate("SESSION");
+    cache.put("SESSION", 1, version);
+    assertNull(cache.get("SESSION"));
+
+    cache.put("SESSION", 1, cache.version());
+    assertEquals(1, cache.get("SESSION"));
+    cache.clear();
+    assertNull(cache.get("SESSION"));
+  }
+
+  @Test
+  void testDisabled() {
+    SessionCache cache = new SessionCache(0, 60_000);
+    cache.put("SESSION", 1, cache.version());
+    assertNull(cache.get("SESSION"));
+    assertFalse(cache.snapshot().enabled());
+  }
+
+  @Test
+  void testConcurrentStripes() throws Exception {
+    SessionCache cache = new SessionCache(10_000, 60_000);
+    int threads = 8;
+    int sessionsPerThread = 500;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      int thread = t;
+      futures.add(executor.submit(() -> {
+        for (int i = 0; i < sessionsPerThread; i++) {
+          int userId = thread * sessionsPerThread + i;
+          cache.put("SESSION_" + userId, userId, cache.version());
+          assertEquals(userId, cache.get("SESSION_" + userId));
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    SessionCache.Snapshot snapshot = cache.snapshot();
+    assertEquals(threads * sessionsPerThread, snapshot.size());
+    assertEquals(threads * sessionsPerThread, snapshot.hits());
+    assertEquals(0, snapshot.misses());
+  }
+}
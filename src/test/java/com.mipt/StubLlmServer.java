@@ -0,0 +1,114 @@
+package com.mipt;
+
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Local stand-in for the Ollama chat API. Every request gets a question whose text
+ * is produced by {@code questionText} from the request sequence number (starting at 1).
+ */
+public class StubLlmServer implements AutoCloseable {
+
+  private final HttpServer server;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final AtomicInteger requests = new AtomicInteger();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  // client ports seen by the server, one per TCP connection
+  private final Set<Integer> connections = ConcurrentHashMap.newKeySet();
+
+  public StubLlmServer(long latencyMs, IntFunction<String> questionText) throws IOException {
+    this(0, latencyMs, questionText);
+  }
+
+  /**
+   * Listens on the given port, 0 picks a free one.
+   */
+  public StubLlmServer(int port, long latencyMs, IntFunction<String> questionText) throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+    server.setExecutor(executor);
+    server.createContext("/api/chat", exchange -> {
+      int current = inFlight.incrementAndGet();
+      maxInFlight.accumulateAndGet(current, Math::max);
+      connections.add(exchange.getRemoteAddress().getPort());
+      try (InputStream body = exchange.getRequestBody()) {
+        body.readAllBytes();
+        int requestNumber = requests.incrementAndGet();
+        Thread.sleep(latencyMs);
+
+        JSONObject message = new JSONObject()
+            .put("role", "assistant")
+            .put("content", question(questionText.apply(requestNumber)).toString());
+        byte[] response = new JSONObject()
+            .put("model", "stub")
+            .put("message", message)
+            .put("done", true)
+            .toString()
+            .getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(response);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        exchange.sendResponseHeaders(500, -1);
+      } catch (JSONException e) {
+        exchange.sendResponseHeaders(500, -1);
+      } finally {
+        inFlight.decrementAndGet();
+        exchange.close();
+      }
+    });
+    server.start();
+  }
+
+  private static JSONObject question(String text) throws JSONException {
+    JSONArray answers = new JSONArray();
+    for (int i = 1; i <= 4; i++) {
+      answers.put(new JSONObject().put("index", i).put("answer", "Ответ " + i));
+    }
+    return new JSONObject()
+        .put("question_number", 1)
+        .put("question_text", text)
+        .put("available_answers", answers)
+        .put("right_answer_number", 2);
+  }
+
+  public String chatUrl() {
+    return "http://localhost:" + server.getAddress().getPort() + "/api/chat";
+  }
+
+  public int requests() {
+    return requests.get();
+  }
+
+  public int maxInFlight() {
+    return maxInFlight.get();
+  }
+
+  public int connections() {
+    return connections.size();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+}
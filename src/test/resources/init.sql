@@ -71,8 +71,22 @@ CREATE TABLE IF NOT EXISTS questions (
     answer4 TEXT
 );
 
+CREATE TABLE IF NOT EXISTS question_pool (
+    id SERIAL PRIMARY KEY,
+    topic_id INT REFERENCES topics (id) ON DELETE CASCADE,
+    level_difficulty SMALLINT,
+    question_text TEXT,
+    right_answer_number SMALLINT CHECK (right_answer_number >= 1 AND right_answer_number <= 4),
+    answer1 TEXT,
+    answer2 TEXT,
+    answer3 TEXT,
+    answer4 TEXT,
+    created_at TIMESTAMP
+);
+
 CREATE INDEX topics_idx ON topics USING HASH (name);
 CREATE INDEX users_idx ON users USING HASH (session);
+CREATE INDEX question_pool_topic_difficulty_idx ON question_pool (topic_id, level_difficulty, id);
 
 INSERT INTO games (status, participants_number) VALUES (0, 1);
 INSERT INTO topics (name) VALUES ('testTopic');